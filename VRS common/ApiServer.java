@@ -0,0 +1,536 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Headless JSON API over a RentalRepository, on the JDK's built-in HttpServer with a
+// thread per request (virtual where the runtime has them). A login returns a token
+// that later requests send as "Authorization: Bearer <token>"; customer endpoints act
+// on the logged-in customer and admin endpoints need an admin login. Sessions idle for
+// longer than vrs.api.sessionTtlMs (30 minutes) are swept out once a minute.
+//
+// Malformed input is answered with 400 and the reason; any other failure is a bug or
+// an outage, logged and answered with 500.
+//
+//   POST   /api/login                {username, password} -> {token, admin, customerId, name}
+//   POST   /api/logout
+//   POST   /api/register             {name, mobile, username, password} -> {created}
+//   GET    /api/vehicles             ?after=&skip=&limit= -> {rows}
+//   GET    /api/vehicles/count       -> {count}
+//   GET    /api/vehicles/search      ?q=&minRent=&maxRent=&available=&categories=&bands=&after=&skip=&limit= -> {rows}
+//   GET    /api/vehicles/search/count ?q=&minRent=&maxRent=&available=&categories=&bands= -> {count}
+//   GET    /api/vehicles/facets      -> {categories, bands}
+//     categories is a JSON array of category keys and bands a comma list of band numbers
+//   POST   /api/vehicles             {model, category, rent}           (admin)
+//   PUT    /api/vehicles/{id}        {model, category, rent}           (admin)
+//   DELETE /api/vehicles/{id}                                          (admin)
+//   POST   /api/bookings             {vehicleId} -> {outcome}          (customer)
+//   POST   /api/returns              {vehicleId} -> {outcome}          (customer)
+//   GET    /api/me/active            -> {vehicles}                     (customer)
+//   GET    /api/me/history           -> {rows}                         (customer)
+//   GET    /api/me/payments          ?afterId=&afterDate=&limit= -> {rows} (customer)
+//   GET    /api/bookings             ?status=&after=&skip=&limit= -> {rows} (admin)
+//   GET    /api/bookings/count       ?status= -> {count}               (admin)
+//   GET    /api/bookings/{id}        -> {exists}                       (admin)
+//   POST   /api/payments             {bookingId, amount, method}       (admin)
+//   GET    /api/customers            -> {rows}                         (admin)
+//   DELETE /api/customers/{id}                                         (admin)
+//   GET    /api/reports/fleet        -> {report}                       (admin)
+//   GET    /api/reports/top          -> {customers}                    (admin)
+class ApiServer {
+    static final int DEFAULT_PORT = 8080;
+    private static final long SESSION_TTL_MS = Long.getLong("vrs.api.sessionTtlMs", 30 * 60_000L);
+    private static final long SESSION_SWEEP_MS = Math.max(1000, Math.min(60_000L, SESSION_TTL_MS));
+    private static final int MAX_PAGE = 500;
+    private static final int MAX_BODY = 64 * 1024;
+
+    private final RentalRepository repo;
+    private final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+    private HttpServer server;
+    private ExecutorService executor;
+    private ScheduledExecutorService sweeper;
+
+    private static final class Session {
+        final Credentials.Login login;
+        volatile long lastSeen = System.currentTimeMillis();
+
+        Session(Credentials.Login login) {
+            this.login = login;
+        }
+    }
+
+    // Reported to the client as {"error": message} with the given HTTP status
+    private static final class ApiError extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        ApiError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    public ApiServer(RentalRepository repo) {
+        this.repo = repo;
+    }
+
+    public synchronized void start(int port) throws IOException {
+        // The JDK server writes headers and body separately; with Nagle's algorithm on,
+        // every small response then waits out the client's delayed ACK (~40 ms)
+        if (System.getProperty("sun.net.httpserver.nodelay") == null)
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        executor = createExecutor();
+        server.setExecutor(executor);
+        server.createContext("/api/", this::handle);
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "api-sessions");
+            t.setDaemon(true);
+            return t;
+        });
+        sweeper.scheduleWithFixedDelay(this::expireSessions, SESSION_SWEEP_MS, SESSION_SWEEP_MS,
+                TimeUnit.MILLISECONDS);
+        server.start();
+        System.out.println("API listening on port " + server.getAddress().getPort());
+    }
+
+    public synchronized void stop() {
+        if (server == null)
+            return;
+        server.stop(1);
+        executor.shutdownNow();
+        sweeper.shutdownNow();
+        server = null;
+    }
+
+    int port() {
+        return server.getAddress().getPort();
+    }
+
+    private static ExecutorService createExecutor() {
+        try {
+            // Virtual threads where the runtime has them (JDK 21+)
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "api-worker");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    // Each request is traced as an action named after its method and resource
+    @SuppressWarnings("try")
+    private void handle(HttpExchange ex) throws IOException {
+        String[] path = ex.getRequestURI().getPath().substring("/api/".length()).split("/");
+        try (Trace.Span action = Trace.action("api " + ex.getRequestMethod() + " /api/" + path[0])) {
+            respond(ex, path);
+        }
+    }
+
+    @SuppressWarnings("try")
+    private void respond(HttpExchange ex, String[] path) throws IOException {
+        int status = 200;
+        Object body;
+        try (Trace.Span s = Trace.span("route", ex.getRequestMethod() + " " + ex.getRequestURI())) {
+            body = route(ex, ex.getRequestMethod(), path);
+        } catch (ApiError e) {
+            status = e.status;
+            body = error(e.getMessage());
+        } catch (Exception e) {
+            e.printStackTrace();
+            status = 500;
+            body = error(e.getMessage());
+        }
+        byte[] out = Json.write(body).getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        ex.sendResponseHeaders(status, out.length);
+        try (OutputStream os = ex.getResponseBody()) {
+            os.write(out);
+        }
+    }
+
+    private Object route(HttpExchange ex, String method, String[] path) throws Exception {
+        String resource = path[0];
+        String id = path.length > 1 ? path[1] : null;
+        Map<String, String> query = query(ex);
+
+        switch (method + " " + resource) {
+            case "POST login":
+                return login(body(ex));
+            case "POST logout":
+                String token = token(ex);
+                if (token != null)
+                    sessions.remove(token);
+                return ok();
+            case "POST register": {
+                Map<String, Object> b = body(ex);
+                return result("created", repo.register(str(b, "name"), str(b, "mobile"), str(b, "username"),
+                        str(b, "password")));
+            }
+            default:
+                break;
+        }
+
+        Credentials.Login login = session(ex);
+        switch (method + " " + resource) {
+            case "GET vehicles":
+                if ("count".equals(id))
+                    return result("count", repo.vehicles().count());
+                if ("facets".equals(id)) {
+                    VehicleIndex.Facets facets = repo.vehicleFacets();
+                    Map<String, Object> m = new LinkedHashMap<>();
+                    m.put("categories", facets(facets.categories));
+                    m.put("bands", facets(facets.bands));
+                    return m;
+                }
+                if ("search".equals(id)) {
+                    PageSource found = repo.searchVehicles(new VehicleIndex.Query(query.get("q"),
+                            numParam(query, "minRent"), numParam(query, "maxRent"),
+                            "true".equals(query.get("available")), categories(query), bands(query)));
+                    if (path.length > 2 && "count".equals(path[2]))
+                        return result("count", found.count());
+                    return result("rows", found.fetch(intParam(query, "after"), skip(query), limit(query)));
+                }
+                return result("rows", repo.vehicles().fetch(intParam(query, "after"), skip(query), limit(query)));
+            case "POST vehicles": {
+                admin(login);
+                Map<String, Object> b = body(ex);
+                repo.addVehicle(str(b, "model"), str(b, "category"), num(b, "rent"));
+                return ok();
+            }
+            case "PUT vehicles": {
+                admin(login);
+                Map<String, Object> b = body(ex);
+                repo.updateVehicle(id(id), str(b, "model"), str(b, "category"), num(b, "rent"));
+                return ok();
+            }
+            case "DELETE vehicles":
+                admin(login);
+                repo.deleteVehicle(id(id));
+                return ok();
+            case "POST bookings":
+                return result("outcome", repo.book(customer(login), integer(body(ex), "vehicleId")));
+            case "POST returns":
+                return result("outcome", repo.returnVehicle(customer(login), integer(body(ex), "vehicleId")));
+            case "GET me":
+                return me(login, id, query);
+            case "GET bookings": {
+                admin(login);
+                String status = query.getOrDefault("status", "ALL");
+                if ("count".equals(id))
+                    return result("count", repo.bookings(status).count());
+                if (id != null)
+                    return result("exists", repo.bookingExists(id(id)));
+                return result("rows", repo.bookings(status).fetch(intParam(query, "after"), skip(query), limit(query)));
+            }
+            case "POST payments": {
+                admin(login);
+                Map<String, Object> b = body(ex);
+                if (!repo.recordPayment(integer(b, "bookingId"), num(b, "amount"), str(b, "method")))
+                    throw new ApiError(404, "No such booking");
+                return ok();
+            }
+            case "GET customers":
+                admin(login);
+                return result("rows", repo.customers());
+            case "DELETE customers":
+                admin(login);
+                repo.deleteCustomer(id(id), null);
+                return ok();
+            case "GET reports":
+                admin(login);
+                if ("fleet".equals(id))
+                    return result("report", repo.fleetReport());
+                if ("top".equals(id)) {
+                    List<Map<String, Object>> top = new ArrayList<>();
+                    for (Leaderboard.Entry e : repo.topCustomers()) {
+                        Map<String, Object> m = new LinkedHashMap<>();
+                        m.put("customerId", e.customerId);
+                        m.put("name", e.name);
+                        m.put("mobile", e.mobile);
+                        m.put("bookings", e.bookings);
+                        top.add(m);
+                    }
+                    return result("customers", top);
+                }
+                break;
+            default:
+                break;
+        }
+        throw new ApiError(404, "Not found: " + method + " " + ex.getRequestURI().getPath());
+    }
+
+    private Object me(Credentials.Login login, String what, Map<String, String> query) throws Exception {
+        int cid = customer(login);
+        if ("active".equals(what))
+            return result("vehicles", repo.activeVehicles(cid));
+        if ("history".equals(what))
+            return result("rows", repo.history(cid));
+        if ("payments".equals(what)) {
+            Object[] after = null;
+            Integer afterId = intParam(query, "afterId");
+            if (afterId != null) {
+                Long afterDate = longParam(query, "afterDate");
+                if (afterDate == null)
+                    throw new ApiError(400, "Bad request: afterId needs afterDate");
+                after = new Object[] { afterId, null, null, null, new Date(afterDate) };
+            }
+            return result("rows", repo.payments(cid, after, limit(query)));
+        }
+        throw new ApiError(404, "Not found: /api/me/" + what);
+    }
+
+    // --- Sessions ---
+
+    private Object login(Map<String, Object> b) throws Exception {
+        Credentials.Login login = repo.login(str(b, "username"), str(b, "password"));
+        if (login == null)
+            throw new ApiError(401, "Invalid credentials");
+        byte[] raw = new byte[24];
+        random.nextBytes(raw);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(raw);
+        sessions.put(token, new Session(login));
+
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("token", token);
+        m.put("admin", login.admin);
+        m.put("customerId", login.customerId);
+        m.put("name", login.name);
+        return m;
+    }
+
+    private static String token(HttpExchange ex) {
+        String auth = ex.getRequestHeaders().getFirst("Authorization");
+        return auth != null && auth.startsWith("Bearer ") ? auth.substring(7).trim() : null;
+    }
+
+    private Credentials.Login session(HttpExchange ex) throws ApiError {
+        String token = token(ex);
+        Session s = token == null ? null : sessions.get(token);
+        long now = System.currentTimeMillis();
+        if (s == null || now - s.lastSeen > SESSION_TTL_MS) {
+            if (s != null)
+                sessions.remove(token);
+            throw new ApiError(401, "Not logged in");
+        }
+        s.lastSeen = now;
+        return s.login;
+    }
+
+    private void expireSessions() {
+        long cutoff = System.currentTimeMillis() - SESSION_TTL_MS;
+        sessions.values().removeIf(s -> s.lastSeen < cutoff);
+    }
+
+    private static void admin(Credentials.Login login) throws ApiError {
+        if (!login.admin)
+            throw new ApiError(403, "Admin login required");
+    }
+
+    private static int customer(Credentials.Login login) throws ApiError {
+        if (login.admin)
+            throw new ApiError(403, "Customer login required");
+        return login.customerId;
+    }
+
+    // --- Request and response helpers ---
+
+    private static Map<String, Object> body(HttpExchange ex) throws IOException, ApiError {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        try (InputStream in = ex.getRequestBody()) {
+            byte[] chunk = new byte[8192];
+            int n;
+            while ((n = in.read(chunk)) > 0) {
+                buf.write(chunk, 0, n);
+                if (buf.size() > MAX_BODY)
+                    throw new ApiError(413, "Request body too large");
+            }
+        }
+        if (buf.size() == 0)
+            return new HashMap<>();
+        try {
+            return Json.parseObject(buf.toString(StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            throw badRequest("body is not a JSON object (" + e.getMessage() + ")");
+        }
+    }
+
+    private static Map<String, String> query(HttpExchange ex) {
+        Map<String, String> params = new HashMap<>();
+        String raw = ex.getRequestURI().getRawQuery();
+        if (raw == null)
+            return params;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0)
+                params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    // The body and query readers below reject anything they can't use with a 400,
+    // so that whatever else escapes a handler really is a server fault
+
+    private static String str(Map<String, Object> b, String field) throws ApiError {
+        Object v = b.get(field);
+        if (!(v instanceof String))
+            throw badRequest("missing or non-string " + field);
+        return (String) v;
+    }
+
+    private static double num(Map<String, Object> b, String field) throws ApiError {
+        Object v = b.get(field);
+        if (!(v instanceof Number))
+            throw badRequest("missing or non-numeric " + field);
+        return ((Number) v).doubleValue();
+    }
+
+    private static int integer(Map<String, Object> b, String field) throws ApiError {
+        double v = num(b, field);
+        if (v != Math.rint(v) || v < Integer.MIN_VALUE || v > Integer.MAX_VALUE)
+            throw badRequest(field + " is not a whole number: " + v);
+        return (int) v;
+    }
+
+    private static int id(String segment) throws ApiError {
+        if (segment == null)
+            throw badRequest("missing id");
+        try {
+            return Integer.parseInt(segment);
+        } catch (NumberFormatException e) {
+            throw badRequest("id is not a number: " + segment);
+        }
+    }
+
+    private static Integer intParam(Map<String, String> query, String name) throws ApiError {
+        String v = query.get(name);
+        if (v == null || v.isEmpty())
+            return null;
+        try {
+            return Integer.valueOf(v.trim());
+        } catch (NumberFormatException e) {
+            throw badRequest(name + " is not a whole number: " + v);
+        }
+    }
+
+    private static Long longParam(Map<String, String> query, String name) throws ApiError {
+        String v = query.get(name);
+        if (v == null || v.isEmpty())
+            return null;
+        try {
+            return Long.valueOf(v.trim());
+        } catch (NumberFormatException e) {
+            throw badRequest(name + " is not a whole number: " + v);
+        }
+    }
+
+    private static Double numParam(Map<String, String> query, String name) throws ApiError {
+        String v = query.get(name);
+        if (v == null || v.isEmpty())
+            return null;
+        try {
+            return Double.valueOf(v.trim());
+        } catch (NumberFormatException e) {
+            throw badRequest(name + " is not a number: " + v);
+        }
+    }
+
+    private static Set<String> categories(Map<String, String> query) throws ApiError {
+        String v = query.get("categories");
+        Set<String> keys = new HashSet<>();
+        if (v == null || v.isEmpty())
+            return keys;
+        Object parsed;
+        try {
+            parsed = Json.parse(v);
+        } catch (IllegalArgumentException e) {
+            throw badRequest("categories is not a JSON array (" + e.getMessage() + ")");
+        }
+        if (!(parsed instanceof List))
+            throw badRequest("categories is not a JSON array");
+        for (Object key : (List<?>) parsed)
+            keys.add(String.valueOf(key));
+        return keys;
+    }
+
+    private static Set<Integer> bands(Map<String, String> query) throws ApiError {
+        String v = query.get("bands");
+        Set<Integer> bands = new HashSet<>();
+        if (v != null && !v.isEmpty())
+            for (String band : v.split(",")) {
+                try {
+                    bands.add(Integer.valueOf(band.trim()));
+                } catch (NumberFormatException e) {
+                    throw badRequest("bands is not a comma list of numbers: " + v);
+                }
+            }
+        return bands;
+    }
+
+    private static List<Map<String, Object>> facets(List<VehicleIndex.Facet> facets) {
+        List<Map<String, Object>> list = new ArrayList<>(facets.size());
+        for (VehicleIndex.Facet f : facets) {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("key", f.key);
+            m.put("label", f.label);
+            m.put("available", f.available);
+            m.put("total", f.total);
+            list.add(m);
+        }
+        return list;
+    }
+
+    private static int skip(Map<String, String> query) throws ApiError {
+        Integer v = intParam(query, "skip");
+        return v == null ? 0 : Math.max(0, v);
+    }
+
+    private static int limit(Map<String, String> query) throws ApiError {
+        Integer v = intParam(query, "limit");
+        return v == null ? 50 : Math.max(1, Math.min(MAX_PAGE, v));
+    }
+
+    private static Map<String, Object> result(String key, Object value) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put(key, value);
+        return m;
+    }
+
+    private static Map<String, Object> ok() {
+        return result("ok", true);
+    }
+
+    private static ApiError badRequest(String reason) {
+        return new ApiError(400, "Bad request: " + reason);
+    }
+
+    private static Map<String, Object> error(String message) {
+        return result("error", message == null ? "Internal error" : message);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,205 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+// Runs database work off the event dispatch thread and hands the result back on it.
+// While a window has work in flight it shows a busy indicator; closing the window
+// cancels whatever it still has running.
+//
+// Each call is traced as part of the action that started it: the current span when
+// there is one (e.g. a callback issuing follow-up work), otherwise a new action named
+// after the window and the button being clicked. The worker's part is the "query"
+// span and the callback's the "update" span, and the action stays open until every
+// call made for it has called back.
+final class AsyncDb {
+    private static final ExecutorService EXECUTOR = createExecutor();
+    private static final String TASKS_KEY = "AsyncDb.tasks";
+
+    interface Query<T> {
+        T run() throws Exception;
+    }
+
+    private AsyncDb() {
+    }
+
+    private static ExecutorService createExecutor() {
+        try {
+            // Virtual threads where the runtime has them (JDK 21+)
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "db-worker");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    public static <T> SwingWorker<T, Void> run(Component owner, Query<T> query, Consumer<? super T> onSuccess) {
+        return run(owner, query, onSuccess, e -> {
+            e.printStackTrace();
+            JOptionPane.showMessageDialog(owner, "Error: " + e.getMessage());
+        });
+    }
+
+    public static <T> SwingWorker<T, Void> run(Component owner, Query<T> query, Consumer<? super T> onSuccess,
+            Consumer<? super Exception> onError) {
+        RootPaneContainer container = containerOf(owner);
+        Trace.Span parent = Trace.current();
+        if (parent == null)
+            try (Trace.Span action = Trace.action(Trace.actionName(owner))) {
+                parent = action.hold();
+            }
+        else
+            parent.hold();
+        Trace.Span traced = parent;
+        SwingWorker<T, Void> worker = new SwingWorker<>() {
+            @Override
+            @SuppressWarnings("try")
+            protected T doInBackground() throws Exception {
+                try (Trace.Scope scope = Trace.resume(traced); Trace.Span s = Trace.span("query")) {
+                    return query.run();
+                }
+            }
+
+            @Override
+            @SuppressWarnings("try")
+            protected void done() {
+                try (Trace.Scope scope = Trace.resume(traced); Trace.Span s = Trace.span("update")) {
+                    complete();
+                } finally {
+                    traced.release();
+                }
+            }
+
+            private void complete() {
+                untrack(container, this);
+                if (isCancelled())
+                    return;
+                T result;
+                try {
+                    result = get();
+                } catch (CancellationException | InterruptedException e) {
+                    return;
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    onError.accept(cause instanceof Exception ? (Exception) cause : new RuntimeException(cause));
+                    return;
+                }
+                onSuccess.accept(result);
+            }
+        };
+        track(container, worker);
+        EXECUTOR.execute(worker);
+        return worker;
+    }
+
+    private static RootPaneContainer containerOf(Component owner) {
+        if (owner == null)
+            return null; // background work nobody waits on; no busy indicator
+        Window w = owner instanceof Window ? (Window) owner : SwingUtilities.getWindowAncestor(owner);
+        return w instanceof RootPaneContainer ? (RootPaneContainer) w : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Set<SwingWorker<?, ?>> tasksOf(RootPaneContainer container) {
+        JRootPane root = container.getRootPane();
+        Set<SwingWorker<?, ?>> tasks = (Set<SwingWorker<?, ?>>) root.getClientProperty(TASKS_KEY);
+        if (tasks == null) {
+            tasks = Collections.newSetFromMap(new IdentityHashMap<>());
+            root.putClientProperty(TASKS_KEY, tasks);
+            container.setGlassPane(new BusyPane());
+            Set<SwingWorker<?, ?>> inFlight = tasks;
+            ((Window) container).addWindowListener(new WindowAdapter() {
+                @Override
+                public void windowClosing(WindowEvent e) {
+                    cancelAll(inFlight);
+                }
+
+                @Override
+                public void windowClosed(WindowEvent e) {
+                    cancelAll(inFlight);
+                }
+            });
+        }
+        return tasks;
+    }
+
+    private static void cancelAll(Set<SwingWorker<?, ?>> tasks) {
+        for (SwingWorker<?, ?> w : tasks.toArray(new SwingWorker<?, ?>[0]))
+            w.cancel(true);
+        tasks.clear();
+    }
+
+    private static void track(RootPaneContainer container, SwingWorker<?, ?> worker) {
+        if (container == null)
+            return;
+        Set<SwingWorker<?, ?>> tasks = tasksOf(container);
+        tasks.add(worker);
+        container.getGlassPane().setVisible(true);
+    }
+
+    private static void untrack(RootPaneContainer container, SwingWorker<?, ?> worker) {
+        if (container == null)
+            return;
+        Set<SwingWorker<?, ?>> tasks = tasksOf(container);
+        tasks.remove(worker);
+        if (tasks.isEmpty())
+            container.getGlassPane().setVisible(false);
+    }
+
+    // Overlay that swallows clicks while work is in flight, so a slow operation cannot be
+    // submitted twice. The progress bar only appears if the work takes noticeably long.
+    private static final class BusyPane extends JPanel {
+        private static final long serialVersionUID = 1L;
+
+        private final JProgressBar bar = new JProgressBar();
+        private final Timer reveal = new Timer(200, e -> {
+            bar.setVisible(true);
+            repaint();
+        });
+
+        BusyPane() {
+            super(new GridBagLayout());
+            setOpaque(false);
+            bar.setIndeterminate(true);
+            bar.setString("Working...");
+            bar.setStringPainted(true);
+            add(bar);
+            reveal.setRepeats(false);
+            addMouseListener(new MouseAdapter() {
+            });
+            setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        }
+
+        @Override
+        public void setVisible(boolean visible) {
+            if (visible && !isVisible()) {
+                bar.setVisible(false);
+                reveal.restart();
+            } else if (!visible) {
+                reveal.stop();
+            }
+            super.setVisible(visible);
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            if (bar.isVisible()) {
+                g.setColor(new Color(255, 255, 255, 96));
+                g.fillRect(0, 0, getWidth(), getHeight());
+            }
+            super.paintComponent(g);
+        }
+    }
+}
\ No newline at end of file
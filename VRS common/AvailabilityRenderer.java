@@ -0,0 +1,30 @@
+import javax.swing.*;
+import javax.swing.table.DefaultTableCellRenderer;
+import java.awt.*;
+import java.util.Set;
+
+// Colours the "Available" column of a vehicle grid: blue for vehicles the current
+// customer has booked (their IDs in 'mine', read from column 0), red for vehicles
+// someone else has, black otherwise. 'mine' may be null, as on the admin grid.
+class AvailabilityRenderer extends DefaultTableCellRenderer {
+    private static final long serialVersionUID = 1L;
+
+    private final Set<?> mine;
+
+    AvailabilityRenderer(Set<?> mine) {
+        this.mine = mine;
+    }
+
+    @Override
+    public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+            boolean hasFocus, int row, int column) {
+        Component c = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+        if (mine != null && mine.contains(table.getModel().getValueAt(table.convertRowIndexToModel(row), 0)))
+            c.setForeground(Color.BLUE);
+        else if ("No".equals(value))
+            c.setForeground(Color.RED);
+        else
+            c.setForeground(Color.BLACK);
+        return c;
+    }
+}
\ No newline at end of file
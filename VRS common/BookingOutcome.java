@@ -0,0 +1,5 @@
+// What a booking or return came to, whichever backend it ran against. BUSY means
+// another session in this process was changing the same vehicle at that moment.
+enum BookingOutcome {
+    BOOKED, RETURNED, UNAVAILABLE, NOT_BOOKED, BUSY
+}
\ No newline at end of file
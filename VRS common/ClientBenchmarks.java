@@ -0,0 +1,140 @@
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+// Microbenchmarks for the client-side hot paths: password hashing, hex encoding,
+// filling a DefaultTableModel, the vehicle grid's availability renderer and a
+// type-ahead search and a faceted browse (book or return, filter, recount) over the
+// vehicle index. The editions run these too and may add cases of their own (see
+// MongoClientBenchmarks).
+//
+// Usage: java -Djava.awt.headless=true ClientBenchmarks
+//   vrs.bench.filter      regex of benchmark names to run          (all)
+//   vrs.bench.rows        table sizes to fill          (10000,100000,1000000)
+//   vrs.bench.fleet       vehicles in the search index                 (10000)
+//   vrs.bench.warmup / vrs.bench.iterations / vrs.bench.iterationMs   (3 / 5 / 1000)
+//   vrs.bench.forks       separate JVMs to measure in; 0 runs in this one    (3)
+//   vrs.bench.out         write the results to this JSON file
+//   vrs.bench.baseline    JSON results to compare against; written from this run
+//                         if the file doesn't exist yet
+//   vrs.bench.tolerance   slowdown or extra allocation allowed      (0.10)
+// Exits with status 1 when a benchmark regressed against the baseline, i.e. it got
+// slower by more than the tolerance and by more than the spread both runs measured.
+public class ClientBenchmarks {
+    private static final String[] VEHICLE_COLUMNS = { "Vehicle ID", "Model", "Category", "Rent/Day", "Available" };
+
+    public static void main(String[] args) throws Exception {
+        System.exit(run(ClientBenchmarks.class, cases()));
+    }
+
+    // The shared cases, as configured
+    static Microbench cases() {
+        Microbench bench = new Microbench(Integer.getInteger("vrs.bench.warmup", 3),
+                Integer.getInteger("vrs.bench.iterations", 5), Long.getLong("vrs.bench.iterationMs", 1000L));
+
+        String[] passwords = new String[1024];
+        byte[][] digests = new byte[1024][];
+        for (int i = 0; i < passwords.length; i++) {
+            passwords[i] = "password-" + i;
+            digests[i] = HexFormat.of().parseHex(Credentials.sha256Hex(passwords[i]));
+        }
+        bench.add("credentials.sha256Hex", i -> Credentials.sha256Hex(passwords[i & 1023]));
+        bench.add("hexFormat.formatHex", i -> HexFormat.of().formatHex(digests[i & 1023]));
+
+        for (String n : System.getProperty("vrs.bench.rows", "10000,100000,1000000").split(",")) {
+            List<Object[]> rows = vehicleRows(Integer.parseInt(n.trim()));
+            bench.add("tableModel.addRow/" + n.trim(), i -> {
+                DefaultTableModel m = new DefaultTableModel(VEHICLE_COLUMNS, 0);
+                for (Object[] row : rows)
+                    m.addRow(row);
+                return m;
+            });
+        }
+
+        DefaultTableModel grid = new DefaultTableModel(VEHICLE_COLUMNS, 0);
+        for (Object[] row : vehicleRows(1000))
+            grid.addRow(row);
+        JTable table = new JTable(grid);
+        Set<Integer> mine = new HashSet<>();
+        for (int id = 1; id <= 1000; id += 20)
+            mine.add(id);
+        AvailabilityRenderer customer = new AvailabilityRenderer(mine);
+        AvailabilityRenderer admin = new AvailabilityRenderer(null);
+        bench.add("availabilityRenderer.customer", i -> customer.getTableCellRendererComponent(table,
+                grid.getValueAt(i % 1000, 4), false, false, i % 1000, 4));
+        bench.add("availabilityRenderer.admin", i -> admin.getTableCellRendererComponent(table,
+                grid.getValueAt(i % 1000, 4), false, false, i % 1000, 4));
+
+        // A customer typing "model 123" with a rent cap, one keystroke per call
+        VehicleIndex index = VehicleIndex.detached();
+        for (Object[] r : vehicleRows(Integer.getInteger("vrs.bench.fleet", 10000)))
+            index.added((Integer) r[0], (String) r[1], (String) r[2], (Double) r[3], "Yes".equals(r[4]));
+        String[] typed = { "m", "mo", "mod", "mode", "model", "model 1", "model 12", "model 123" };
+        bench.add("vehicleIndex.search", i -> index.search(new VehicleIndex.Query(typed[i & 7], null, 150.0, true))
+                .fetch(null, 0, 200));
+        VehicleIndex.Query ticked = new VehicleIndex.Query("", null, null, true, Set.of("category 1", "category 3"),
+                Set.of(1));
+        bench.add("vehicleIndex.facets", i -> {
+            index.availabilityChanged(1 + (i & 1023), (i & 1) == 0);
+            return index.search(ticked).fetch(null, 0, 200).size() + index.facets().categories.size();
+        });
+        return bench;
+    }
+
+    // Measures the cases in forked JVMs, each started through main, or in this one when
+    // it is itself a fork or forking is off; then writes and checks the results as
+    // configured. The exit status.
+    static int run(Class<?> main, Microbench bench) throws Exception {
+        Pattern filter = Pattern.compile(System.getProperty("vrs.bench.filter", ""));
+        String fork = System.getProperty("vrs.bench.forkOut");
+        if (fork != null) {
+            Microbench.write(Paths.get(fork), bench.run(filter));
+            return 0;
+        }
+        int forks = Integer.getInteger("vrs.bench.forks", 3);
+        return export(forks > 0 ? Microbench.forked(main, forks, "vrs.bench.forkOut") : bench.run(filter));
+    }
+
+    // Vehicle grid rows as PageSources produces them
+    static List<Object[]> vehicleRows(int n) {
+        List<Object[]> rows = new ArrayList<>(n);
+        for (int id = 1; id <= n; id++)
+            rows.add(new Object[] { id, "Model " + id, "Category " + id % 7, 20.0 + id % 280,
+                    id % 3 == 0 ? "No" : "Yes" });
+        return rows;
+    }
+
+    // Writes and checks results as configured; the exit status
+    private static int export(List<Microbench.Result> results) throws Exception {
+        String out = System.getProperty("vrs.bench.out");
+        if (out != null)
+            Microbench.write(Paths.get(out), results);
+        String baseline = System.getProperty("vrs.bench.baseline");
+        if (baseline == null)
+            return 0;
+        Path base = Paths.get(baseline);
+        if (!Files.exists(base)) {
+            Microbench.write(base, results);
+            System.out.println("Baseline stored in " + base);
+            return 0;
+        }
+        List<String> regressions = Microbench.compare(base, results,
+                Double.parseDouble(System.getProperty("vrs.bench.tolerance", "0.10")));
+        if (regressions.isEmpty()) {
+            System.out.println("No regressions against " + base);
+            return 0;
+        }
+        System.out.println("Regressions against " + base + ":");
+        for (String r : regressions)
+            System.out.println("  " + r);
+        return 1;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,87 @@
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+// What every edition's credential lookup shares: the result of a login, the forms
+// usernames and passwords are stored and compared in, and a short memory of failed
+// attempts so a repeated wrong login is answered without a query. The lookups
+// themselves are JdbcCredentials and MongoCredentials.
+final class Credentials {
+    private static final long NEGATIVE_TTL_MS = Long.getLong("vrs.login.negativeTtlMs", 30_000L);
+    private static final int NEGATIVE_MAX_ENTRIES = 1000;
+
+    // Failed (key, hash) pairs and when they expire; shared by every login window
+    private static final Map<String, Long> recentFailures = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > NEGATIVE_MAX_ENTRIES;
+        }
+    };
+
+    // Result of a successful credential check
+    static final class Login {
+        final boolean admin;
+        final int customerId;
+        final String name;
+
+        Login(boolean admin, int customerId, String name) {
+            this.admin = admin;
+            this.customerId = customerId;
+            this.name = name;
+        }
+    }
+
+    private Credentials() {
+    }
+
+    static String normalize(String username) {
+        return username.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // Passwords are stored and compared as hex SHA-256
+    static String sha256Hex(String input) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            byte[] digest = md.digest(input.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // True while this username/password pair is remembered as wrong
+    static boolean recentlyFailed(String username, String hashedPassword) {
+        String failureKey = failureKey(username, hashedPassword);
+        synchronized (recentFailures) {
+            Long expires = recentFailures.get(failureKey);
+            if (expires == null)
+                return false;
+            if (expires > System.currentTimeMillis())
+                return true;
+            recentFailures.remove(failureKey);
+            return false;
+        }
+    }
+
+    // Remembers a wrong username/password pair for vrs.login.negativeTtlMs
+    static void failed(String username, String hashedPassword) {
+        synchronized (recentFailures) {
+            recentFailures.put(failureKey(username, hashedPassword), System.currentTimeMillis() + NEGATIVE_TTL_MS);
+        }
+    }
+
+    // A new account can turn a cached failure into a valid login
+    public static void forget(String username) {
+        String prefix = normalize(username) + '\u0000';
+        synchronized (recentFailures) {
+            recentFailures.keySet().removeIf(k -> k.startsWith(prefix));
+        }
+    }
+
+    private static String failureKey(String username, String hashedPassword) {
+        return normalize(username) + '\u0000' + hashedPassword;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,163 @@
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+import java.util.zip.GZIPOutputStream;
+
+// Output formats for DataExport. Both write rows as they arrive, so memory use is
+// independent of how many rows are exported.
+final class ExportFormats {
+    enum Type {
+        INT, DOUBLE, STRING, DATE
+    }
+
+    static final class Column {
+        final String name;
+        final Type type;
+
+        Column(String name, Type type) {
+            this.name = name;
+            this.type = type;
+        }
+    }
+
+    interface Sink extends Closeable {
+        void row(Object[] values) throws IOException;
+    }
+
+    private ExportFormats() {
+    }
+
+    static OutputStream open(Path file, boolean gzip) throws IOException {
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        OutputStream out = new BufferedOutputStream(Channels.newOutputStream(ch), 1 << 16);
+        return gzip ? new GZIPOutputStream(out, 1 << 16) : out;
+    }
+
+    static Sink csv(OutputStream out, Column[] columns) throws IOException {
+        Writer w = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0)
+                w.write(',');
+            w.write(columns[i].name);
+        }
+        w.write('\n');
+        return new Sink() {
+            @Override
+            public void row(Object[] values) throws IOException {
+                for (int i = 0; i < values.length; i++) {
+                    if (i > 0)
+                        w.write(',');
+                    Object v = values[i];
+                    if (v instanceof Date)
+                        w.write(((Date) v).toInstant().toString());
+                    else if (v != null)
+                        writeQuoted(w, v.toString());
+                }
+                w.write('\n');
+            }
+
+            @Override
+            public void close() throws IOException {
+                w.close();
+            }
+        };
+    }
+
+    private static void writeQuoted(Writer w, String s) throws IOException {
+        boolean quote = s.indexOf(',') >= 0 || s.indexOf('"') >= 0 || s.indexOf('\n') >= 0 || s.indexOf('\r') >= 0;
+        if (!quote) {
+            w.write(s);
+            return;
+        }
+        w.write('"');
+        w.write(s.replace("\"", "\"\""));
+        w.write('"');
+    }
+
+    // Columnar binary layout:
+    //   "VRSC" u8 version, u16 column count, then per column: UTF name, u8 type
+    //   row groups: i32 row count (0 ends the file), then per column a null bitmap
+    //   (ceil(rows/8) bytes) followed by the non-null values of that column:
+    //   INT i32, DOUBLE f64, DATE i64 epoch millis, STRING i32 byte length + UTF-8
+    // Rows are buffered one group at a time, so memory is bounded by the group size.
+    static Sink columnar(OutputStream out, Column[] columns) throws IOException {
+        return columnar(out, columns, 4096);
+    }
+
+    static Sink columnar(OutputStream out, Column[] columns, int groupSize) throws IOException {
+        DataOutputStream d = new DataOutputStream(out);
+        d.writeBytes("VRSC");
+        d.writeByte(1);
+        d.writeShort(columns.length);
+        for (Column c : columns) {
+            d.writeUTF(c.name);
+            d.writeByte(c.type.ordinal());
+        }
+        Object[][] group = new Object[columns.length][groupSize];
+        return new Sink() {
+            private int rows;
+
+            @Override
+            public void row(Object[] values) throws IOException {
+                for (int c = 0; c < columns.length; c++)
+                    group[c][rows] = values[c];
+                if (++rows == groupSize)
+                    flush();
+            }
+
+            private void flush() throws IOException {
+                if (rows == 0)
+                    return;
+                d.writeInt(rows);
+                for (int c = 0; c < columns.length; c++) {
+                    Object[] col = group[c];
+                    byte[] nulls = new byte[(rows + 7) / 8];
+                    for (int r = 0; r < rows; r++)
+                        if (col[r] == null)
+                            nulls[r >> 3] |= 1 << (r & 7);
+                    d.write(nulls);
+                    for (int r = 0; r < rows; r++) {
+                        Object v = col[r];
+                        if (v == null)
+                            continue;
+                        switch (columns[c].type) {
+                            case INT:
+                                d.writeInt(((Number) v).intValue());
+                                break;
+                            case DOUBLE:
+                                d.writeDouble(((Number) v).doubleValue());
+                                break;
+                            case DATE:
+                                d.writeLong(((Date) v).getTime());
+                                break;
+                            default:
+                                byte[] b = v.toString().getBytes(StandardCharsets.UTF_8);
+                                d.writeInt(b.length);
+                                d.write(b);
+                        }
+                        col[r] = null;
+                    }
+                }
+                rows = 0;
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+                d.writeInt(0);
+                d.close();
+            }
+        };
+    }
+}
\ No newline at end of file
@@ -0,0 +1,253 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Live fleet counters. Vehicles are counted per (category, rent band, available) cell;
+// totals and the per-category and per-band breakdowns are sums over the cells, so
+// the report needs no query. Cells are seeded from one grouped read of the vehicles,
+// adjusted as vehicles are added, edited, deleted, booked and returned, and
+// periodically re-read from the database to correct drift (e.g. changes made by
+// another app instance). Changes made while a re-read runs are replayed onto what it
+// read, so none is lost when it is swapped in.
+//
+// There is one set of counters per backend (connection pool or Mongo client), which
+// each edition reads through its own Loader.
+class FleetStats {
+    private static final long RECONCILE_MS = Long.getLong("vrs.stats.reconcileMs", 300_000L);
+    private static final double[] RENT_BANDS = parseBands(System.getProperty("vrs.stats.rentBands", "50,100,200"));
+
+    private static final Map<Object, FleetStats> INSTANCES = new IdentityHashMap<>();
+
+    // Reads the vehicle count of every cell from the database
+    interface Loader {
+        Map<Cell, Long> load() throws Exception;
+    }
+
+    static final class Cell {
+        final String category;
+        final int band;
+        final boolean available;
+
+        Cell(String category, double rent, boolean available) {
+            this.category = category == null ? "(none)" : category;
+            this.band = bandOf(rent);
+            this.available = available;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Cell))
+                return false;
+            Cell c = (Cell) o;
+            return band == c.band && available == c.available && category.equals(c.category);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(category, band, available);
+        }
+    }
+
+    private final Loader loader;
+    private volatile ConcurrentHashMap<Cell, AtomicLong> cells = new ConcurrentHashMap<>();
+    private volatile boolean seeded;
+    // Guarded by this: net changes made while a re-read runs, replayed onto what it
+    // read; null when no re-read is running
+    private Map<Cell, Long> pending;
+    private boolean failing; // re-reads are failing; guarded by reloading
+    private final Object reloading = new Object(); // one re-read at a time
+
+    private FleetStats(Loader loader) {
+        this.loader = loader;
+    }
+
+    // The counters for backend's vehicles, seeded and reconciled in the background. The
+    // first call for a backend creates them with loader; later calls get the same ones.
+    public static FleetStats of(Object backend, Loader loader) {
+        synchronized (INSTANCES) {
+            FleetStats stats = INSTANCES.get(backend);
+            if (stats == null) {
+                stats = new FleetStats(loader);
+                ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread t = new Thread(r, "fleet-stats");
+                    t.setDaemon(true);
+                    return t;
+                });
+                timer.scheduleWithFixedDelay(stats::reconcile, 0, RECONCILE_MS, TimeUnit.MILLISECONDS);
+                INSTANCES.put(backend, stats);
+            }
+            return stats;
+        }
+    }
+
+    // Counters with no database behind them, for a store that reports every change
+    // (the in-memory backend); nothing is seeded or reconciled
+    static FleetStats detached() {
+        FleetStats stats = new FleetStats(null);
+        stats.seeded = true;
+        return stats;
+    }
+
+    // --- Events ---
+
+    public void added(String category, double rent, boolean available) {
+        bump(new Cell(category, rent, available), 1);
+    }
+
+    public void removed(String category, double rent, boolean available) {
+        bump(new Cell(category, rent, available), -1);
+    }
+
+    public void changed(String oldCategory, double oldRent, String newCategory, double newRent, boolean available) {
+        removed(oldCategory, oldRent, available);
+        added(newCategory, newRent, available);
+    }
+
+    // Booked (available -> rented) or returned (rented -> available)
+    public void availabilityChanged(String category, double rent, boolean nowAvailable) {
+        removed(category, rent, !nowAvailable);
+        added(category, rent, nowAvailable);
+    }
+
+    private synchronized void bump(Cell cell, long delta) {
+        cells.computeIfAbsent(cell, c -> new AtomicLong()).addAndGet(delta);
+        if (pending != null)
+            pending.merge(cell, delta, Long::sum);
+    }
+
+    // --- Report ---
+
+    public String report() {
+        if (!seeded)
+            reconcile();
+        long total = 0, available = 0;
+        Map<String, long[]> byCategory = new TreeMap<>();
+        long[][] byBand = new long[RENT_BANDS.length + 1][2];
+        for (Map.Entry<Cell, AtomicLong> e : cells.entrySet()) {
+            long n = e.getValue().get();
+            Cell c = e.getKey();
+            int a = c.available ? 1 : 0;
+            total += n;
+            available += n * a;
+            long[] cat = byCategory.computeIfAbsent(c.category, k -> new long[2]);
+            cat[0] += n;
+            cat[1] += n * a;
+            byBand[c.band][0] += n;
+            byBand[c.band][1] += n * a;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("Total: ").append(total).append("\nAvailable: ").append(available).append("\nRented: ")
+                .append(total - available);
+        sb.append("\n\nBy category (total / available):");
+        for (Map.Entry<String, long[]> e : byCategory.entrySet())
+            if (e.getValue()[0] != 0)
+                sb.append("\n  ").append(e.getKey()).append(": ").append(e.getValue()[0]).append(" / ")
+                        .append(e.getValue()[1]);
+        sb.append("\n\nBy rent per day (total / available):");
+        for (int b = 0; b < byBand.length; b++)
+            if (byBand[b][0] != 0)
+                sb.append("\n  ").append(bandLabel(b)).append(": ").append(byBand[b][0]).append(" / ")
+                        .append(byBand[b][1]);
+        return sb.toString();
+    }
+
+    // --- Seeding and reconciliation ---
+
+    // Re-reads every cell and swaps the counts in. Says so once when re-reads start
+    // failing, e.g. while the database is down, and once when they work again.
+    void reconcile() {
+        if (loader == null)
+            return;
+        synchronized (reloading) {
+            synchronized (this) {
+                pending = new HashMap<>();
+            }
+            try {
+                Map<Cell, Long> read = loader.load();
+                synchronized (this) {
+                    ConcurrentHashMap<Cell, AtomicLong> fresh = new ConcurrentHashMap<>();
+                    read.forEach((c, n) -> fresh.computeIfAbsent(c, k -> new AtomicLong()).addAndGet(n));
+                    pending.forEach((c, n) -> fresh.computeIfAbsent(c, k -> new AtomicLong()).addAndGet(n));
+                    List<String> drift = drift(fresh);
+                    cells = fresh;
+                    if (seeded && !drift.isEmpty())
+                        System.out.println("Fleet stats drift corrected: " + String.join(", ", drift));
+                    seeded = true;
+                }
+                if (failing) {
+                    failing = false;
+                    System.out.println("Fleet stats: vehicles re-read again");
+                }
+            } catch (Exception e) {
+                if (!failing) {
+                    failing = true;
+                    System.err.println("Fleet stats: re-reading the vehicles failed, retrying every "
+                            + RECONCILE_MS / 1000 + "s: " + e.getMessage());
+                }
+            } finally {
+                synchronized (this) {
+                    pending = null;
+                }
+            }
+        }
+    }
+
+    // The cells whose count differs between the current counters and fresh
+    private List<String> drift(Map<Cell, AtomicLong> fresh) {
+        List<String> drift = new ArrayList<>();
+        Map<Cell, Long> before = new HashMap<>();
+        cells.forEach((c, n) -> before.merge(c, n.get(), Long::sum));
+        fresh.forEach((c, n) -> {
+            long had = before.getOrDefault(c, 0L);
+            if (had != n.get())
+                drift.add(c.category + "/" + bandLabel(c.band) + "/" + (c.available ? "Y" : "N") + ": " + had
+                        + " -> " + n.get());
+            before.remove(c);
+        });
+        before.forEach((c, had) -> {
+            if (had != 0)
+                drift.add(c.category + "/" + bandLabel(c.band) + "/" + (c.available ? "Y" : "N") + ": " + had
+                        + " -> 0");
+        });
+        return drift;
+    }
+
+    // --- Rent bands ---
+
+    private static double[] parseBands(String spec) {
+        String[] parts = spec.split(",");
+        double[] bands = new double[parts.length];
+        for (int i = 0; i < parts.length; i++)
+            bands[i] = Double.parseDouble(parts[i].trim());
+        return bands;
+    }
+
+    static int bandOf(double rent) {
+        int b = 0;
+        while (b < RENT_BANDS.length && rent >= RENT_BANDS[b])
+            b++;
+        return b;
+    }
+
+    static String bandLabel(int band) {
+        if (band == 0)
+            return "under " + fmt(RENT_BANDS[0]);
+        if (band == RENT_BANDS.length)
+            return fmt(RENT_BANDS[band - 1]) + " and up";
+        return fmt(RENT_BANDS[band - 1]) + " - " + fmt(RENT_BANDS[band]);
+    }
+
+    private static String fmt(double d) {
+        return d == Math.rint(d) ? String.valueOf((long) d) : String.valueOf(d);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,277 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+
+// RentalRepository backed by a remote ApiServer, for running the Swing client without
+// a database connection of its own. The session token from the last login is sent
+// with every request; the customer ID arguments are ignored by the server, which
+// acts on whoever is logged in.
+class HttpRentalRepository implements RentalRepository {
+    private final String base;
+    private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    private volatile String token;
+
+    public HttpRentalRepository(String baseUrl) {
+        this.base = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+    }
+
+    // --- Accounts ---
+
+    @Override
+    public Credentials.Login login(String username, String password) throws IOException, InterruptedException {
+        Map<String, Object> b = new LinkedHashMap<>();
+        b.put("username", username);
+        b.put("password", password);
+        HttpResponse<String> res = send("POST", "/api/login", b);
+        if (res.statusCode() == 401)
+            return null;
+        Map<String, Object> m = check(res);
+        token = (String) m.get("token");
+        return new Credentials.Login((Boolean) m.get("admin"), ((Number) m.get("customerId")).intValue(),
+                (String) m.get("name"));
+    }
+
+    @Override
+    public boolean register(String name, String mobile, String username, String password)
+            throws IOException, InterruptedException {
+        Map<String, Object> b = new LinkedHashMap<>();
+        b.put("name", name);
+        b.put("mobile", mobile);
+        b.put("username", username);
+        b.put("password", password);
+        return (Boolean) call("POST", "/api/register", b).get("created");
+    }
+
+    // --- Vehicles ---
+
+    @Override
+    public PageSource vehicles() {
+        return pages("/api/vehicles", "");
+    }
+
+    @Override
+    public PageSource searchVehicles(VehicleIndex.Query query) {
+        StringBuilder q = new StringBuilder("q=").append(URLEncoder.encode(query.text, StandardCharsets.UTF_8));
+        if (query.minRent != null)
+            q.append("&minRent=").append(query.minRent);
+        if (query.maxRent != null)
+            q.append("&maxRent=").append(query.maxRent);
+        if (query.availableOnly)
+            q.append("&available=true");
+        if (!query.categories.isEmpty())
+            q.append("&categories=").append(URLEncoder.encode(Json.write(query.categories), StandardCharsets.UTF_8));
+        if (!query.bands.isEmpty()) {
+            StringJoiner bands = new StringJoiner(",");
+            for (int band : query.bands)
+                bands.add(String.valueOf(band));
+            q.append("&bands=").append(bands);
+        }
+        return pages("/api/vehicles/search", q.toString());
+    }
+
+    @Override
+    public VehicleIndex.Facets vehicleFacets() throws IOException, InterruptedException {
+        Map<String, Object> m = call("GET", "/api/vehicles/facets", null);
+        return new VehicleIndex.Facets(facets(m.get("categories")), facets(m.get("bands")));
+    }
+
+    private static List<VehicleIndex.Facet> facets(Object list) {
+        List<VehicleIndex.Facet> facets = new ArrayList<>();
+        for (Object o : (List<?>) list) {
+            Map<?, ?> f = (Map<?, ?>) o;
+            facets.add(new VehicleIndex.Facet((String) f.get("key"), (String) f.get("label"),
+                    ((Number) f.get("available")).intValue(), ((Number) f.get("total")).intValue()));
+        }
+        return facets;
+    }
+
+    @Override
+    public void addVehicle(String model, String category, double rent) throws IOException, InterruptedException {
+        call("POST", "/api/vehicles", vehicle(model, category, rent));
+    }
+
+    @Override
+    public void updateVehicle(int vehicleId, String model, String category, double rent)
+            throws IOException, InterruptedException {
+        call("PUT", "/api/vehicles/" + vehicleId, vehicle(model, category, rent));
+    }
+
+    @Override
+    public void deleteVehicle(int vehicleId) throws IOException, InterruptedException {
+        call("DELETE", "/api/vehicles/" + vehicleId, null);
+    }
+
+    private static Map<String, Object> vehicle(String model, String category, double rent) {
+        Map<String, Object> b = new LinkedHashMap<>();
+        b.put("model", model);
+        b.put("category", category);
+        b.put("rent", rent);
+        return b;
+    }
+
+    // --- Bookings ---
+
+    @Override
+    public BookingOutcome book(int customerId, int vehicleId) throws IOException, InterruptedException {
+        return outcome(call("POST", "/api/bookings", Map.of("vehicleId", vehicleId)));
+    }
+
+    @Override
+    public BookingOutcome returnVehicle(int customerId, int vehicleId) throws IOException, InterruptedException {
+        return outcome(call("POST", "/api/returns", Map.of("vehicleId", vehicleId)));
+    }
+
+    private static BookingOutcome outcome(Map<String, Object> m) {
+        return BookingOutcome.valueOf((String) m.get("outcome"));
+    }
+
+    @Override
+    public Set<Integer> activeVehicles(int customerId) throws IOException, InterruptedException {
+        Set<Integer> active = new HashSet<>();
+        for (Object id : (List<?>) call("GET", "/api/me/active", null).get("vehicles"))
+            active.add(((Number) id).intValue());
+        return active;
+    }
+
+    @Override
+    public List<Object[]> history(int customerId) throws IOException, InterruptedException {
+        return rows(call("GET", "/api/me/history", null));
+    }
+
+    @Override
+    public PageSource bookings(String statusFilter) {
+        return pages("/api/bookings", "status=" + URLEncoder.encode(statusFilter, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public boolean bookingExists(int bookingId) throws IOException, InterruptedException {
+        return (Boolean) call("GET", "/api/bookings/" + bookingId, null).get("exists");
+    }
+
+    // --- Payments ---
+
+    @Override
+    public List<Object[]> payments(int customerId, Object[] after, int limit) throws IOException, InterruptedException {
+        String q = "?limit=" + limit;
+        if (after != null)
+            q += "&afterId=" + after[0] + "&afterDate=" + ((Date) after[4]).getTime();
+        return rows(call("GET", "/api/me/payments" + q, null));
+    }
+
+    @Override
+    public boolean recordPayment(int bookingId, double amount, String method) throws IOException, InterruptedException {
+        Map<String, Object> b = new LinkedHashMap<>();
+        b.put("bookingId", bookingId);
+        b.put("amount", amount);
+        b.put("method", method);
+        HttpResponse<String> res = send("POST", "/api/payments", b);
+        if (res.statusCode() == 404)
+            return false;
+        check(res);
+        return true;
+    }
+
+    // --- Customers and reports ---
+
+    @Override
+    public List<Object[]> customers() throws IOException, InterruptedException {
+        return rows(call("GET", "/api/customers", null));
+    }
+
+    // The server does the whole deletion within the request; no progress comes back
+    @Override
+    public void deleteCustomer(int customerId, Progress progress) throws IOException, InterruptedException {
+        call("DELETE", "/api/customers/" + customerId, null);
+    }
+
+    @Override
+    public String fleetReport() throws IOException, InterruptedException {
+        return (String) call("GET", "/api/reports/fleet", null).get("report");
+    }
+
+    @Override
+    public List<Leaderboard.Entry> topCustomers() throws IOException, InterruptedException {
+        List<Leaderboard.Entry> top = new ArrayList<>();
+        for (Object o : (List<?>) call("GET", "/api/reports/top", null).get("customers")) {
+            Map<?, ?> m = (Map<?, ?>) o;
+            top.add(new Leaderboard.Entry(((Number) m.get("customerId")).intValue(), (String) m.get("name"),
+                    (String) m.get("mobile"), ((Number) m.get("bookings")).intValue()));
+        }
+        return top;
+    }
+
+    // --- Transport ---
+
+    // A keyset-paged listing; extraQuery is appended to every request
+    private PageSource pages(String path, String extraQuery) {
+        String sep = extraQuery.isEmpty() ? "" : "&";
+        return new PageSource() {
+            @Override
+            public int count() throws Exception {
+                String q = extraQuery.isEmpty() ? "" : "?" + extraQuery;
+                return ((Number) call("GET", path + "/count" + q, null).get("count")).intValue();
+            }
+
+            @Override
+            public List<Object[]> fetch(Integer afterKey, int skip, int limit) throws Exception {
+                String q = "?" + extraQuery + sep + "skip=" + skip + "&limit=" + limit
+                        + (afterKey != null ? "&after=" + afterKey : "");
+                return rows(call("GET", path + q, null));
+            }
+        };
+    }
+
+    private static List<Object[]> rows(Map<String, Object> m) {
+        List<?> list = (List<?>) m.get("rows");
+        List<Object[]> rows = new ArrayList<>(list.size());
+        for (Object row : list)
+            rows.add(((List<?>) row).toArray());
+        return rows;
+    }
+
+    private Map<String, Object> call(String method, String path, Object body) throws IOException, InterruptedException {
+        return check(send(method, path, body));
+    }
+
+    @SuppressWarnings("try")
+    private HttpResponse<String> send(String method, String path, Object body) throws IOException, InterruptedException {
+        HttpRequest.Builder req = HttpRequest.newBuilder(URI.create(base + path)).timeout(Duration.ofSeconds(30))
+                .header("Accept", "application/json");
+        if (token != null)
+            req.header("Authorization", "Bearer " + token);
+        if (body != null)
+            req.header("Content-Type", "application/json")
+                    .method(method, HttpRequest.BodyPublishers.ofString(Json.write(body), StandardCharsets.UTF_8));
+        else
+            req.method(method, HttpRequest.BodyPublishers.noBody());
+        // Request bodies stay out of the trace; the login one carries a password
+        try (Trace.Span s = Trace.span("http", method + " " + path)) {
+            return http.send(req.build(), HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static Map<String, Object> check(HttpResponse<String> res) throws IOException {
+        Map<String, Object> m;
+        try {
+            m = Json.parseObject(res.body());
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Unexpected response from server (HTTP " + res.statusCode() + ")");
+        }
+        if (res.statusCode() / 100 != 2)
+            throw new IOException(m.getOrDefault("error", "HTTP " + res.statusCode()).toString());
+        return m;
+    }
+}
\ No newline at end of file
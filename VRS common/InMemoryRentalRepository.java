@@ -0,0 +1,564 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// RentalRepository held entirely in this process, for demos, load tests and CI runs
+// without a database (-Dvrs.backend=memory). Nothing survives a restart.
+//
+// Records live in IntTables indexed directly by their int ID. A vehicle's state is
+// changed under its own monitor, and so is a customer's booking list; when both are
+// needed the customer is locked first, and anything added for a customer is only
+// added while they are still there. Fleet counters, the vehicle search index and the
+// booking status index are kept current on every change, so the fleet report,
+// searches and status-filtered booking pages scan nothing. The top-customers list
+// walks every customer.
+class InMemoryRentalRepository implements RentalRepository {
+    private static final String BOOKED = "Booked";
+    private static final String RETURNED = "Returned";
+
+    // "username:password" of the one admin account
+    private static final String ADMIN = System.getProperty("vrs.memory.admin", "admin:admin");
+
+    private static final class Vehicle {
+        final int id;
+        // Guarded by this
+        String model;
+        String category;
+        double rent;
+        int heldBy; // BookingID of the open booking, 0 while available
+
+        Vehicle(int id, String model, String category, double rent) {
+            this.id = id;
+            this.model = model;
+            this.category = category;
+            this.rent = rent;
+        }
+
+        synchronized Object[] row() {
+            return new Object[] { id, model, category, rent, heldBy == 0 ? "Yes" : "No" };
+        }
+
+        synchronized String model() {
+            return model;
+        }
+    }
+
+    private static final class Customer {
+        final int id;
+        final String name;
+        final String mobile;
+        final String username;
+        final String passwordHash;
+        // Guarded by this; oldest first
+        final List<Booking> bookings = new ArrayList<>();
+        final NavigableSet<Payment> payments = new ConcurrentSkipListSet<>(Payment.NEWEST_FIRST);
+
+        Customer(int id, String name, String mobile, String username, String passwordHash) {
+            this.id = id;
+            this.name = name;
+            this.mobile = mobile;
+            this.username = username;
+            this.passwordHash = passwordHash;
+        }
+    }
+
+    private static final class Booking {
+        final int id;
+        final Customer customer;
+        final int vehicleId;
+        final Date bookingDate = new Date();
+        // Guarded by this
+        String status = BOOKED;
+        Date returnDate;
+
+        Booking(int id, Customer customer, int vehicleId) {
+            this.id = id;
+            this.customer = customer;
+            this.vehicleId = vehicleId;
+        }
+    }
+
+    private static final class Payment {
+        static final Comparator<Payment> NEWEST_FIRST = Comparator.comparing((Payment p) -> p.date)
+                .thenComparingInt(p -> p.id).reversed();
+
+        final int id;
+        final int bookingId;
+        final double amount;
+        final String method;
+        final Date date;
+
+        Payment(int id, int bookingId, double amount, String method, Date date) {
+            this.id = id;
+            this.bookingId = bookingId;
+            this.amount = amount;
+            this.method = method;
+            this.date = date;
+        }
+    }
+
+    private final IntTable<Vehicle> vehicles = new IntTable<>();
+    private final IntTable<Customer> customers = new IntTable<>();
+    private final IntTable<Booking> bookings = new IntTable<>();
+    private final IntTable<Payment> payments = new IntTable<>();
+    private final ConcurrentHashMap<String, Customer> byUsername = new ConcurrentHashMap<>();
+    // BookingIDs per status, newest first
+    private final Map<String, ConcurrentSkipListSet<Integer>> byStatus = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> statusCounts = new ConcurrentHashMap<>();
+    private final FleetStats stats = FleetStats.detached();
+    private final VehicleIndex index = VehicleIndex.detached();
+    private final String adminKey;
+    private final String adminHash;
+
+    public InMemoryRentalRepository() {
+        int colon = ADMIN.indexOf(':');
+        adminKey = Credentials.normalize(ADMIN.substring(0, colon));
+        adminHash = Credentials.sha256Hex(ADMIN.substring(colon + 1));
+    }
+
+    // --- Accounts ---
+
+    @Override
+    public Credentials.Login login(String username, String password) {
+        String key = Credentials.normalize(username);
+        String hash = Credentials.sha256Hex(password);
+        if (key.equals(adminKey))
+            return hash.equals(adminHash) ? new Credentials.Login(true, 0, null) : null;
+        Customer c = byUsername.get(key);
+        return c != null && c.passwordHash.equals(hash) ? new Credentials.Login(false, c.id, c.name) : null;
+    }
+
+    @Override
+    public boolean register(String name, String mobile, String username, String password) {
+        String key = Credentials.normalize(username);
+        if (key.equals(adminKey))
+            return false;
+        Customer c = new Customer(customers.nextId(), name, mobile, username, Credentials.sha256Hex(password));
+        customers.put(c.id, c);
+        if (byUsername.putIfAbsent(key, c) != null) {
+            customers.remove(c.id);
+            return false;
+        }
+        return true;
+    }
+
+    // --- Vehicles ---
+
+    @Override
+    public PageSource vehicles() {
+        return new PageSource() {
+            @Override
+            public int count() {
+                return vehicles.size();
+            }
+
+            @Override
+            public List<Object[]> fetch(Integer afterKey, int skip, int limit) {
+                List<Object[]> rows = new ArrayList<>(limit);
+                int last = vehicles.lastId();
+                for (int id = afterKey == null ? 1 : afterKey + 1; id <= last && rows.size() < limit; id++) {
+                    Vehicle v = vehicles.get(id);
+                    if (v != null && skip-- <= 0)
+                        rows.add(v.row());
+                }
+                return rows;
+            }
+        };
+    }
+
+    @Override
+    public PageSource searchVehicles(VehicleIndex.Query query) {
+        return index.search(query);
+    }
+
+    @Override
+    public VehicleIndex.Facets vehicleFacets() throws Exception {
+        return index.facets();
+    }
+
+    @Override
+    public void addVehicle(String model, String category, double rent) {
+        Vehicle v = new Vehicle(vehicles.nextId(), model, category, rent);
+        vehicles.put(v.id, v);
+        stats.added(category, rent, true);
+        index.added(v.id, model, category, rent, true);
+    }
+
+    @Override
+    public void updateVehicle(int vehicleId, String model, String category, double rent) {
+        Vehicle v = vehicles.get(vehicleId);
+        if (v == null)
+            return;
+        synchronized (v) {
+            stats.changed(v.category, v.rent, category, rent, v.heldBy == 0);
+            v.model = model;
+            v.category = category;
+            v.rent = rent;
+            index.changed(vehicleId, model, category, rent);
+        }
+    }
+
+    @Override
+    public void deleteVehicle(int vehicleId) {
+        Vehicle v = vehicles.get(vehicleId);
+        if (v == null)
+            return;
+        synchronized (v) {
+            if (vehicles.remove(vehicleId) != null) {
+                stats.removed(v.category, v.rent, v.heldBy == 0);
+                index.removed(vehicleId);
+            }
+        }
+    }
+
+    // --- Bookings ---
+
+    @Override
+    public BookingOutcome book(int customerId, int vehicleId) {
+        Customer c = customers.get(customerId);
+        if (c == null)
+            throw new IllegalArgumentException("No customer " + customerId);
+        Vehicle v = vehicles.get(vehicleId);
+        if (v == null)
+            return BookingOutcome.UNAVAILABLE;
+        synchronized (c) {
+            if (customers.get(customerId) != c)
+                return BookingOutcome.UNAVAILABLE; // deleted while we waited
+            Booking b;
+            synchronized (v) {
+                if (v.heldBy != 0 || vehicles.get(vehicleId) != v)
+                    return BookingOutcome.UNAVAILABLE;
+                b = new Booking(bookings.nextId(), c, vehicleId);
+                bookings.put(b.id, b);
+                indexStatus(b.id, null, BOOKED);
+                v.heldBy = b.id;
+                stats.availabilityChanged(v.category, v.rent, false);
+                index.availabilityChanged(vehicleId, false);
+            }
+            c.bookings.add(b);
+        }
+        return BookingOutcome.BOOKED;
+    }
+
+    @Override
+    public BookingOutcome returnVehicle(int customerId, int vehicleId) {
+        Vehicle v = vehicles.get(vehicleId);
+        if (v == null)
+            return BookingOutcome.NOT_BOOKED;
+        synchronized (v) {
+            Booking b = bookings.get(v.heldBy);
+            if (b == null || b.customer.id != customerId)
+                return BookingOutcome.NOT_BOOKED;
+            close(b);
+            v.heldBy = 0;
+            stats.availabilityChanged(v.category, v.rent, true);
+            index.availabilityChanged(vehicleId, true);
+        }
+        return BookingOutcome.RETURNED;
+    }
+
+    // Marks an open booking returned; the caller holds its vehicle's monitor
+    private void close(Booking b) {
+        synchronized (b) {
+            b.status = RETURNED;
+            b.returnDate = new Date();
+        }
+        indexStatus(b.id, BOOKED, RETURNED);
+    }
+
+    private void indexStatus(int bookingId, String from, String to) {
+        if (from != null) {
+            byStatus.get(from).remove(bookingId);
+            statusCounts.get(from).decrementAndGet();
+        }
+        if (to != null) {
+            byStatus.computeIfAbsent(to, s -> new ConcurrentSkipListSet<>(Comparator.reverseOrder())).add(bookingId);
+            statusCounts.computeIfAbsent(to, s -> new AtomicInteger()).incrementAndGet();
+        }
+    }
+
+    @Override
+    public Set<Integer> activeVehicles(int customerId) {
+        Set<Integer> active = new HashSet<>();
+        Customer c = customers.get(customerId);
+        if (c == null)
+            return active;
+        synchronized (c) {
+            for (Booking b : c.bookings)
+                synchronized (b) {
+                    if (BOOKED.equals(b.status))
+                        active.add(b.vehicleId);
+                }
+        }
+        return active;
+    }
+
+    @Override
+    public List<Object[]> history(int customerId) {
+        List<Object[]> rows = new ArrayList<>();
+        Customer c = customers.get(customerId);
+        if (c == null)
+            return rows;
+        Booking[] mine;
+        synchronized (c) {
+            mine = c.bookings.toArray(new Booking[0]);
+        }
+        for (int i = mine.length - 1; i >= 0; i--) {
+            Booking b = mine[i];
+            synchronized (b) {
+                rows.add(new Object[] { b.id, modelOf(b.vehicleId), b.status, b.bookingDate, b.returnDate });
+            }
+        }
+        return rows;
+    }
+
+    @Override
+    public PageSource bookings(String statusFilter) {
+        boolean filtered = !"ALL".equals(statusFilter);
+        return new PageSource() {
+            @Override
+            public int count() {
+                if (!filtered)
+                    return bookings.size();
+                AtomicInteger n = statusCounts.get(statusFilter);
+                return n == null ? 0 : n.get();
+            }
+
+            @Override
+            public List<Object[]> fetch(Integer afterKey, int skip, int limit) {
+                List<Object[]> rows = new ArrayList<>(limit);
+                if (filtered) {
+                    ConcurrentSkipListSet<Integer> ids = byStatus.get(statusFilter);
+                    if (ids == null)
+                        return rows;
+                    Iterator<Integer> it = (afterKey == null ? ids : ids.tailSet(afterKey, false)).iterator();
+                    while (it.hasNext() && rows.size() < limit) {
+                        Booking b = bookings.get(it.next());
+                        if (b != null && skip-- <= 0)
+                            rows.add(bookingRow(b));
+                    }
+                } else {
+                    for (int id = afterKey == null ? bookings.lastId() : afterKey - 1; id > 0
+                            && rows.size() < limit; id--) {
+                        Booking b = bookings.get(id);
+                        if (b != null && skip-- <= 0)
+                            rows.add(bookingRow(b));
+                    }
+                }
+                return rows;
+            }
+        };
+    }
+
+    private Object[] bookingRow(Booking b) {
+        synchronized (b) {
+            return new Object[] { b.id, b.customer.name, modelOf(b.vehicleId), b.status, b.bookingDate };
+        }
+    }
+
+    private String modelOf(int vehicleId) {
+        Vehicle v = vehicles.get(vehicleId);
+        return v == null ? null : v.model();
+    }
+
+    @Override
+    public boolean bookingExists(int bookingId) {
+        return bookings.get(bookingId) != null;
+    }
+
+    // --- Payments ---
+
+    @Override
+    public List<Object[]> payments(int customerId, Object[] after, int limit) {
+        List<Object[]> rows = new ArrayList<>(limit);
+        Customer c = customers.get(customerId);
+        if (c == null)
+            return rows;
+        NavigableSet<Payment> page = after == null ? c.payments
+                : c.payments.tailSet(new Payment((Integer) after[0], 0, 0, null, (Date) after[4]), false);
+        for (Payment p : page) {
+            if (rows.size() == limit)
+                break;
+            Booking b = bookings.get(p.bookingId);
+            rows.add(new Object[] { p.id, b == null ? null : modelOf(b.vehicleId), p.amount, p.method, p.date });
+        }
+        return rows;
+    }
+
+    @Override
+    public boolean recordPayment(int bookingId, double amount, String method) {
+        Booking b = bookings.get(bookingId);
+        if (b == null)
+            return false;
+        Customer c = b.customer;
+        synchronized (c) {
+            if (customers.get(c.id) != c)
+                return false;
+            Payment p = new Payment(payments.nextId(), bookingId, amount, method, new Date());
+            payments.put(p.id, p);
+            c.payments.add(p);
+        }
+        return true;
+    }
+
+    // --- Customers and reports ---
+
+    @Override
+    public List<Object[]> customers() {
+        List<Object[]> rows = new ArrayList<>();
+        int last = customers.lastId();
+        for (int id = 1; id <= last; id++) {
+            Customer c = customers.get(id);
+            if (c != null)
+                rows.add(new Object[] { c.id, c.name, c.mobile, c.username });
+        }
+        return rows;
+    }
+
+    // All in one step; nothing here holds other work up for long
+    @Override
+    public void deleteCustomer(int customerId, Progress progress) {
+        Customer c = customers.get(customerId);
+        if (c == null)
+            return;
+        synchronized (c) {
+            if (customers.remove(customerId) == null)
+                return;
+            byUsername.remove(Credentials.normalize(c.username), c);
+            for (Booking b : c.bookings) {
+                Vehicle v = vehicles.get(b.vehicleId);
+                if (v != null) {
+                    synchronized (v) {
+                        if (v.heldBy == b.id) {
+                            v.heldBy = 0;
+                            stats.availabilityChanged(v.category, v.rent, true);
+                            index.availabilityChanged(v.id, true);
+                        }
+                    }
+                }
+                String status;
+                synchronized (b) {
+                    status = b.status;
+                }
+                bookings.remove(b.id);
+                indexStatus(b.id, status, null);
+            }
+            for (Payment p : c.payments)
+                payments.remove(p.id);
+        }
+    }
+
+    @Override
+    public String fleetReport() {
+        return stats.report();
+    }
+
+    @Override
+    public List<Leaderboard.Entry> topCustomers() {
+        Comparator<Leaderboard.Entry> order = (a, b) -> a.bookings != b.bookings
+                ? Integer.compare(a.bookings, b.bookings)
+                : Integer.compare(b.customerId, a.customerId);
+        PriorityQueue<Leaderboard.Entry> heap = new PriorityQueue<>(order);
+        int last = customers.lastId();
+        for (int id = 1; id <= last; id++) {
+            Customer c = customers.get(id);
+            if (c == null)
+                continue;
+            int n;
+            synchronized (c) {
+                n = c.bookings.size();
+            }
+            if (n == 0)
+                continue;
+            heap.add(new Leaderboard.Entry(c.id, c.name, c.mobile, n));
+            if (heap.size() > Leaderboard.k())
+                heap.poll();
+        }
+        List<Leaderboard.Entry> top = new ArrayList<>(heap);
+        top.sort(order.reversed());
+        return top;
+    }
+
+    // Records keyed by a dense positive int ID handed out by nextId(). The ID indexes
+    // straight into fixed-size chunks, so lookups neither hash nor box; chunks are
+    // added on demand and never move, so readers take no lock.
+    static final class IntTable<T> {
+        private static final int CHUNK_BITS = 10;
+        private static final int CHUNK = 1 << CHUNK_BITS;
+
+        private volatile AtomicReferenceArray<T>[] chunks = newDirectory(16);
+        private final AtomicInteger lastId = new AtomicInteger();
+        private final AtomicInteger size = new AtomicInteger();
+
+        @SuppressWarnings("unchecked")
+        private static <T> AtomicReferenceArray<T>[] newDirectory(int n) {
+            return (AtomicReferenceArray<T>[]) new AtomicReferenceArray<?>[n];
+        }
+
+        int nextId() {
+            return lastId.incrementAndGet();
+        }
+
+        // Highest ID handed out so far
+        int lastId() {
+            return lastId.get();
+        }
+
+        int size() {
+            return size.get();
+        }
+
+        T get(int id) {
+            AtomicReferenceArray<T>[] dir = chunks;
+            int c = id >>> CHUNK_BITS;
+            if (id <= 0 || c >= dir.length || dir[c] == null)
+                return null;
+            return dir[c].get(id & (CHUNK - 1));
+        }
+
+        void put(int id, T value) {
+            if (chunk(id).getAndSet(id & (CHUNK - 1), value) == null)
+                size.incrementAndGet();
+        }
+
+        T remove(int id) {
+            AtomicReferenceArray<T>[] dir = chunks;
+            int c = id >>> CHUNK_BITS;
+            if (id <= 0 || c >= dir.length || dir[c] == null)
+                return null;
+            T was = dir[c].getAndSet(id & (CHUNK - 1), null);
+            if (was != null)
+                size.decrementAndGet();
+            return was;
+        }
+
+        private AtomicReferenceArray<T> chunk(int id) {
+            int c = id >>> CHUNK_BITS;
+            AtomicReferenceArray<T>[] dir = chunks;
+            if (c < dir.length && dir[c] != null)
+                return dir[c];
+            synchronized (this) {
+                dir = chunks;
+                if (c >= dir.length || dir[c] == null) {
+                    // Publish a fresh directory so lock-free readers never see a half-built one
+                    dir = Arrays.copyOf(dir, Math.max(dir.length, Integer.highestOneBit(c) * 2));
+                    dir[c] = new AtomicReferenceArray<>(CHUNK);
+                    chunks = dir;
+                }
+                return dir[c];
+            }
+        }
+    }
+}
\ No newline at end of file
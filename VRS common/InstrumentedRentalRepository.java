@@ -0,0 +1,188 @@
+import java.util.List;
+import java.util.Set;
+
+// Times every call into another RentalRepository, and the pages fetched from its
+// PageSources, into Metrics under the repository method's name
+class InstrumentedRentalRepository implements RentalRepository {
+    private interface Call<T> {
+        T run() throws Exception;
+    }
+
+    private static final Metrics.Op LOGIN = Metrics.op("login");
+    private static final Metrics.Op REGISTER = Metrics.op("register");
+    private static final Metrics.Op VEHICLES_COUNT = Metrics.op("vehicles.count");
+    private static final Metrics.Op VEHICLES_PAGE = Metrics.op("vehicles.page");
+    private static final Metrics.Op SEARCH_COUNT = Metrics.op("searchVehicles.count");
+    private static final Metrics.Op SEARCH_PAGE = Metrics.op("searchVehicles.page");
+    private static final Metrics.Op FACETS = Metrics.op("vehicleFacets");
+    private static final Metrics.Op ADD_VEHICLE = Metrics.op("addVehicle");
+    private static final Metrics.Op UPDATE_VEHICLE = Metrics.op("updateVehicle");
+    private static final Metrics.Op DELETE_VEHICLE = Metrics.op("deleteVehicle");
+    private static final Metrics.Op BOOK = Metrics.op("book");
+    private static final Metrics.Op RETURN = Metrics.op("returnVehicle");
+    private static final Metrics.Op ACTIVE = Metrics.op("activeVehicles");
+    private static final Metrics.Op HISTORY = Metrics.op("history");
+    private static final Metrics.Op BOOKINGS_COUNT = Metrics.op("bookings.count");
+    private static final Metrics.Op BOOKINGS_PAGE = Metrics.op("bookings.page");
+    private static final Metrics.Op BOOKING_EXISTS = Metrics.op("bookingExists");
+    private static final Metrics.Op PAYMENTS = Metrics.op("payments");
+    private static final Metrics.Op RECORD_PAYMENT = Metrics.op("recordPayment");
+    private static final Metrics.Op CUSTOMERS = Metrics.op("customers");
+    private static final Metrics.Op DELETE_CUSTOMER = Metrics.op("deleteCustomer");
+    private static final Metrics.Op FLEET_REPORT = Metrics.op("fleetReport");
+    private static final Metrics.Op TOP_CUSTOMERS = Metrics.op("topCustomers");
+
+    private final RentalRepository inner;
+
+    public InstrumentedRentalRepository(RentalRepository inner) {
+        this.inner = inner;
+    }
+
+    private static <T> T time(Metrics.Op op, Call<T> call) throws Exception {
+        long started = op.begin();
+        boolean failed = true;
+        try {
+            T result = call.run();
+            failed = false;
+            return result;
+        } finally {
+            op.end(started, failed);
+        }
+    }
+
+    private static PageSource timed(PageSource source, Metrics.Op count, Metrics.Op page) {
+        return new PageSource() {
+            @Override
+            public int count() throws Exception {
+                return time(count, source::count);
+            }
+
+            @Override
+            public List<Object[]> fetch(Integer afterKey, int skip, int limit) throws Exception {
+                return time(page, () -> source.fetch(afterKey, skip, limit));
+            }
+        };
+    }
+
+    // --- Accounts ---
+
+    @Override
+    public Credentials.Login login(String username, String password) throws Exception {
+        return time(LOGIN, () -> inner.login(username, password));
+    }
+
+    @Override
+    public boolean register(String name, String mobile, String username, String password) throws Exception {
+        return time(REGISTER, () -> inner.register(name, mobile, username, password));
+    }
+
+    // --- Vehicles ---
+
+    @Override
+    public PageSource vehicles() {
+        return timed(inner.vehicles(), VEHICLES_COUNT, VEHICLES_PAGE);
+    }
+
+    @Override
+    public PageSource searchVehicles(VehicleIndex.Query query) {
+        return timed(inner.searchVehicles(query), SEARCH_COUNT, SEARCH_PAGE);
+    }
+
+    @Override
+    public VehicleIndex.Facets vehicleFacets() throws Exception {
+        return time(FACETS, inner::vehicleFacets);
+    }
+
+    @Override
+    public void addVehicle(String model, String category, double rent) throws Exception {
+        time(ADD_VEHICLE, () -> {
+            inner.addVehicle(model, category, rent);
+            return null;
+        });
+    }
+
+    @Override
+    public void updateVehicle(int vehicleId, String model, String category, double rent) throws Exception {
+        time(UPDATE_VEHICLE, () -> {
+            inner.updateVehicle(vehicleId, model, category, rent);
+            return null;
+        });
+    }
+
+    @Override
+    public void deleteVehicle(int vehicleId) throws Exception {
+        time(DELETE_VEHICLE, () -> {
+            inner.deleteVehicle(vehicleId);
+            return null;
+        });
+    }
+
+    // --- Bookings ---
+
+    @Override
+    public BookingOutcome book(int customerId, int vehicleId) throws Exception {
+        return time(BOOK, () -> inner.book(customerId, vehicleId));
+    }
+
+    @Override
+    public BookingOutcome returnVehicle(int customerId, int vehicleId) throws Exception {
+        return time(RETURN, () -> inner.returnVehicle(customerId, vehicleId));
+    }
+
+    @Override
+    public Set<Integer> activeVehicles(int customerId) throws Exception {
+        return time(ACTIVE, () -> inner.activeVehicles(customerId));
+    }
+
+    @Override
+    public List<Object[]> history(int customerId) throws Exception {
+        return time(HISTORY, () -> inner.history(customerId));
+    }
+
+    @Override
+    public PageSource bookings(String statusFilter) {
+        return timed(inner.bookings(statusFilter), BOOKINGS_COUNT, BOOKINGS_PAGE);
+    }
+
+    @Override
+    public boolean bookingExists(int bookingId) throws Exception {
+        return time(BOOKING_EXISTS, () -> inner.bookingExists(bookingId));
+    }
+
+    // --- Payments ---
+
+    @Override
+    public List<Object[]> payments(int customerId, Object[] after, int limit) throws Exception {
+        return time(PAYMENTS, () -> inner.payments(customerId, after, limit));
+    }
+
+    @Override
+    public boolean recordPayment(int bookingId, double amount, String method) throws Exception {
+        return time(RECORD_PAYMENT, () -> inner.recordPayment(bookingId, amount, method));
+    }
+
+    // --- Customers and reports ---
+
+    @Override
+    public List<Object[]> customers() throws Exception {
+        return time(CUSTOMERS, inner::customers);
+    }
+
+    @Override
+    public void deleteCustomer(int customerId, Progress progress) throws Exception {
+        time(DELETE_CUSTOMER, () -> {
+            inner.deleteCustomer(customerId, progress);
+            return null;
+        });
+    }
+
+    @Override
+    public String fleetReport() throws Exception {
+        return time(FLEET_REPORT, inner::fleetReport);
+    }
+
+    @Override
+    public List<Leaderboard.Entry> topCustomers() throws Exception {
+        return time(TOP_CUSTOMERS, inner::topCustomers);
+    }
+}
\ No newline at end of file
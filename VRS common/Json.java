@@ -0,0 +1,290 @@
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Minimal JSON for the HTTP API. Objects read back as LinkedHashMap, arrays as
+// ArrayList, whole numbers as Integer (Long when too big) and numbers with a fraction
+// or exponent as Double. Dates travel as {"$date": epochMillis} so table rows keep
+// their column types across the wire.
+final class Json {
+    private Json() {
+    }
+
+    static String write(Object value) {
+        StringBuilder sb = new StringBuilder();
+        write(sb, value);
+        return sb.toString();
+    }
+
+    private static void write(StringBuilder sb, Object v) {
+        if (v == null) {
+            sb.append("null");
+        } else if (v instanceof String || v instanceof Enum) {
+            quote(sb, v.toString());
+        } else if (v instanceof Double || v instanceof Float) {
+            double d = ((Number) v).doubleValue();
+            if (Double.isNaN(d) || Double.isInfinite(d))
+                sb.append("null");
+            else
+                sb.append(d); // always has a '.' or an 'E', so it reads back as a Double
+        } else if (v instanceof Number || v instanceof Boolean) {
+            sb.append(v);
+        } else if (v instanceof Date) {
+            sb.append("{\"$date\":").append(((Date) v).getTime()).append('}');
+        } else if (v instanceof Map) {
+            sb.append('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> e : ((Map<?, ?>) v).entrySet()) {
+                if (!first)
+                    sb.append(',');
+                first = false;
+                quote(sb, String.valueOf(e.getKey()));
+                sb.append(':');
+                write(sb, e.getValue());
+            }
+            sb.append('}');
+        } else if (v instanceof Iterable || v instanceof Object[]) {
+            Iterable<?> items = v instanceof Object[] ? java.util.Arrays.asList((Object[]) v) : (Iterable<?>) v;
+            sb.append('[');
+            boolean first = true;
+            for (Object item : items) {
+                if (!first)
+                    sb.append(',');
+                first = false;
+                write(sb, item);
+            }
+            sb.append(']');
+        } else {
+            quote(sb, v.toString());
+        }
+    }
+
+    private static void quote(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20)
+                        sb.append(String.format("\\u%04x", (int) c));
+                    else
+                        sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+
+    static Object parse(String text) {
+        Parser p = new Parser(text);
+        p.skipSpace();
+        Object v = p.value();
+        p.skipSpace();
+        if (p.pos != text.length())
+            throw p.error("Unexpected trailing characters");
+        return v;
+    }
+
+    // Parses a JSON object; anything else is rejected
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> parseObject(String text) {
+        Object v = parse(text);
+        if (!(v instanceof Map))
+            throw new IllegalArgumentException("Expected a JSON object");
+        return (Map<String, Object>) v;
+    }
+
+    private static final class Parser {
+        private final String s;
+        private int pos;
+
+        Parser(String s) {
+            this.s = s;
+        }
+
+        Object value() {
+            if (pos >= s.length())
+                throw error("Unexpected end of input");
+            char c = s.charAt(pos);
+            switch (c) {
+                case '{':
+                    return object();
+                case '[':
+                    return array();
+                case '"':
+                    return string();
+                case 't':
+                    return literal("true", Boolean.TRUE);
+                case 'f':
+                    return literal("false", Boolean.FALSE);
+                case 'n':
+                    return literal("null", null);
+                default:
+                    return number();
+            }
+        }
+
+        private Object object() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            pos++;
+            skipSpace();
+            if (peek() == '}') {
+                pos++;
+                return map;
+            }
+            while (true) {
+                skipSpace();
+                if (peek() != '"')
+                    throw error("Expected a field name");
+                String key = string();
+                skipSpace();
+                expect(':');
+                skipSpace();
+                map.put(key, value());
+                skipSpace();
+                if (peek() == ',') {
+                    pos++;
+                    continue;
+                }
+                expect('}');
+                break;
+            }
+            if (map.size() == 1 && map.get("$date") instanceof Number)
+                return new Date(((Number) map.get("$date")).longValue());
+            return map;
+        }
+
+        private List<Object> array() {
+            List<Object> list = new ArrayList<>();
+            pos++;
+            skipSpace();
+            if (peek() == ']') {
+                pos++;
+                return list;
+            }
+            while (true) {
+                skipSpace();
+                list.add(value());
+                skipSpace();
+                if (peek() == ',') {
+                    pos++;
+                    continue;
+                }
+                expect(']');
+                return list;
+            }
+        }
+
+        private String string() {
+            pos++;
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                if (pos >= s.length())
+                    throw error("Unterminated string");
+                char c = s.charAt(pos++);
+                if (c == '"')
+                    return sb.toString();
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                if (pos >= s.length())
+                    throw error("Unterminated string");
+                char e = s.charAt(pos++);
+                switch (e) {
+                    case 'n':
+                        sb.append('\n');
+                        break;
+                    case 'r':
+                        sb.append('\r');
+                        break;
+                    case 't':
+                        sb.append('\t');
+                        break;
+                    case 'b':
+                        sb.append('\b');
+                        break;
+                    case 'f':
+                        sb.append('\f');
+                        break;
+                    case 'u':
+                        if (pos + 4 > s.length())
+                            throw error("Bad escape");
+                        sb.append((char) Integer.parseInt(s.substring(pos, pos + 4), 16));
+                        pos += 4;
+                        break;
+                    default:
+                        sb.append(e);
+                }
+            }
+        }
+
+        private Object number() {
+            int start = pos;
+            boolean fraction = false;
+            while (pos < s.length()) {
+                char c = s.charAt(pos);
+                if (c == '.' || c == 'e' || c == 'E')
+                    fraction = true;
+                else if (!(c == '-' || c == '+' || (c >= '0' && c <= '9')))
+                    break;
+                pos++;
+            }
+            if (start == pos)
+                throw error("Unexpected character '" + s.charAt(pos) + "'");
+            String n = s.substring(start, pos);
+            try {
+                if (fraction)
+                    return Double.parseDouble(n);
+                long l = Long.parseLong(n);
+                return l == (int) l ? (Object) (int) l : (Object) l;
+            } catch (NumberFormatException e) {
+                throw error("Bad number " + n);
+            }
+        }
+
+        private Object literal(String word, Object value) {
+            if (!s.startsWith(word, pos))
+                throw error("Unexpected token");
+            pos += word.length();
+            return value;
+        }
+
+        private char peek() {
+            if (pos >= s.length())
+                throw error("Unexpected end of input");
+            return s.charAt(pos);
+        }
+
+        private void expect(char c) {
+            if (peek() != c)
+                throw error("Expected '" + c + "'");
+            pos++;
+        }
+
+        void skipSpace() {
+            while (pos < s.length() && Character.isWhitespace(s.charAt(pos)))
+                pos++;
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at offset " + pos);
+        }
+    }
+}
\ No newline at end of file
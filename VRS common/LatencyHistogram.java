@@ -0,0 +1,89 @@
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Log-linear histogram of durations in nanoseconds. Each power of two is split into
+// 32 buckets, so any percentile is within about 3% of the true value, and the whole
+// range of a long fits in under 2,000 counters. Recording is lock-free.
+class LatencyHistogram {
+    private static final int SUB_BITS = 6;
+    private static final int SUB = 1 << SUB_BITS; // values below this get a bucket each
+    private static final int HALF = SUB / 2;
+    private static final int BUCKETS = SUB + (63 - SUB_BITS + 1) * HALF;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        if (nanos < 0)
+            nanos = 0;
+        counts.incrementAndGet(indexOf(nanos));
+        total.incrementAndGet();
+        sum.addAndGet(nanos);
+        max.accumulateAndGet(nanos, Math::max);
+    }
+
+    // Starts over from empty. Values recorded while this runs may be kept or lost.
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++)
+            counts.set(i, 0);
+        total.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    public long count() {
+        return total.get();
+    }
+
+    public long maxNanos() {
+        return max.get();
+    }
+
+    public double meanNanos() {
+        long n = total.get();
+        return n == 0 ? 0 : sum.get() / (double) n;
+    }
+
+    // The smallest recorded value v such that a fraction q of all values are <= v,
+    // rounded up to the top of its bucket; 0 when nothing has been recorded
+    public long percentileNanos(double q) {
+        long n = total.get();
+        if (n == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(q * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank)
+                return Math.min(highestValueIn(i), max.get());
+        }
+        return max.get();
+    }
+
+    static int indexOf(long v) {
+        if (v < SUB)
+            return (int) v;
+        int shift = 63 - Long.numberOfLeadingZeros(v) - (SUB_BITS - 1);
+        return SUB + (shift - 1) * HALF + (int) (v >>> shift) - HALF;
+    }
+
+    static long highestValueIn(int index) {
+        if (index < SUB)
+            return index;
+        int shift = (index - SUB) / HALF + 1;
+        long top = (index - SUB) % HALF + HALF;
+        return ((top + 1) << shift) - 1;
+    }
+
+    // e.g. "850us", "12.3ms", "1.20s"
+    static String format(long nanos) {
+        if (nanos < TimeUnit.MILLISECONDS.toNanos(1))
+            return nanos / 1000 + "us";
+        if (nanos < TimeUnit.SECONDS.toNanos(1))
+            return String.format("%.1fms", nanos / 1e6);
+        return String.format("%.2fs", nanos / 1e9);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,99 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+// Top-K customers by booking count. Each edition keeps a per-customer BookingCount
+// and seeds this from the first K entries of its index (JdbcLeaderboard,
+// MongoLeaderboard). Between seeds a bounded min-heap is kept current by the bookings
+// made in this process; it is re-seeded after a while to pick up other app
+// instances' bookings.
+class Leaderboard {
+    private static final int K = Math.max(1, Integer.getInteger("vrs.top.k", 5));
+    private static final long RESEED_MS = Long.getLong("vrs.top.reseedMs", 60_000L);
+
+    static final class Entry {
+        final int customerId;
+        final String name;
+        final String mobile;
+        int bookings;
+
+        Entry(int customerId, String name, String mobile, int bookings) {
+            this.customerId = customerId;
+            this.name = name;
+            this.mobile = mobile;
+            this.bookings = bookings;
+        }
+    }
+
+    // Smallest count on top, so the entry to evict is always at hand
+    private static final PriorityQueue<Entry> heap = new PriorityQueue<>(
+            (a, b) -> a.bookings != b.bookings ? Integer.compare(a.bookings, b.bookings)
+                    : Integer.compare(b.customerId, a.customerId));
+    private static final Map<Integer, Entry> byCustomer = new HashMap<>();
+    private static long seededAt;
+
+    // Reads the k customers with the most bookings from the database
+    interface Seed<E extends Exception> {
+        List<Entry> read(int k) throws E;
+    }
+
+    private Leaderboard() {
+    }
+
+    static int k() {
+        return K;
+    }
+
+    // The current top K, highest first
+    public static <E extends Exception> List<Entry> top(Seed<E> seed) throws E {
+        synchronized (heap) {
+            if (System.currentTimeMillis() - seededAt >= RESEED_MS) {
+                List<Entry> read = seed.read(K);
+                heap.clear();
+                byCustomer.clear();
+                for (Entry e : read)
+                    add(e);
+                seededAt = System.currentTimeMillis();
+            }
+            List<Entry> out = new ArrayList<>(heap);
+            out.sort(heap.comparator().reversed());
+            return out;
+        }
+    }
+
+    // Called after a booking commits, with the customer's new total
+    public static void recordBooking(int customerId, String name, String mobile, int bookings) {
+        synchronized (heap) {
+            Entry e = byCustomer.get(customerId);
+            if (e != null) {
+                heap.remove(e);
+                e.bookings = bookings;
+                heap.add(e);
+                return;
+            }
+            if (heap.size() < K) {
+                add(new Entry(customerId, name, mobile, bookings));
+            } else if (heap.comparator().compare(heap.peek(), new Entry(customerId, name, mobile, bookings)) < 0) {
+                byCustomer.remove(heap.poll().customerId);
+                add(new Entry(customerId, name, mobile, bookings));
+            }
+        }
+    }
+
+    public static void forget(int customerId) {
+        synchronized (heap) {
+            Entry e = byCustomer.remove(customerId);
+            if (e != null) {
+                heap.remove(e);
+                seededAt = 0; // a slot opened up; refill on next read
+            }
+        }
+    }
+
+    private static void add(Entry e) {
+        heap.add(e);
+        byCustomer.put(e.customerId, e);
+    }
+}
\ No newline at end of file
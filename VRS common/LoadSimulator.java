@@ -0,0 +1,302 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// Headless load generator. Simulated customers, one virtual thread each, repeatedly
+// pick an operation from the configured mix, run it through a RentalRepository and
+// wait a random think time. Throughput and latency percentiles are reported per
+// operation, and the same scenario is run against every backend named, so they can
+// be compared.
+//
+// Usage: java LoadSimulator [backend ...]
+//   backend: memory, the database of this edition (the vrs.backend names), or the
+//            URL of a running "--serve" instance (which may be of the other edition);
+//            default: memory and the database
+// Scenario, as system properties:
+//   vrs.load.customers  concurrent customers                     (50)
+//   vrs.load.fleet      vehicles created for the run             (200)
+//   vrs.load.thinkMs    mean think time between operations       (100; 0 = none)
+//   vrs.load.seconds    measured duration per backend            (30)
+//   vrs.load.warmup     unmeasured seconds before that           (5)
+//   vrs.load.mix        operation weights   (book:20,return:20,history:30,payments:20,pay:10)
+//   vrs.load.admin      admin "username:password" for URLs       (admin:admin)
+//
+// "return" books instead while the customer holds nothing, and "pay" reads the
+// history instead until the customer has a booking to pay for. Everything the run
+// creates in a database is deleted afterwards.
+public class LoadSimulator {
+    private static final int CUSTOMERS = Integer.getInteger("vrs.load.customers", 50);
+    private static final int FLEET = Integer.getInteger("vrs.load.fleet", 200);
+    private static final long THINK_MS = Long.getLong("vrs.load.thinkMs", 100L);
+    private static final int SECONDS = Integer.getInteger("vrs.load.seconds", 30);
+    private static final int WARMUP = Integer.getInteger("vrs.load.warmup", 5);
+    private static final String MIX = System.getProperty("vrs.load.mix",
+            "book:20,return:20,history:30,payments:20,pay:10");
+    private static final String ADMIN = System.getProperty("vrs.load.admin", "admin:admin");
+    private static final String[] CATEGORIES = { "Car", "Van", "SUV", "Bike" };
+
+    enum Op {
+        BOOK, RETURN, HISTORY, PAYMENTS, PAY
+    }
+
+    private static final class Result {
+        final String backend;
+        final Map<Op, LatencyHistogram> latency = new LinkedHashMap<>();
+        final Map<Op, AtomicLong> errors = new LinkedHashMap<>();
+        final AtomicLong unavailable = new AtomicLong();
+        final LatencyHistogram all = new LatencyHistogram();
+        double seconds;
+
+        Result(String backend) {
+            this.backend = backend;
+            for (Op op : Op.values()) {
+                latency.put(op, new LatencyHistogram());
+                errors.put(op, new AtomicLong());
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> backends = new ArrayList<>(List.of(args));
+        if (backends.isEmpty()) {
+            backends.add("memory");
+            backends.add(VehicleRentalSystem.DATABASE);
+        }
+        int[] weights = parseMix(MIX);
+        System.out.printf("%d customers, %d vehicles, think %d ms, %d s measured after %d s warm-up, mix %s%n",
+                CUSTOMERS, FLEET, THINK_MS, SECONDS, WARMUP, MIX);
+
+        List<Result> results = new ArrayList<>();
+        int failures = 0;
+        for (String backend : backends) {
+            try {
+                Result r = run(backend, weights);
+                report(r);
+                results.add(r);
+            } catch (Exception e) {
+                System.err.println(backend + ": " + e);
+                failures++;
+            }
+        }
+        if (results.size() > 1) {
+            System.out.printf("%n%-28s %10s %10s %10s %10s%n", "backend", "ops/s", "p50", "p99", "p999");
+            for (Result r : results)
+                System.out.printf("%-28s %10.1f %10s %10s %10s%n", r.backend, r.all.count() / r.seconds,
+                        LatencyHistogram.format(r.all.percentileNanos(0.50)),
+                        LatencyHistogram.format(r.all.percentileNanos(0.99)),
+                        LatencyHistogram.format(r.all.percentileNanos(0.999)));
+        }
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    private static Result run(String backend, int[] weights) throws Exception {
+        // Each HTTP customer needs a session of its own; direct backends are shared
+        Supplier<RentalRepository> sessions;
+        RentalRepository admin;
+        if (backend.startsWith("http://") || backend.startsWith("https://")) {
+            sessions = () -> new HttpRentalRepository(backend);
+            admin = sessions.get();
+            int colon = ADMIN.indexOf(':');
+            Credentials.Login login = admin.login(ADMIN.substring(0, colon), ADMIN.substring(colon + 1));
+            if (login == null || !login.admin)
+                throw new IllegalStateException("admin login " + ADMIN.substring(0, colon) + " rejected");
+        } else {
+            RentalRepository shared = VehicleRentalSystem.openBackend(backend);
+            sessions = () -> shared;
+            admin = shared;
+        }
+
+        String tag = "LOAD-" + Long.toString(System.currentTimeMillis(), 36);
+        List<Integer> vehicleIds = new ArrayList<>();
+        List<Integer> customerIds = new ArrayList<>();
+        List<RentalRepository> customerRepos = new ArrayList<>();
+        Result result = new Result(backend);
+        try {
+            setUp(admin, sessions, tag, vehicleIds, customerIds, customerRepos);
+            drive(result, weights, vehicleIds, customerIds, customerRepos, admin);
+        } finally {
+            tearDown(admin, vehicleIds, customerIds, customerRepos);
+        }
+        return result;
+    }
+
+    private static void setUp(RentalRepository admin, Supplier<RentalRepository> sessions, String tag,
+            List<Integer> vehicleIds, List<Integer> customerIds, List<RentalRepository> customerRepos)
+            throws Exception {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        for (int i = 0; i < FLEET; i++)
+            admin.addVehicle(tag, CATEGORIES[i % CATEGORIES.length], 20 + rnd.nextInt(280));
+        PageSource fleet = admin.vehicles();
+        Integer after = null;
+        List<Object[]> page;
+        while (!(page = fleet.fetch(after, 0, 500)).isEmpty()) {
+            for (Object[] row : page)
+                if (tag.equals(row[1]))
+                    vehicleIds.add((Integer) row[0]);
+            after = (Integer) page.get(page.size() - 1)[0];
+        }
+
+        for (int i = 0; i < CUSTOMERS; i++) {
+            RentalRepository repo = sessions.get();
+            String username = tag + "-" + i;
+            if (!repo.register(tag, "-", username, tag))
+                throw new IllegalStateException("could not register " + username);
+            Credentials.Login login = repo.login(username, tag);
+            customerIds.add(login.customerId);
+            customerRepos.add(repo);
+        }
+    }
+
+    private static void drive(Result result, int[] weights, List<Integer> vehicleIds, List<Integer> customerIds,
+            List<RentalRepository> customerRepos, RentalRepository admin) throws InterruptedException {
+        int totalWeight = 0;
+        for (int w : weights)
+            totalWeight += w;
+        int bound = totalWeight;
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(WARMUP);
+        long deadline = measureFrom + TimeUnit.SECONDS.toNanos(SECONDS);
+
+        ExecutorService pool = createExecutor();
+        for (int c = 0; c < customerIds.size(); c++) {
+            int cid = customerIds.get(c);
+            RentalRepository repo = customerRepos.get(c);
+            pool.execute(() -> {
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                List<Integer> held = new ArrayList<>();
+                int lastBooking = 0;
+                long now;
+                while ((now = System.nanoTime()) < deadline) {
+                    Op op = pick(weights, rnd.nextInt(bound));
+                    if (op == Op.RETURN && held.isEmpty())
+                        op = Op.BOOK;
+                    if (op == Op.PAY && lastBooking == 0)
+                        op = Op.HISTORY;
+                    long t0 = System.nanoTime();
+                    try {
+                        switch (op) {
+                        case BOOK: {
+                            int vid = vehicleIds.get(rnd.nextInt(vehicleIds.size()));
+                            if (repo.book(cid, vid) == BookingOutcome.BOOKED)
+                                held.add(vid);
+                            else if (now >= measureFrom)
+                                result.unavailable.incrementAndGet();
+                            break;
+                        }
+                        case RETURN:
+                            repo.returnVehicle(cid, held.remove(rnd.nextInt(held.size())));
+                            break;
+                        case HISTORY: {
+                            List<Object[]> rows = repo.history(cid);
+                            if (!rows.isEmpty())
+                                lastBooking = (Integer) rows.get(0)[0];
+                            break;
+                        }
+                        case PAYMENTS:
+                            repo.payments(cid, null, 50);
+                            break;
+                        case PAY:
+                            admin.recordPayment(lastBooking, 10 + rnd.nextInt(500), "Card");
+                            break;
+                        }
+                        long took = System.nanoTime() - t0;
+                        if (now >= measureFrom) {
+                            result.latency.get(op).record(took);
+                            result.all.record(took);
+                        }
+                    } catch (Exception e) {
+                        if (now >= measureFrom)
+                            result.errors.get(op).incrementAndGet();
+                    }
+                    if (THINK_MS > 0)
+                        sleepQuietly((long) (-THINK_MS * Math.log(1 - rnd.nextDouble())));
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(SECONDS + WARMUP + 120L, TimeUnit.SECONDS);
+        result.seconds = Math.max(1e-9, (System.nanoTime() - measureFrom) / 1e9);
+    }
+
+    private static void tearDown(RentalRepository admin, List<Integer> vehicleIds, List<Integer> customerIds,
+            List<RentalRepository> customerRepos) {
+        try {
+            for (int c = 0; c < customerIds.size(); c++) {
+                int cid = customerIds.get(c);
+                for (int vid : customerRepos.get(c).activeVehicles(cid))
+                    customerRepos.get(c).returnVehicle(cid, vid);
+                admin.deleteCustomer(cid, null);
+            }
+            for (int vid : vehicleIds)
+                admin.deleteVehicle(vid);
+        } catch (Exception e) {
+            System.err.println("Clean-up incomplete: " + e);
+        }
+    }
+
+    private static void report(Result r) {
+        System.out.printf("%n%s (%.1f s measured)%n", r.backend, r.seconds);
+        System.out.printf("%-9s %9s %9s %9s %9s %9s %9s %9s %7s%n", "op", "count", "ops/s", "p50", "p95", "p99",
+                "p999", "max", "errors");
+        for (Op op : Op.values())
+            row(op.name().toLowerCase(), r.latency.get(op), r.errors.get(op).get(), r.seconds);
+        long errors = 0;
+        for (AtomicLong e : r.errors.values())
+            errors += e.get();
+        row("all", r.all, errors, r.seconds);
+        System.out.printf("Bookings refused (vehicle taken): %d%n", r.unavailable.get());
+    }
+
+    private static void row(String name, LatencyHistogram h, long errors, double seconds) {
+        System.out.printf("%-9s %9d %9.1f %9s %9s %9s %9s %9s %7d%n", name, h.count(), h.count() / seconds,
+                LatencyHistogram.format(h.percentileNanos(0.50)), LatencyHistogram.format(h.percentileNanos(0.95)),
+                LatencyHistogram.format(h.percentileNanos(0.99)), LatencyHistogram.format(h.percentileNanos(0.999)),
+                LatencyHistogram.format(h.maxNanos()), errors);
+    }
+
+    private static int[] parseMix(String spec) {
+        int[] weights = new int[Op.values().length];
+        for (String part : spec.split(",")) {
+            String[] kv = part.trim().split(":");
+            weights[Op.valueOf(kv[0].trim().toUpperCase()).ordinal()] = Integer.parseInt(kv[1].trim());
+        }
+        return weights;
+    }
+
+    private static Op pick(int[] weights, int r) {
+        for (int i = 0; i < weights.length; i++) {
+            r -= weights[i];
+            if (r < 0)
+                return Op.values()[i];
+        }
+        return Op.HISTORY;
+    }
+
+    private static void sleepQuietly(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ExecutorService createExecutor() {
+        try {
+            // Virtual threads where the runtime has them (JDK 21+)
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(CUSTOMERS, r -> {
+                Thread t = new Thread(r, "load-customer");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,276 @@
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ObjectName;
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Per-operation latency, call, error and in-flight counts for data access. Each
+// operation is published as the MBean vrs:type=DataAccess,name=<op>, can be dumped
+// periodically, and is shown live in the admin Diagnostics dialog.
+//
+//   vrs.metrics.dumpMs  dump interval; 0 (the default) turns dumping off
+//   vrs.metrics.dump    file to dump to: a .json file is rewritten with the latest
+//                       numbers, anything else gets text appended; default stdout
+class Metrics {
+    private static final long DUMP_MS = Long.getLong("vrs.metrics.dumpMs", 0L);
+    private static final String DUMP_TO = System.getProperty("vrs.metrics.dump");
+
+    private static final Map<String, Op> ops = new ConcurrentHashMap<>();
+
+    static {
+        if (DUMP_MS > 0) {
+            ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "metrics-dump");
+                t.setDaemon(true);
+                return t;
+            });
+            timer.scheduleWithFixedDelay(Metrics::dump, DUMP_MS, DUMP_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    static final class Op {
+        final String name;
+        final LatencyHistogram latency = new LatencyHistogram();
+        final AtomicLong errors = new AtomicLong();
+        final AtomicInteger inFlight = new AtomicInteger();
+
+        Op(String name) {
+            this.name = name;
+        }
+
+        long begin() {
+            inFlight.incrementAndGet();
+            return System.nanoTime();
+        }
+
+        void end(long started, boolean failed) {
+            latency.record(System.nanoTime() - started);
+            if (failed)
+                errors.incrementAndGet();
+            inFlight.decrementAndGet();
+        }
+
+        void reset() {
+            latency.reset();
+            errors.set(0);
+        }
+
+        // Count, errors, in flight, then mean, p50, p95, p99, p999 and max in ms
+        Object[] row() {
+            return new Object[] { name, latency.count(), errors.get(), inFlight.get(),
+                    ms(latency.meanNanos()), ms(latency.percentileNanos(0.50)), ms(latency.percentileNanos(0.95)),
+                    ms(latency.percentileNanos(0.99)), ms(latency.percentileNanos(0.999)), ms(latency.maxNanos()) };
+        }
+    }
+
+    private static final String[] COLUMNS = { "Operation", "Count", "Errors", "InFlight", "MeanMs", "P50Ms",
+            "P95Ms", "P99Ms", "P999Ms", "MaxMs" };
+
+    private Metrics() {
+    }
+
+    // The named operation, registered with JMX the first time it is asked for
+    static Op op(String name) {
+        return ops.computeIfAbsent(name, n -> {
+            Op op = new Op(n);
+            register(op);
+            return op;
+        });
+    }
+
+    static List<Object[]> rows() {
+        List<Op> sorted = new ArrayList<>(ops.values());
+        sorted.sort((a, b) -> a.name.compareTo(b.name));
+        List<Object[]> rows = new ArrayList<>(sorted.size());
+        for (Op op : sorted)
+            rows.add(op.row());
+        return rows;
+    }
+
+    static void resetAll() {
+        for (Op op : ops.values())
+            op.reset();
+    }
+
+    private static double ms(double nanos) {
+        return Math.round(nanos / 1e3) / 1e3;
+    }
+
+    // --- JMX ---
+
+    private static void register(Op op) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new OpBean(op),
+                    new ObjectName("vrs:type=DataAccess,name=" + ObjectName.quote(op.name)));
+        } catch (Exception e) {
+            System.err.println("Metrics: " + op.name + " not published over JMX: " + e);
+        }
+    }
+
+    private static final class OpBean implements DynamicMBean {
+        private final Op op;
+
+        OpBean(Op op) {
+            this.op = op;
+        }
+
+        @Override
+        public Object getAttribute(String attribute) throws javax.management.AttributeNotFoundException {
+            for (int i = 1; i < COLUMNS.length; i++)
+                if (COLUMNS[i].equals(attribute))
+                    return op.row()[i];
+            throw new javax.management.AttributeNotFoundException(attribute);
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            Object[] row = op.row();
+            AttributeList list = new AttributeList();
+            for (String a : attributes)
+                for (int i = 1; i < COLUMNS.length; i++)
+                    if (COLUMNS[i].equals(a))
+                        list.add(new Attribute(a, row[i]));
+            return list;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) {
+            throw new UnsupportedOperationException("read-only");
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) {
+            if (!"reset".equals(actionName))
+                throw new UnsupportedOperationException(actionName);
+            op.reset();
+            return null;
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            MBeanAttributeInfo[] attrs = new MBeanAttributeInfo[COLUMNS.length - 1];
+            for (int i = 1; i < COLUMNS.length; i++)
+                attrs[i - 1] = new MBeanAttributeInfo(COLUMNS[i], i <= 2 ? "long" : i == 3 ? "int" : "double",
+                        COLUMNS[i], true, false, false);
+            MBeanOperationInfo reset = new MBeanOperationInfo("reset", "Clear the counters and histogram",
+                    null, "void", MBeanOperationInfo.ACTION);
+            return new MBeanInfo(OpBean.class.getName(), "Data access: " + op.name, attrs, null,
+                    new MBeanOperationInfo[] { reset }, null);
+        }
+    }
+
+    // --- Dumps ---
+
+    static String text() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-18s %9s %7s %8s %9s %9s %9s %9s %9s %9s%n", (Object[]) COLUMNS));
+        for (Object[] r : rows())
+            sb.append(String.format("%-18s %9d %7d %8d %9.3f %9.3f %9.3f %9.3f %9.3f %9.3f%n", r));
+        return sb.toString();
+    }
+
+    static String json() {
+        List<Object> out = new ArrayList<>();
+        for (Object[] r : rows()) {
+            Map<String, Object> m = new LinkedHashMap<>();
+            for (int i = 0; i < COLUMNS.length; i++)
+                m.put(Character.toLowerCase(COLUMNS[i].charAt(0)) + COLUMNS[i].substring(1), r[i]);
+            out.add(m);
+        }
+        Map<String, Object> doc = new LinkedHashMap<>();
+        doc.put("at", new Date());
+        doc.put("operations", out);
+        return Json.write(doc);
+    }
+
+    static void dump() {
+        try {
+            if (DUMP_TO == null) {
+                System.out.print("--- " + new Date() + "\n" + text());
+                return;
+            }
+            Path file = Paths.get(DUMP_TO);
+            if (DUMP_TO.endsWith(".json"))
+                Files.writeString(file, json(), StandardCharsets.UTF_8);
+            else
+                Files.writeString(file, "--- " + new Date() + "\n" + text(), StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    // --- Diagnostics dialog ---
+
+    // Live view of every operation, refreshed once a second while open
+    static void showDialog(JFrame owner) {
+        DefaultTableModel model = new DefaultTableModel(COLUMNS, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        JTable table = new JTable(model);
+        JDialog dialog = new JDialog(owner, "Diagnostics", false);
+        Runnable refresh = () -> {
+            int selected = table.getSelectedRow();
+            model.setRowCount(0);
+            for (Object[] r : rows())
+                model.addRow(r);
+            if (selected >= 0 && selected < model.getRowCount())
+                table.setRowSelectionInterval(selected, selected);
+        };
+        refresh.run();
+        Timer timer = new Timer(1000, e -> refresh.run());
+
+        JButton reset = new JButton("Reset");
+        reset.addActionListener(e -> {
+            resetAll();
+            refresh.run();
+        });
+        JPanel buttons = new JPanel(new FlowLayout());
+        buttons.add(reset);
+        dialog.setLayout(new BorderLayout(10, 10));
+        dialog.add(new JLabel("  Data access latency since start or last reset (ms)"), BorderLayout.NORTH);
+        dialog.add(new JScrollPane(table), BorderLayout.CENTER);
+        dialog.add(buttons, BorderLayout.SOUTH);
+        dialog.addWindowListener(new java.awt.event.WindowAdapter() {
+            @Override
+            public void windowClosed(java.awt.event.WindowEvent e) {
+                timer.stop();
+            }
+        });
+        dialog.setDefaultCloseOperation(WindowConstants.DISPOSE_ON_CLOSE);
+        dialog.setSize(900, 400);
+        dialog.setLocationRelativeTo(owner);
+        timer.start();
+        dialog.setVisible(true);
+    }
+}
\ No newline at end of file
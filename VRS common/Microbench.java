@@ -0,0 +1,240 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+// Small in-process microbenchmark harness. Each case is warmed up, then timed over
+// several fixed-length iterations; the median ns/op and the bytes allocated per op
+// (where the JVM can count them) are reported. Results can be written as JSON and
+// checked against a stored baseline from an earlier run.
+//
+// A single JVM only shows the noise between its own iterations; JIT decisions and heap
+// layout differ from one launch to the next, so for anything that gets compared the
+// cases should be run in several forked JVMs and merged (see forked).
+//
+// A case returns something derived from its work; the harness keeps it reachable so
+// the JIT cannot drop the work as dead code.
+class Microbench {
+    interface Case {
+        Object run(int i) throws Exception;
+    }
+
+    static final class Result {
+        final String name;
+        final double nsPerOp;
+        final double minNsPerOp;
+        final double maxNsPerOp;
+        final double bytesPerOp; // -1 when allocation can't be measured
+
+        Result(String name, double nsPerOp, double minNsPerOp, double maxNsPerOp, double bytesPerOp) {
+            this.name = name;
+            this.nsPerOp = nsPerOp;
+            this.minNsPerOp = minNsPerOp;
+            this.maxNsPerOp = maxNsPerOp;
+            this.bytesPerOp = bytesPerOp;
+        }
+    }
+
+    private static volatile Object sink;
+
+    private final int warmupIterations;
+    private final int iterations;
+    private final long iterationNanos;
+    private final Map<String, Case> cases = new LinkedHashMap<>();
+
+    Microbench(int warmupIterations, int iterations, long iterationMillis) {
+        this.warmupIterations = warmupIterations;
+        this.iterations = iterations;
+        this.iterationNanos = iterationMillis * 1_000_000L;
+    }
+
+    void add(String name, Case c) {
+        cases.put(name, c);
+    }
+
+    // Runs the cases whose names match the filter, printing each result as it lands
+    List<Result> run(Pattern filter) throws Exception {
+        List<Result> results = new ArrayList<>();
+        printHeader();
+        for (Map.Entry<String, Case> e : cases.entrySet()) {
+            if (!filter.matcher(e.getKey()).find())
+                continue;
+            Result r = measure(e.getKey(), e.getValue());
+            print(r);
+            results.add(r);
+        }
+        return results;
+    }
+
+    // Runs main again in the given number of fresh JVMs, one after the other, with the
+    // same JVM options and classpath plus -D<outputProperty>=<file>; main is expected to
+    // run its cases and write them to that file. The forks' results are merged into
+    // the median of their medians, with the range widened to cover every fork.
+    static List<Result> forked(Class<?> main, int forks, String outputProperty) throws IOException,
+            InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        Map<String, List<Result>> runs = new LinkedHashMap<>();
+        for (int f = 1; f <= forks; f++) {
+            Path out = Files.createTempFile("microbench", ".json");
+            try {
+                List<String> fork = new ArrayList<>(command);
+                fork.add("-D" + outputProperty + "=" + out);
+                fork.add(main.getName());
+                System.out.println("Fork " + f + " of " + forks + ":");
+                int status = new ProcessBuilder(fork).inheritIO().start().waitFor();
+                if (status != 0)
+                    throw new IOException("Fork " + f + " exited with status " + status);
+                for (Result r : read(out))
+                    runs.computeIfAbsent(r.name, k -> new ArrayList<>()).add(r);
+            } finally {
+                Files.deleteIfExists(out);
+            }
+        }
+        List<Result> merged = new ArrayList<>();
+        System.out.println("All " + forks + " forks:");
+        printHeader();
+        for (Map.Entry<String, List<Result>> e : runs.entrySet()) {
+            List<Result> rs = e.getValue();
+            double[] medians = new double[rs.size()];
+            double min = Double.MAX_VALUE;
+            double max = 0;
+            double bytes = 0;
+            for (int i = 0; i < rs.size(); i++) {
+                Result r = rs.get(i);
+                medians[i] = r.nsPerOp;
+                min = Math.min(min, r.minNsPerOp);
+                max = Math.max(max, r.maxNsPerOp);
+                bytes = bytes < 0 || r.bytesPerOp < 0 ? -1 : bytes + r.bytesPerOp / rs.size();
+            }
+            Arrays.sort(medians);
+            Result r = new Result(e.getKey(), medians[medians.length / 2], min, max, bytes);
+            print(r);
+            merged.add(r);
+        }
+        return merged;
+    }
+
+    private static void printHeader() {
+        System.out.printf("%-36s %14s %14s %14s%n", "benchmark", "ns/op", "range", "B/op");
+    }
+
+    private static void print(Result r) {
+        System.out.printf("%-36s %14.1f %14s %14s%n", r.name, r.nsPerOp,
+                String.format("+/-%.0f%%", 100 * (r.maxNsPerOp - r.minNsPerOp) / 2 / r.nsPerOp),
+                r.bytesPerOp < 0 ? "n/a" : String.format("%.0f", r.bytesPerOp));
+    }
+
+    private Result measure(String name, Case c) throws Exception {
+        for (int i = 0; i < warmupIterations; i++)
+            iteration(c);
+        double[] ns = new double[iterations];
+        long ops = 0;
+        long allocated = 0;
+        boolean counted = true;
+        for (int i = 0; i < iterations; i++) {
+            long before = allocatedBytes();
+            long[] done = iteration(c);
+            long after = allocatedBytes();
+            ns[i] = done[1] / (double) done[0];
+            ops += done[0];
+            if (before < 0 || after < 0)
+                counted = false;
+            else
+                allocated += after - before;
+        }
+        Arrays.sort(ns);
+        return new Result(name, ns[iterations / 2], ns[0], ns[iterations - 1],
+                counted ? allocated / (double) ops : -1);
+    }
+
+    // {ops, elapsed nanos} for one iteration of at least iterationNanos
+    private long[] iteration(Case c) throws Exception {
+        long ops = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            sink = c.run((int) ops);
+            ops++;
+        } while ((elapsed = System.nanoTime() - start) < iterationNanos);
+        return new long[] { ops, elapsed };
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+        if (mx instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean hs = (com.sun.management.ThreadMXBean) mx;
+            if (hs.isThreadAllocatedMemorySupported() && hs.isThreadAllocatedMemoryEnabled())
+                return hs.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    // --- Export and baseline ---
+
+    static void write(Path file, List<Result> results) throws IOException {
+        List<Object> out = new ArrayList<>();
+        for (Result r : results) {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("benchmark", r.name);
+            m.put("nsPerOp", r.nsPerOp);
+            m.put("minNsPerOp", r.minNsPerOp);
+            m.put("maxNsPerOp", r.maxNsPerOp);
+            m.put("bytesPerOp", r.bytesPerOp);
+            out.add(m);
+        }
+        Map<String, Object> doc = new LinkedHashMap<>();
+        doc.put("java", System.getProperty("java.version"));
+        doc.put("results", out);
+        Files.writeString(file, Json.write(doc), StandardCharsets.UTF_8);
+    }
+
+    static List<Result> read(Path file) throws IOException {
+        List<Result> results = new ArrayList<>();
+        for (Object o : (List<?>) Json.parseObject(Files.readString(file, StandardCharsets.UTF_8)).get("results")) {
+            Map<?, ?> m = (Map<?, ?>) o;
+            results.add(new Result((String) m.get("benchmark"), number(m, "nsPerOp"), number(m, "minNsPerOp"),
+                    number(m, "maxNsPerOp"), number(m, "bytesPerOp")));
+        }
+        return results;
+    }
+
+    private static double number(Map<?, ?> m, String key) {
+        return ((Number) m.get(key)).doubleValue();
+    }
+
+    // Cases that got slower, or allocate more, than the baseline by more than the
+    // given fraction; an empty list means no regressions. A slowdown also has to
+    // clear the measured spread: even the fastest iteration must be slower than the
+    // baseline's slowest, so a noisy case needs a bigger change to be flagged.
+    static List<String> compare(Path baseline, List<Result> results, double tolerance) throws IOException {
+        Map<String, Result> base = new LinkedHashMap<>();
+        for (Result b : read(baseline))
+            base.put(b.name, b);
+        List<String> regressions = new ArrayList<>();
+        for (Result r : results) {
+            Result b = base.get(r.name);
+            if (b == null)
+                continue;
+            if (r.nsPerOp > b.nsPerOp * (1 + tolerance) && r.minNsPerOp > b.maxNsPerOp)
+                regressions.add(String.format("%s: %.1f ns/op (%.1f-%.1f), baseline %.1f (%.1f-%.1f) (%+.0f%%)",
+                        r.name, r.nsPerOp, r.minNsPerOp, r.maxNsPerOp, b.nsPerOp, b.minNsPerOp, b.maxNsPerOp,
+                        100 * (r.nsPerOp / b.nsPerOp - 1)));
+            // A few bytes of slack so that near-zero baselines don't flag noise
+            if (b.bytesPerOp >= 0 && r.bytesPerOp >= 0 && r.bytesPerOp > b.bytesPerOp * (1 + tolerance) + 16)
+                regressions.add(String.format("%s: %.0f B/op, baseline %.0f", r.name, r.bytesPerOp, b.bytesPerOp));
+        }
+        return regressions;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,11 @@
+import java.util.List;
+
+// Supplies rows for a PagedTableModel. Rows are ordered by an int key held in
+// column 0, and pages are addressed by the key of the row just before them.
+interface PageSource {
+    int count() throws Exception;
+
+    // Up to limit rows following afterKey (from the start when afterKey is null),
+    // after skipping the first skip of them.
+    List<Object[]> fetch(Integer afterKey, int skip, int limit) throws Exception;
+}
\ No newline at end of file
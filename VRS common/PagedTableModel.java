@@ -0,0 +1,160 @@
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+// Read-only table model that fetches pages on demand as the viewport asks for rows.
+// Only a bounded number of pages is kept; rows not yet loaded read as null and the
+// table repaints once their page arrives.
+class PagedTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+    private static final int DEFAULT_PAGE_SIZE = 200;
+    private static final int DEFAULT_MAX_PAGES = 16;
+
+    private final String[] columns;
+    private final int pageSize;
+    private final int maxPages;
+    private PageSource source;
+
+    private int rowCount;
+    private int generation;
+    private final Map<Integer, List<Object[]>> pages;
+    private final Set<Integer> loading = new HashSet<>();
+    // Key of the last row before each page whose position is known; page 0 starts from null
+    private final TreeMap<Integer, Integer> pageAfterKey = new TreeMap<>();
+    // The traced action behind the last refresh, kept open until the first page it
+    // shows has been fetched; the table only asks for that page when it next paints
+    private Trace.Span firstPage;
+
+    public PagedTableModel(String[] columns, PageSource source) {
+        this(columns, source, DEFAULT_PAGE_SIZE, DEFAULT_MAX_PAGES);
+    }
+
+    public PagedTableModel(String[] columns, PageSource source, int pageSize, int maxPages) {
+        this.columns = columns;
+        this.source = source;
+        this.pageSize = pageSize;
+        this.maxPages = maxPages;
+        this.pages = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<Object[]>> eldest) {
+                return size() > PagedTableModel.this.maxPages;
+            }
+        };
+    }
+
+    public void setSource(PageSource source) {
+        this.source = source;
+    }
+
+    // Drops every cached page and re-reads the row count. Owner shows the busy indicator.
+    public SwingWorker<?, ?> refresh(Component owner) {
+        int gen = ++generation;
+        PageSource src = source;
+        pages.clear();
+        loading.clear();
+        pageAfterKey.clear();
+        pageAfterKey.put(0, null);
+        return AsyncDb.run(owner, src::count, count -> {
+            if (gen != generation)
+                return;
+            rowCount = count;
+            Trace.Span action = Trace.current();
+            if (firstPage != null)
+                firstPage.release();
+            firstPage = count > 0 && action != null ? action.hold() : null;
+            fireTableDataChanged();
+        }, Throwable::printStackTrace);
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columns[column];
+    }
+
+    @Override
+    public boolean isCellEditable(int r, int c) {
+        return false;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Object[] r = getRow(row);
+        return r == null ? null : r[column];
+    }
+
+    // The row if its page is loaded; otherwise schedules the page and returns null
+    public Object[] getRow(int row) {
+        if (row < 0 || row >= rowCount)
+            return null;
+        int page = row / pageSize;
+        List<Object[]> rows = pages.get(page);
+        if (rows == null) {
+            load(page);
+            return null;
+        }
+        int i = row % pageSize;
+        return i < rows.size() ? rows.get(i) : null;
+    }
+
+    @SuppressWarnings("try")
+    private void load(int page) {
+        if (!loading.add(page))
+            return;
+        int gen = generation;
+        PageSource src = source;
+        // Seek from the nearest page whose start key is known, skipping the pages in between
+        Map.Entry<Integer, Integer> from = pageAfterKey.floorEntry(page);
+        Integer afterKey = from.getValue();
+        int skip = (page - from.getKey()) * pageSize;
+        Trace.Span action = firstPage;
+        firstPage = null;
+
+        try (Trace.Scope scope = Trace.resume(action)) {
+            fetch(page, gen, src, afterKey, skip);
+        } finally {
+            if (action != null)
+                action.release();
+        }
+    }
+
+    private void fetch(int page, int gen, PageSource src, Integer afterKey, int skip) {
+        AsyncDb.run(null, () -> src.fetch(afterKey, skip, pageSize), rows -> {
+            if (gen != generation)
+                return;
+            loading.remove(page);
+            pages.put(page, rows);
+            if (!rows.isEmpty())
+                pageAfterKey.put(page + 1, (Integer) rows.get(rows.size() - 1)[0]);
+
+            int first = page * pageSize;
+            int expected = Math.min(pageSize, rowCount - first);
+            if (rows.size() < expected) {
+                // Rows vanished since the count was taken; shrink to what actually exists
+                rowCount = first + rows.size();
+                fireTableDataChanged();
+            } else if (expected > 0) {
+                fireTableRowsUpdated(first, first + expected - 1);
+            }
+        }, e -> {
+            // Leave the page marked as loading so it is not retried on every repaint;
+            // the next refresh() clears it.
+            e.printStackTrace();
+        });
+    }
+}
\ No newline at end of file
@@ -0,0 +1,47 @@
+import javax.swing.*;
+import java.awt.*;
+
+// Non-modal window showing a background job's progress, with a Stop button. Its
+// update() may be called from any thread.
+class ProgressDialog extends JDialog implements RentalRepository.Progress {
+    private static final long serialVersionUID = 1L;
+
+    private final JProgressBar bar = new JProgressBar();
+    private final JLabel status = new JLabel(" ");
+    private final JButton stop = new JButton("Stop");
+
+    ProgressDialog(JFrame owner, String title, Runnable onStop) {
+        super(owner, title, false);
+        bar.setStringPainted(true);
+        bar.setIndeterminate(true);
+        stop.addActionListener(e -> {
+            stop.setEnabled(false);
+            status.setText("Stopping...");
+            onStop.run();
+        });
+        JPanel center = new JPanel(new GridLayout(2, 1, 5, 5));
+        center.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        center.add(status);
+        center.add(bar);
+        JPanel buttons = new JPanel(new FlowLayout());
+        buttons.add(stop);
+        setLayout(new BorderLayout());
+        add(center, BorderLayout.CENTER);
+        add(buttons, BorderLayout.SOUTH);
+        setDefaultCloseOperation(WindowConstants.DO_NOTHING_ON_CLOSE);
+        setSize(360, 150);
+        setLocationRelativeTo(owner);
+    }
+
+    @Override
+    public void update(String step, int done, int total) {
+        SwingUtilities.invokeLater(() -> {
+            if (!stop.isEnabled())
+                return;
+            status.setText(step + ": " + done + " of " + total);
+            bar.setIndeterminate(false);
+            bar.setMaximum(Math.max(1, total));
+            bar.setValue(done);
+        });
+    }
+}
\ No newline at end of file
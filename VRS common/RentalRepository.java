@@ -0,0 +1,83 @@
+import java.util.List;
+import java.util.Set;
+
+// Everything the dashboards and the HTTP API do with rental data. The direct
+// implementation talks to the database; HttpRentalRepository talks to an ApiServer.
+//
+// Rows are Object[] in the column order of the grids that show them:
+//   vehicles  {VehicleID, Model, Category, RentPerDay, "Yes"/"No"}
+//   bookings  {BookingID, customer name, Model, Status, BookingDate}
+//   history   {BookingID, Model, Status, BookingDate, ReturnDate}
+//   payments  {PaymentID, Model, Amount, PaymentMethod, PaymentDate}
+//   customers {CustomerID, Name, MobileNumber, Username}
+interface RentalRepository {
+    // Hears how a long-running job is getting on: done of total in the named step.
+    // Called from the thread doing the work.
+    interface Progress {
+        void update(String step, int done, int total);
+    }
+
+    // --- Accounts ---
+
+    // null when the username/password pair matches nobody
+    Credentials.Login login(String username, String password) throws Exception;
+
+    // false when the username is already taken
+    boolean register(String name, String mobile, String username, String password) throws Exception;
+
+    // --- Vehicles ---
+
+    PageSource vehicles();
+
+    // Vehicles matching a search box, from an in-memory index; ordered like vehicles()
+    PageSource searchVehicles(VehicleIndex.Query query);
+
+    // Category and rent-band buckets with their available / total counts, kept by the
+    // same index
+    VehicleIndex.Facets vehicleFacets() throws Exception;
+
+    void addVehicle(String model, String category, double rent) throws Exception;
+
+    void updateVehicle(int vehicleId, String model, String category, double rent) throws Exception;
+
+    void deleteVehicle(int vehicleId) throws Exception;
+
+    // --- Bookings ---
+
+    BookingOutcome book(int customerId, int vehicleId) throws Exception;
+
+    BookingOutcome returnVehicle(int customerId, int vehicleId) throws Exception;
+
+    // IDs of the vehicles the customer currently has booked
+    Set<Integer> activeVehicles(int customerId) throws Exception;
+
+    // Newest first
+    List<Object[]> history(int customerId) throws Exception;
+
+    // Newest first; statusFilter is "ALL" or a booking Status value
+    PageSource bookings(String statusFilter);
+
+    boolean bookingExists(int bookingId) throws Exception;
+
+    // --- Payments ---
+
+    // Up to limit payments, newest first, starting after the row 'after' (from the
+    // newest when null)
+    List<Object[]> payments(int customerId, Object[] after, int limit) throws Exception;
+
+    // false when there is no such booking
+    boolean recordPayment(int bookingId, double amount, String method) throws Exception;
+
+    // --- Customers and reports ---
+
+    List<Object[]> customers() throws Exception;
+
+    // Also deletes their bookings and payments and returns the vehicles they hold.
+    // Large histories go in short chunks; progress may be null. A deletion that is
+    // stopped part way finishes when it is run again.
+    void deleteCustomer(int customerId, Progress progress) throws Exception;
+
+    String fleetReport() throws Exception;
+
+    List<Leaderboard.Entry> topCustomers() throws Exception;
+}
\ No newline at end of file
@@ -0,0 +1,303 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Span tracing for user actions. An action is a root span; AsyncDb opens one for the
+// button click that started it and carries it to the worker and back to the event
+// thread, and data access code adds nested spans for statement execution, cursor
+// iteration, row mapping and table population. Actions slower than the threshold are
+// appended to a rolling trace file, one JSON object per line, with every span's
+// statement text and bind values. TraceReport summarizes the file.
+//
+// An action ends early when it opens a modal dialog: from then on the user is reading
+// its result, and clicks in the dialog start actions of their own.
+//
+//   vrs.trace.thresholdMs  actions at least this slow are written   (500; -1 = off)
+//   vrs.trace.file         trace file                    (vrs-trace.log)
+//   vrs.trace.maxBytes     size at which the file is rolled   (10 MB)
+//   vrs.trace.files        rolled files kept: file.1 (newest) .. file.N   (5)
+class Trace {
+    private static final long THRESHOLD_NANOS = Long.getLong("vrs.trace.thresholdMs", 500L) * 1_000_000L;
+    private static final Path FILE = Paths.get(System.getProperty("vrs.trace.file", "vrs-trace.log"));
+    private static final long MAX_BYTES = Long.getLong("vrs.trace.maxBytes", 10L << 20);
+    private static final int KEEP = Integer.getInteger("vrs.trace.files", 5);
+    private static final boolean ENABLED = THRESHOLD_NANOS >= 0;
+
+    private static final ThreadLocal<Span> current = new ThreadLocal<>();
+    private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "trace-writer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    static {
+        if (ENABLED && !GraphicsEnvironment.isHeadless())
+            Toolkit.getDefaultToolkit().addAWTEventListener(e -> {
+                if (e.getID() == WindowEvent.WINDOW_OPENED && e.getSource() instanceof Dialog
+                        && ((Dialog) e.getSource()).isModal())
+                    cut();
+            }, AWTEvent.WINDOW_EVENT_MASK);
+    }
+
+    static final class Span implements AutoCloseable {
+        final String name;
+        final Span root;
+        private final Span parent;
+        final long start = System.nanoTime();
+        final long startMillis = System.currentTimeMillis();
+        private final Span previous; // current span on this thread before this one
+        private final String detail;
+        private final List<Span> children = new ArrayList<>();
+        private volatile long elapsed = -1;
+        private final AtomicInteger holds; // roots only: open parts, the opener included
+        private volatile long cutAt = -1; // roots only: when a modal dialog ended the action
+
+        private Span(String name, Span parent, String detail, Span previous) {
+            this.name = name;
+            this.root = parent == null ? this : parent.root;
+            this.parent = parent;
+            this.detail = detail;
+            this.previous = previous;
+            this.holds = parent == null ? new AtomicInteger(1) : null;
+            if (parent != null)
+                synchronized (root) {
+                    parent.children.add(this);
+                }
+        }
+
+        private Span(String name, long nanos, String detail) {
+            this.name = name;
+            this.root = null;
+            this.parent = null;
+            this.detail = detail;
+            this.previous = null;
+            this.holds = null;
+            this.elapsed = nanos;
+        }
+
+        // Keeps a root open until the matching release(), e.g. across an async hop
+        Span hold() {
+            if (root == null)
+                return this;
+            root.holds.incrementAndGet();
+            return this;
+        }
+
+        void release() {
+            if (root != null && root.holds.decrementAndGet() == 0)
+                root.finish();
+        }
+
+        // Ends this span and makes the previous one current again. Closing a root
+        // only gives up the opener's hold.
+        @Override
+        public void close() {
+            if (root == null)
+                return;
+            if (current.get() == this)
+                current.set(previous);
+            if (this == root)
+                release();
+            else if (elapsed < 0)
+                elapsed = System.nanoTime() - start;
+        }
+
+        private void finish() {
+            elapsed = (cutAt >= 0 ? cutAt : System.nanoTime()) - start;
+            if (elapsed >= THRESHOLD_NANOS)
+                WRITER.execute(() -> write(this));
+        }
+
+        private Map<String, Object> toMap(long rootStart) {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("name", name);
+            if (root != null) // spans from add() are totals, not one interval
+                m.put("atMs", (start - rootStart) / 1e6);
+            m.put("ms", elapsed < 0 ? null : elapsed / 1e6);
+            if (detail != null)
+                m.put("detail", detail);
+            List<Object> kids = new ArrayList<>();
+            synchronized (root == null ? this : root) {
+                for (Span c : children)
+                    kids.add(c.toMap(rootStart));
+            }
+            if (!kids.isEmpty())
+                m.put("spans", kids);
+            return m;
+        }
+    }
+
+    // Restores the thread's previous span when closed
+    static final class Scope implements AutoCloseable {
+        private final Span previous;
+
+        private Scope(Span previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            current.set(previous);
+        }
+    }
+
+    private static final Span NONE = new Span("", 0L, null);
+
+    private Trace() {
+    }
+
+    static Span current() {
+        return current.get();
+    }
+
+    // Whether spans opened on this thread now are recorded
+    static boolean tracing() {
+        Span s = current.get();
+        return s != null && s != NONE;
+    }
+
+    // A new root span, made current on this thread
+    static Span action(String name) {
+        if (!ENABLED)
+            return NONE;
+        Span s = new Span(name, null, null, current.get());
+        current.set(s);
+        return s;
+    }
+
+    // A child of the current span, made current; does nothing outside an action
+    static Span span(String name) {
+        return span(name, null);
+    }
+
+    // As span(name), recording the statement and its bind values
+    static Span span(String name, String statement, Object... binds) {
+        Span parent = current.get();
+        if (parent == null || parent == NONE)
+            return NONE;
+        String detail = statement;
+        if (statement != null && binds.length > 0) {
+            StringBuilder sb = new StringBuilder(statement).append(" -- binds:");
+            for (Object b : binds)
+                sb.append(' ').append(b);
+            detail = sb.toString();
+        }
+        Span s = new Span(name, parent, detail, parent);
+        current.set(s);
+        return s;
+    }
+
+    // A finished child of the current span that took the given time, for work that is
+    // interleaved with other work (e.g. cursor iteration and row mapping)
+    static void add(String name, long nanos) {
+        add(name, nanos, null);
+    }
+
+    static void add(String name, long nanos, String detail) {
+        Span parent = current.get();
+        if (parent == null || parent == NONE)
+            return;
+        Span s = new Span(name, nanos, detail);
+        synchronized (parent.root) {
+            parent.children.add(s);
+        }
+    }
+
+    // Makes a span current on this thread, e.g. on the other side of an async hop
+    static Scope resume(Span s) {
+        Scope scope = new Scope(current.get());
+        if (s != null && s != NONE)
+            current.set(s);
+        return scope;
+    }
+
+    // "<window title>: <button text>" for the click being dispatched, else the window
+    static String actionName(Component owner) {
+        String where = "";
+        Window w = owner == null ? null : owner instanceof Window ? (Window) owner : SwingUtilities.getWindowAncestor(owner);
+        if (w instanceof Frame)
+            where = ((Frame) w).getTitle();
+        else if (w instanceof Dialog)
+            where = ((Dialog) w).getTitle();
+        AWTEvent e = SwingUtilities.isEventDispatchThread() ? EventQueue.getCurrentEvent() : null;
+        if (e instanceof ActionEvent && e.getSource() instanceof AbstractButton)
+            return (where.isEmpty() ? "" : where + ": ") + ((AbstractButton) e.getSource()).getText().trim();
+        return where.isEmpty() ? "(background)" : where;
+    }
+
+    // Ends the current span and everything it is nested in, and leaves the thread
+    // outside any action; the spans are still closed, harmlessly, as the stack unwinds
+    private static void cut() {
+        Span s = current.get();
+        if (s == null || s == NONE)
+            return;
+        long now = System.nanoTime();
+        for (Span p = s; p != null; p = p.parent) {
+            if (p == p.root && p.cutAt < 0)
+                p.cutAt = now;
+            else if (p != p.root && p.elapsed < 0)
+                p.elapsed = now - p.start;
+        }
+        current.remove();
+    }
+
+    // --- Trace file ---
+
+    private static void write(Span root) {
+        try {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("at", new Date(root.startMillis));
+            m.put("action", root.name);
+            m.put("ms", root.elapsed / 1e6);
+            Map<String, Object> tree = root.toMap(root.start);
+            if (tree.containsKey("spans"))
+                m.put("spans", tree.get("spans"));
+            byte[] line = (Json.write(m) + "\n").getBytes(StandardCharsets.UTF_8);
+            if (Files.exists(FILE) && Files.size(FILE) + line.length > MAX_BYTES)
+                roll();
+            Files.write(FILE, line, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void roll() throws IOException {
+        for (int i = KEEP - 1; i >= 1; i--) {
+            Path from = rolled(i);
+            if (Files.exists(from))
+                Files.move(from, rolled(i + 1), StandardCopyOption.REPLACE_EXISTING);
+        }
+        if (KEEP > 0)
+            Files.move(FILE, rolled(1), StandardCopyOption.REPLACE_EXISTING);
+        else
+            Files.delete(FILE);
+    }
+
+    static Path rolled(int n) {
+        return FILE.resolveSibling(FILE.getFileName() + "." + n);
+    }
+
+    static Path file() {
+        return FILE;
+    }
+
+    static int keep() {
+        return KEEP;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,147 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Offline summary of the trace files Trace writes. Prints, per action, how often it was
+// slow and how slow, with where its time went by span name, then the slowest traces in
+// full with their statements and bind values.
+//
+//   java TraceReport [trace file...]     default: vrs.trace.file and its rolled files
+//   vrs.trace.top   slowest traces printed in full   (10)
+class TraceReport {
+    private static final int TOP = Integer.getInteger("vrs.trace.top", 10);
+
+    private static final class Summary {
+        final String action;
+        final List<Double> ms = new ArrayList<>();
+        final Map<String, double[]> spans = new LinkedHashMap<>(); // name -> {total ms, occurrences}
+
+        Summary(String action) {
+            this.action = action;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (String a : args)
+            files.add(Paths.get(a));
+        if (files.isEmpty()) {
+            for (int i = Trace.keep(); i >= 1; i--)
+                if (Files.exists(Trace.rolled(i)))
+                    files.add(Trace.rolled(i));
+            if (Files.exists(Trace.file()))
+                files.add(Trace.file());
+        }
+        if (files.isEmpty()) {
+            System.out.println("No trace files; expected " + Trace.file());
+            return;
+        }
+
+        List<Map<String, Object>> traces = new ArrayList<>();
+        for (Path f : files)
+            read(f, traces);
+        System.out.println(traces.size() + " slow actions in " + files);
+        if (traces.isEmpty())
+            return;
+
+        Map<String, Summary> byAction = new LinkedHashMap<>();
+        for (Map<String, Object> t : traces) {
+            Summary s = byAction.computeIfAbsent((String) t.get("action"), Summary::new);
+            s.ms.add(ms(t));
+            tally(s.spans, "", t);
+        }
+        List<Summary> summaries = new ArrayList<>(byAction.values());
+        for (Summary s : summaries)
+            s.ms.sort(null);
+        summaries.sort((a, b) -> Double.compare(total(b), total(a)));
+
+        System.out.printf("%n%-44s %7s %10s %10s %10s %12s%n", "action", "count", "p50 ms", "p95 ms", "max ms",
+                "total ms");
+        for (Summary s : summaries) {
+            System.out.printf("%-44s %7d %10.1f %10.1f %10.1f %12.1f%n", s.action, s.ms.size(),
+                    percentile(s.ms, 0.50), percentile(s.ms, 0.95), s.ms.get(s.ms.size() - 1), total(s));
+            for (Map.Entry<String, double[]> e : s.spans.entrySet())
+                System.out.printf("    %-40s %7.0f %10s %10s %10s %12.1f%n", e.getKey(), e.getValue()[1], "", "", "",
+                        e.getValue()[0]);
+        }
+
+        traces.sort((a, b) -> Double.compare(ms(b), ms(a)));
+        System.out.printf("%nSlowest %d:%n", Math.min(TOP, traces.size()));
+        for (Map<String, Object> t : traces.subList(0, Math.min(TOP, traces.size()))) {
+            System.out.printf("%n%.1f ms  %s  at %s%n", ms(t), t.get("action"), t.get("at"));
+            print(t, "  ");
+        }
+    }
+
+    private static void read(Path file, List<Map<String, Object>> into) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int n = 0;
+            while ((line = in.readLine()) != null) {
+                n++;
+                if (line.isBlank())
+                    continue;
+                try {
+                    into.add(Json.parseObject(line));
+                } catch (RuntimeException e) {
+                    // A line cut short when the process died mid-write
+                    System.err.println(file + ":" + n + ": skipped: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // Adds every span under node to totals, keyed by its path of span names
+    private static void tally(Map<String, double[]> totals, String prefix, Map<?, ?> node) {
+        Object kids = node.get("spans");
+        if (!(kids instanceof List))
+            return;
+        for (Object o : (List<?>) kids) {
+            Map<?, ?> span = (Map<?, ?>) o;
+            String key = prefix + span.get("name");
+            double[] t = totals.computeIfAbsent(key, k -> new double[2]);
+            t[0] += ms(span);
+            t[1]++;
+            tally(totals, key + " / ", span);
+        }
+    }
+
+    private static void print(Map<?, ?> node, String indent) {
+        Object kids = node.get("spans");
+        if (!(kids instanceof List))
+            return;
+        for (Object o : (List<?>) kids) {
+            Map<?, ?> span = (Map<?, ?>) o;
+            Object at = span.get("atMs");
+            System.out.printf("%s%-" + Math.max(1, 40 - indent.length()) + "s %9.1f ms%s%n", indent, span.get("name"),
+                    ms(span), at == null ? "" : String.format("  @%.1f", ((Number) at).doubleValue()));
+            if (span.get("detail") != null)
+                System.out.println(indent + "    " + span.get("detail"));
+            print(span, indent + "  ");
+        }
+    }
+
+    private static double ms(Map<?, ?> m) {
+        Object v = m.get("ms");
+        return v instanceof Number ? ((Number) v).doubleValue() : 0;
+    }
+
+    private static double total(Summary s) {
+        double sum = 0;
+        for (double d : s.ms)
+            sum += d;
+        return sum;
+    }
+
+    private static double percentile(List<Double> sorted, double q) {
+        int rank = (int) Math.ceil(q * sorted.size());
+        return sorted.get(Math.max(0, Math.min(sorted.size(), rank) - 1));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,99 @@
+import javax.swing.*;
+import java.awt.*;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Category and Rent/Day tick boxes beside a fleet grid, each showing "available /
+// total" for its bucket. Ticking narrows the grid through the VehicleSearchBar it is
+// attached to: any ticked category, any ticked band, and both. The counts come from
+// the search index and are re-read when the bar is refreshed, not on every tick.
+class VehicleFacetPanel extends JPanel {
+    private static final long serialVersionUID = 1L;
+    private final RentalRepository repo;
+    private final Component owner;
+    private final JPanel categoryBoxes = new JPanel(new GridLayout(0, 1));
+    private final JPanel bandBoxes = new JPanel(new GridLayout(0, 1));
+    private final Set<String> categories = new HashSet<>();
+    private final Set<Integer> bands = new HashSet<>();
+    private Runnable onChange = () -> {
+    };
+    private SwingWorker<?, ?> activeLoad;
+
+    VehicleFacetPanel(RentalRepository repo, Component owner) {
+        super(new BorderLayout());
+        this.repo = repo;
+        this.owner = owner;
+        categoryBoxes.setBorder(BorderFactory.createTitledBorder("Category"));
+        bandBoxes.setBorder(BorderFactory.createTitledBorder("Rent/Day"));
+        JPanel sections = new JPanel();
+        sections.setLayout(new BoxLayout(sections, BoxLayout.Y_AXIS));
+        sections.add(categoryBoxes);
+        sections.add(bandBoxes);
+        // Top-aligned however tall the window is
+        JPanel top = new JPanel(new BorderLayout());
+        top.add(sections, BorderLayout.NORTH);
+        JScrollPane scroll = new JScrollPane(top);
+        scroll.setBorder(null);
+        scroll.setPreferredSize(new Dimension(190, 0));
+        add(scroll, BorderLayout.CENTER);
+    }
+
+    void onChange(Runnable onChange) {
+        this.onChange = onChange;
+    }
+
+    // Category keys ticked, for a VehicleIndex.Query
+    Set<String> categories() {
+        return new HashSet<>(categories);
+    }
+
+    // Rent bands ticked, for a VehicleIndex.Query
+    Set<Integer> bands() {
+        return new HashSet<>(bands);
+    }
+
+    // Re-reads the counts; a load still running is dropped
+    public void reload() {
+        if (activeLoad != null)
+            activeLoad.cancel(true);
+        activeLoad = AsyncDb.run(owner, repo::vehicleFacets, facets -> {
+            fill(categoryBoxes, facets.categories, categories, k -> k);
+            fill(bandBoxes, facets.bands, bands, Integer::valueOf);
+            revalidate();
+            repaint();
+        }, Throwable::printStackTrace);
+    }
+
+    private interface Key<K> {
+        K of(String key);
+    }
+
+    // One box per bucket. A ticked bucket that has since emptied stays, at 0 / 0, until
+    // it is unticked.
+    private <K> void fill(JPanel boxes, List<VehicleIndex.Facet> facets, Set<K> ticked, Key<K> key) {
+        boxes.removeAll();
+        Set<K> shown = new HashSet<>();
+        for (VehicleIndex.Facet f : facets) {
+            K k = key.of(f.key);
+            shown.add(k);
+            boxes.add(box(f.label + "  (" + f.available + " / " + f.total + ")", k, ticked));
+        }
+        for (K k : ticked)
+            if (!shown.contains(k))
+                boxes.add(box(k + "  (0 / 0)", k, ticked));
+    }
+
+    private <K> JCheckBox box(String text, K k, Set<K> ticked) {
+        JCheckBox box = new JCheckBox(text, ticked.contains(k));
+        box.setToolTipText("available / total");
+        box.addActionListener(e -> {
+            if (box.isSelected())
+                ticked.add(k);
+            else
+                ticked.remove(k);
+            onChange.run();
+        });
+        return box;
+    }
+}
\ No newline at end of file
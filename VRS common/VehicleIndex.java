@@ -0,0 +1,608 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// In-memory search over the vehicle catalog, behind the type-ahead boxes on the
+// dashboards. The words of each Model and Category are indexed two ways: by their
+// one- and two-character prefixes, and by their trigrams. Postings are sorted
+// VehicleID arrays. A search term of one or two characters matches the start of a
+// word, through one prefix posting; a longer one matches anywhere in a word, through
+// the intersection of its trigrams' postings.
+//
+// Vehicles are also bucketed by category (Category trimmed and case-folded, so "SUV"
+// and " suv" are one bucket) and by the fleet report's rent bands. Each bucket keeps a
+// bitset of its vehicles and counts of them and of those available, updated with
+// every change rather than counted again for each view.
+//
+// A result is a bitset over VehicleIDs: the terms' matches ANDed together (every term
+// must match), with the ticked buckets of each facet ORed together, and with the
+// available vehicles when asked. Only the survivors are looked at, to check the
+// longer terms are contiguous and the rent is in range, and pages come off the bitset
+// in VehicleID order. A keystroke or a ticked box never reaches the database.
+//
+// There is one index per backend (connection pool or Mongo client), shared by the
+// repository and BookingEngine over it. Its catalog is read once, page by page, kept
+// current by the vehicles added, edited, deleted, booked and returned in this
+// process, and re-read now and then to pick up other app instances' changes.
+//
+//   vrs.search.reloadMs  re-read the catalog this often   (300000)
+class VehicleIndex {
+    private static final long RELOAD_MS = Long.getLong("vrs.search.reloadMs", 300_000L);
+    private static final int LOAD_PAGE = 1000;
+
+    private static final Map<Object, VehicleIndex> INSTANCES = new IdentityHashMap<>();
+
+    // What a search box asks for; a null bound is open, and an empty set of category
+    // keys or rent bands leaves that facet open
+    static final class Query {
+        final String text;
+        final Double minRent;
+        final Double maxRent;
+        final boolean availableOnly;
+        final Set<String> categories;
+        final Set<Integer> bands;
+
+        Query(String text, Double minRent, Double maxRent, boolean availableOnly) {
+            this(text, minRent, maxRent, availableOnly, Collections.emptySet(), Collections.emptySet());
+        }
+
+        Query(String text, Double minRent, Double maxRent, boolean availableOnly, Set<String> categories,
+                Set<Integer> bands) {
+            this.text = text == null ? "" : text.trim();
+            this.minRent = minRent;
+            this.maxRent = maxRent;
+            this.availableOnly = availableOnly;
+            this.categories = categories;
+            this.bands = bands;
+        }
+
+        // Nothing to narrow by; the plain catalog answers this
+        boolean isEmpty() {
+            return text.isEmpty() && minRent == null && maxRent == null && !availableOnly && categories.isEmpty()
+                    && bands.isEmpty();
+        }
+
+        boolean inRent(double rent) {
+            return (minRent == null || rent >= minRent) && (maxRent == null || rent <= maxRent);
+        }
+    }
+
+    // One bucket of a facet as the facet panel shows it. key is what a Query names it
+    // by: the case-folded category ("" for none), or the rent band's number.
+    static final class Facet {
+        final String key;
+        final String label;
+        final int available;
+        final int total;
+
+        Facet(String key, String label, int available, int total) {
+            this.key = key;
+            this.label = label;
+            this.available = available;
+            this.total = total;
+        }
+    }
+
+    // The category buckets in key order and the rent bands from cheapest up
+    static final class Facets {
+        final List<Facet> categories;
+        final List<Facet> bands;
+
+        Facets(List<Facet> categories, List<Facet> bands) {
+            this.categories = categories;
+            this.bands = bands;
+        }
+    }
+
+    private static final class Entry {
+        final int id;
+        final String model;
+        final String category;
+        final double rent;
+        final boolean available;
+        final String[] words; // of Model and Category, lower-cased
+        final String text; // the words with a space between, for checking terms against
+        final String categoryKey;
+        final int band;
+
+        Entry(int id, String model, String category, double rent, boolean available) {
+            this.id = id;
+            this.model = model;
+            this.category = category;
+            this.rent = rent;
+            this.available = available;
+            this.categoryKey = categoryKey(category);
+            this.band = FleetStats.bandOf(rent);
+            List<String> w = new ArrayList<>();
+            w.addAll(wordsOf(model));
+            w.addAll(wordsOf(category));
+            this.words = w.toArray(new String[0]);
+            this.text = String.join(" ", w);
+        }
+
+        Entry withAvailable(boolean available) {
+            return new Entry(id, model, category, rent, available);
+        }
+
+        Object[] row() {
+            return new Object[] { id, model, category, rent, available ? "Yes" : "No" };
+        }
+    }
+
+    // VehicleIDs in ascending order. Loading adds them in order, so adds append.
+    private static final class Posting {
+        int[] ids = new int[2];
+        int size;
+
+        void add(int id) {
+            int i = Arrays.binarySearch(ids, 0, size, id);
+            if (i >= 0)
+                return;
+            i = -i - 1;
+            if (size == ids.length)
+                ids = Arrays.copyOf(ids, size * 2);
+            System.arraycopy(ids, i, ids, i + 1, size - i);
+            ids[i] = id;
+            size++;
+        }
+
+        boolean remove(int id) {
+            int i = Arrays.binarySearch(ids, 0, size, id);
+            if (i < 0)
+                return false;
+            System.arraycopy(ids, i + 1, ids, i, size - i - 1);
+            size--;
+            return true;
+        }
+    }
+
+    // The vehicles in one facet bucket. The label is the first spelling seen.
+    private static final class Bucket {
+        final String label;
+        final BitSet ids = new BitSet();
+        int total;
+        int available;
+
+        Bucket(String label) {
+            this.label = label;
+        }
+
+        void add(Entry e) {
+            ids.set(e.id);
+            total++;
+            if (e.available)
+                available++;
+        }
+
+        void remove(Entry e) {
+            ids.clear(e.id);
+            total--;
+            if (e.available)
+                available--;
+        }
+
+        Facet facet(String key) {
+            return new Facet(key, label, available, total);
+        }
+    }
+
+    // One generation of the index; a reload builds a new one and swaps it in
+    private static final class Tables {
+        Entry[] byId = new Entry[1024]; // VehicleIDs are handed out densely
+        final BitSet all = new BitSet();
+        final BitSet available = new BitSet();
+        final Map<String, Posting> prefixes = new HashMap<>();
+        final Map<String, Posting> trigrams = new HashMap<>();
+        final Map<String, Bucket> categories = new TreeMap<>();
+        final Map<Integer, Bucket> bands = new TreeMap<>();
+
+        Entry get(int id) {
+            return id >= 0 && id < byId.length ? byId[id] : null;
+        }
+
+        void put(Entry e) {
+            remove(e.id);
+            if (e.id >= byId.length)
+                byId = Arrays.copyOf(byId, Math.max(byId.length * 2, e.id + 1));
+            byId[e.id] = e;
+            all.set(e.id);
+            available.set(e.id, e.available);
+            categories.computeIfAbsent(e.categoryKey, k -> new Bucket(categoryLabel(e.category))).add(e);
+            bands.computeIfAbsent(e.band, b -> new Bucket(FleetStats.bandLabel(b))).add(e);
+            for (String w : e.words) {
+                for (String p : prefixesOf(w))
+                    post(prefixes, p, e.id);
+                for (String g : trigramsOf(w))
+                    post(trigrams, g, e.id);
+            }
+        }
+
+        void remove(int id) {
+            Entry e = get(id);
+            if (e == null)
+                return;
+            byId[id] = null;
+            all.clear(id);
+            available.clear(id);
+            leave(categories, e.categoryKey, e);
+            leave(bands, e.band, e);
+            for (String w : e.words) {
+                for (String p : prefixesOf(w))
+                    unpost(prefixes, p, id);
+                for (String g : trigramsOf(w))
+                    unpost(trigrams, g, id);
+            }
+        }
+
+        void setAvailable(int id, boolean nowAvailable) {
+            Entry e = get(id);
+            if (e != null && e.available != nowAvailable) {
+                byId[id] = e.withAvailable(nowAvailable);
+                available.set(id, nowAvailable);
+                int change = nowAvailable ? 1 : -1;
+                categories.get(e.categoryKey).available += change;
+                bands.get(e.band).available += change;
+            }
+        }
+
+        // IDs in any of the named buckets
+        static <K> BitSet inAny(Map<K, Bucket> facet, Set<K> keys) {
+            BitSet ids = new BitSet();
+            for (K key : keys) {
+                Bucket b = facet.get(key);
+                if (b != null)
+                    ids.or(b.ids);
+            }
+            return ids;
+        }
+
+        static <K> List<Facet> facets(Map<K, Bucket> facet) {
+            List<Facet> list = new ArrayList<>(facet.size());
+            for (Map.Entry<K, Bucket> b : facet.entrySet())
+                list.add(b.getValue().facet(String.valueOf(b.getKey())));
+            return list;
+        }
+
+        private static <K> void leave(Map<K, Bucket> facet, K key, Entry e) {
+            Bucket b = facet.get(key);
+            b.remove(e);
+            if (b.total == 0)
+                facet.remove(key);
+        }
+
+        // IDs with a word starting with prefix, which is one or two characters long
+        BitSet startingWith(String prefix) {
+            BitSet ids = new BitSet();
+            Posting p = prefixes.get(prefix);
+            if (p != null)
+                for (int i = 0; i < p.size; i++)
+                    ids.set(p.ids[i]);
+            return ids;
+        }
+
+        // IDs that have every trigram of term, which is at least three characters long;
+        // whether they are next to each other is for contains() to say
+        BitSet withTrigrams(String term) {
+            BitSet ids = null;
+            for (String g : trigramsOf(term)) {
+                Posting p = trigrams.get(g);
+                if (p == null)
+                    return new BitSet();
+                BitSet has = new BitSet();
+                for (int i = 0; i < p.size; i++)
+                    has.set(p.ids[i]);
+                if (ids == null)
+                    ids = has;
+                else
+                    ids.and(has);
+            }
+            return ids;
+        }
+
+        // Whether each of terms is inside one of the vehicle's words
+        static boolean contains(Entry e, List<String> terms) {
+            for (String term : terms)
+                if (!e.text.contains(term))
+                    return false;
+            return true;
+        }
+
+        private static void post(Map<String, Posting> index, String key, int id) {
+            index.computeIfAbsent(key, k -> new Posting()).add(id);
+        }
+
+        private static void unpost(Map<String, Posting> index, String key, int id) {
+            Posting p = index.get(key);
+            if (p != null && p.remove(id) && p.size == 0)
+                index.remove(key);
+        }
+    }
+
+    private final PageSource catalog;
+    // Guarded by this
+    private Tables tables = new Tables();
+    private boolean loaded;
+    private long version; // bumped by every change, so searches know when to redo their matches
+    // Changes made while a reload reads the catalog, replayed onto what it read; null
+    // when no reload is running
+    private List<Consumer<Tables>> pending;
+    private boolean failing; // background re-reads are failing; timer thread only
+
+    private VehicleIndex(PageSource catalog) {
+        this.catalog = catalog;
+    }
+
+    // The index over backend's vehicles, loaded and re-read in the background. The
+    // first call for a backend creates it from catalog; later calls get the same one.
+    public static VehicleIndex of(Object backend, Supplier<PageSource> catalog) {
+        synchronized (INSTANCES) {
+            VehicleIndex index = INSTANCES.get(backend);
+            if (index == null) {
+                index = new VehicleIndex(catalog.get());
+                index.schedule();
+                INSTANCES.put(backend, index);
+            }
+            return index;
+        }
+    }
+
+    private void schedule() {
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "vehicle-index");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.scheduleWithFixedDelay(this::reloadInBackground, 0, RELOAD_MS, TimeUnit.MILLISECONDS);
+    }
+
+    // Says so once when re-reads start failing, e.g. while the database is down, and
+    // once when they work again
+    private void reloadInBackground() {
+        try {
+            reload();
+            if (failing) {
+                failing = false;
+                System.out.println("Search index: catalog re-read again");
+            }
+        } catch (Exception e) {
+            if (!failing) {
+                failing = true;
+                System.err.println("Search index: re-reading the catalog failed, retrying every "
+                        + RELOAD_MS / 1000 + "s: " + e.getMessage());
+            }
+        }
+    }
+
+    // An index with no catalog behind it, for a store that reports every change (the
+    // in-memory backend); nothing is loaded or re-read
+    static VehicleIndex detached() {
+        VehicleIndex index = new VehicleIndex(null);
+        index.loaded = true;
+        return index;
+    }
+
+    // --- Events ---
+
+    public void added(int vehicleId, String model, String category, double rent, boolean available) {
+        Entry e = new Entry(vehicleId, model, category, rent, available);
+        apply(t -> t.put(e));
+    }
+
+    public void changed(int vehicleId, String model, String category, double rent) {
+        apply(t -> {
+            Entry was = t.get(vehicleId);
+            t.put(new Entry(vehicleId, model, category, rent, was == null || was.available));
+        });
+    }
+
+    public void removed(int vehicleId) {
+        apply(t -> t.remove(vehicleId));
+    }
+
+    // Booked (available -> rented) or returned (rented -> available)
+    public void availabilityChanged(int vehicleId, boolean nowAvailable) {
+        apply(t -> t.setAvailable(vehicleId, nowAvailable));
+    }
+
+    private synchronized void apply(Consumer<Tables> change) {
+        change.accept(tables);
+        version++;
+        if (pending != null)
+            pending.add(change);
+    }
+
+    // --- Search ---
+
+    // Every bucket with its available / total counts, as they stand
+    public Facets facets() throws Exception {
+        ensureLoaded();
+        synchronized (this) {
+            return new Facets(Tables.facets(tables.categories), Tables.facets(tables.bands));
+        }
+    }
+
+    // The matching vehicles as grid rows, ordered by VehicleID. The matches are worked
+    // out once and reused by count() and every page until the index changes.
+    public PageSource search(Query query) {
+        return new PageSource() {
+            private BitSet matches;
+            private int count;
+            private long matchedAt;
+
+            // Caller holds the index's lock
+            private BitSet matches() {
+                if (matches == null || matchedAt != version) {
+                    matches = match(query);
+                    count = matches.cardinality();
+                    matchedAt = version;
+                }
+                return matches;
+            }
+
+            @Override
+            public int count() throws Exception {
+                ensureLoaded();
+                synchronized (VehicleIndex.this) {
+                    matches();
+                    return count;
+                }
+            }
+
+            @Override
+            public List<Object[]> fetch(Integer afterKey, int skip, int limit) throws Exception {
+                ensureLoaded();
+                List<Object[]> rows = new ArrayList<>(limit);
+                synchronized (VehicleIndex.this) {
+                    BitSet ids = matches();
+                    int id = ids.nextSetBit(afterKey == null ? 0 : afterKey + 1);
+                    for (int i = 0; i < skip && id >= 0; i++)
+                        id = ids.nextSetBit(id + 1);
+                    for (; id >= 0 && rows.size() < limit; id = ids.nextSetBit(id + 1))
+                        rows.add(tables.get(id).row());
+                }
+                return rows;
+            }
+        };
+    }
+
+    // Caller holds the lock
+    private BitSet match(Query query) {
+        Tables t = tables;
+        BitSet ids = null; // null until a term narrows it: every vehicle
+        List<String> unchecked = new ArrayList<>(); // terms found by trigrams only, so far
+        for (String term : wordsOf(query.text)) {
+            BitSet hits = term.length() < 3 ? t.startingWith(term) : t.withTrigrams(term);
+            if (term.length() > 3)
+                unchecked.add(term);
+            if (ids == null)
+                ids = hits;
+            else
+                ids.and(hits);
+            if (ids.isEmpty())
+                return ids;
+        }
+        if (ids == null)
+            ids = (BitSet) t.all.clone();
+        if (!query.categories.isEmpty())
+            ids.and(Tables.inAny(t.categories, query.categories));
+        if (!query.bands.isEmpty())
+            ids.and(Tables.inAny(t.bands, query.bands));
+        if (query.availableOnly)
+            ids.and(t.available);
+        if (unchecked.isEmpty() && query.minRent == null && query.maxRent == null)
+            return ids;
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+            Entry e = t.get(id);
+            if (!query.inRent(e.rent) || !Tables.contains(e, unchecked))
+                ids.clear(id);
+        }
+        return ids;
+    }
+
+    // --- Loading ---
+
+    // Returns once a load has finished: waits for the one running, or runs one. A
+    // load that fails throws here rather than leaving the search on empty tables.
+    private void ensureLoaded() throws Exception {
+        while (true) {
+            synchronized (this) {
+                if (loaded)
+                    return;
+                if (pending != null) {
+                    wait();
+                    continue;
+                }
+                pending = new ArrayList<>();
+            }
+            load();
+        }
+    }
+
+    // Reads the whole catalog into a fresh generation and swaps it in, unless a read
+    // is already running
+    void reload() throws Exception {
+        if (catalog == null)
+            return;
+        synchronized (this) {
+            if (pending != null)
+                return;
+            pending = new ArrayList<>();
+        }
+        load();
+    }
+
+    // Caller has set pending
+    private void load() throws Exception {
+        try {
+            Tables fresh = new Tables();
+            Integer after = null;
+            List<Object[]> page;
+            do {
+                page = catalog.fetch(after, 0, LOAD_PAGE);
+                for (Object[] r : page)
+                    fresh.put(new Entry((Integer) r[0], (String) r[1], (String) r[2], ((Number) r[3]).doubleValue(),
+                            "Yes".equals(r[4])));
+                if (!page.isEmpty())
+                    after = (Integer) page.get(page.size() - 1)[0];
+            } while (page.size() == LOAD_PAGE);
+            synchronized (this) {
+                for (Consumer<Tables> change : pending)
+                    change.accept(fresh);
+                tables = fresh;
+                loaded = true;
+                version++;
+            }
+        } finally {
+            synchronized (this) {
+                pending = null;
+                notifyAll();
+            }
+        }
+    }
+
+    // --- Text ---
+
+    // The bucket a Category falls in: trimmed, inner spaces collapsed, case-folded
+    static String categoryKey(String category) {
+        return category == null ? "" : category.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private static String categoryLabel(String category) {
+        String key = categoryKey(category);
+        return key.isEmpty() ? "(none)" : category.trim().replaceAll("\\s+", " ");
+    }
+
+    private static List<String> wordsOf(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null)
+            return words;
+        for (String w : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+"))
+            if (!w.isEmpty())
+                words.add(w);
+        return words;
+    }
+
+    private static List<String> prefixesOf(String word) {
+        return word.length() == 1 ? Arrays.asList(word) : Arrays.asList(word.substring(0, 1), word.substring(0, 2));
+    }
+
+    private static List<String> trigramsOf(String word) {
+        List<String> grams = new ArrayList<>(Math.max(0, word.length() - 2));
+        for (int i = 0; i + 3 <= word.length(); i++)
+            grams.add(word.substring(i, i + 3));
+        return grams;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,44 @@
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// In-process claim table for vehicles with a booking or return in flight. Each stripe
+// guards the set of vehicle IDs hashed to it, so the lock is only held for the set
+// update and two different vehicles never block each other. A second claim on the
+// same vehicle fails at once instead of queueing behind a database round trip.
+class VehicleLocks {
+    private final Object[] stripes;
+    private final List<Set<Integer>> claimed;
+    private final int mask;
+
+    public VehicleLocks(int stripeCount) {
+        int n = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        stripes = new Object[n];
+        claimed = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            stripes[i] = new Object();
+            claimed.add(new HashSet<>());
+        }
+        mask = n - 1;
+    }
+
+    private int stripe(int vehicleId) {
+        int h = vehicleId * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    public boolean tryClaim(int vehicleId) {
+        int s = stripe(vehicleId);
+        synchronized (stripes[s]) {
+            return claimed.get(s).add(vehicleId);
+        }
+    }
+
+    public void release(int vehicleId) {
+        int s = stripe(vehicleId);
+        synchronized (stripes[s]) {
+            claimed.get(s).remove(vehicleId);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,108 @@
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.awt.*;
+import java.util.Collections;
+
+// Type-ahead search, rent range and "Available only" over a fleet grid. A pause in
+// typing points the grid at the repository's in-memory vehicle search, or back at the
+// plain catalog once the bar is cleared. Searches reload the grid without the busy
+// overlay, so the window keeps taking keystrokes and clicks. A rent that does not
+// parse is shown in red and left open. With a VehicleFacetPanel attached, its ticked
+// boxes narrow the grid too. Its counts do not depend on the search, so they are only
+// re-read by refresh(), which the dashboards call when the vehicles have changed.
+//
+//   vrs.search.typingMs  quiet time after a keystroke before searching   (250)
+class VehicleSearchBar extends JPanel {
+    private static final long serialVersionUID = 1L;
+    private static final int TYPING_MS = Integer.getInteger("vrs.search.typingMs", 250);
+
+    private final RentalRepository repo;
+    private final PagedTableModel model;
+    private final Component owner;
+    private final JTextField text = new JTextField(18);
+    private final JTextField minRent = new JTextField(5);
+    private final JTextField maxRent = new JTextField(5);
+    private final JCheckBox availableOnly = new JCheckBox("Available only");
+    private VehicleFacetPanel facets;
+    private final Timer typing = new Timer(TYPING_MS, e -> search());
+
+    VehicleSearchBar(RentalRepository repo, PagedTableModel model, Component owner) {
+        super(new FlowLayout(FlowLayout.LEFT));
+        this.repo = repo;
+        this.model = model;
+        this.owner = owner;
+        add(new JLabel("Search:"));
+        add(text);
+        add(new JLabel("Rent/Day from"));
+        add(minRent);
+        add(new JLabel("to"));
+        add(maxRent);
+        add(availableOnly);
+
+        typing.setRepeats(false);
+        DocumentListener onEdit = new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                typing.restart();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                typing.restart();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                typing.restart();
+            }
+        };
+        text.getDocument().addDocumentListener(onEdit);
+        minRent.getDocument().addDocumentListener(onEdit);
+        maxRent.getDocument().addDocumentListener(onEdit);
+        availableOnly.addActionListener(e -> search());
+    }
+
+    void attach(VehicleFacetPanel panel) {
+        facets = panel;
+        panel.onChange(this::search);
+    }
+
+    // Reloads the grid and the facet counts, e.g. after a booking or a return
+    public SwingWorker<?, ?> refresh() {
+        if (facets != null)
+            facets.reload();
+        return search();
+    }
+
+    // Reloads the grid for what the bar holds now
+    @SuppressWarnings("try")
+    private SwingWorker<?, ?> search() {
+        typing.stop();
+        VehicleIndex.Query query = new VehicleIndex.Query(text.getText(), rent(minRent), rent(maxRent),
+                availableOnly.isSelected(), facets == null ? Collections.emptySet() : facets.categories(),
+                facets == null ? Collections.emptySet() : facets.bands());
+        if (query.isEmpty()) {
+            model.setSource(repo.vehicles());
+            return model.refresh(owner);
+        }
+        model.setSource(repo.searchVehicles(query));
+        // Traced under the window's name, but with no owner to cover with the busy overlay
+        try (Trace.Span action = Trace.action(Trace.actionName(owner) + ": Search")) {
+            return model.refresh(null);
+        }
+    }
+
+    private static Double rent(JTextField field) {
+        String s = field.getText().trim();
+        field.setForeground(UIManager.getColor("TextField.foreground"));
+        if (s.isEmpty())
+            return null;
+        try {
+            return Double.valueOf(s);
+        } catch (NumberFormatException e) {
+            field.setForeground(Color.RED);
+            return null;
+        }
+    }
+}
\ No newline at end of file
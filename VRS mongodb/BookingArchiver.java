@@ -0,0 +1,116 @@
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Moves bookings that were returned long ago, with their payments, out of bookings and
+// payments into bookings_archive and payments_archive, so the collections every status
+// check and booking runs against only hold recent and active bookings. History and
+// payment screens read both.
+//
+// Each batch of the lowest BookingIDs is copied first and deleted after. The copies
+// are upserts on _id, so a batch cut short between the two is simply copied again on
+// the next run. Payments move by BookingID until none are left, once before the
+// bookings are deleted and once after, so one recorded while a batch moves follows
+// its booking instead of being left behind.
+//
+//   vrs.archive.afterDays  archive bookings returned this many days ago   (90)
+//   vrs.archive.everyMin   minutes between runs; 0 turns archiving off     (60)
+//   vrs.archive.chunk      bookings per batch                              (1000)
+//
+// Run this class to archive once, e.g. after lowering vrs.archive.afterDays.
+public class BookingArchiver {
+    private static final int AFTER_DAYS = Integer.getInteger("vrs.archive.afterDays", 90);
+    private static final long EVERY_MIN = Long.getLong("vrs.archive.everyMin", 60L);
+    private static final int CHUNK = Integer.getInteger("vrs.archive.chunk", 1000);
+
+    private final MongoManager db;
+
+    public BookingArchiver(MongoManager db) {
+        this.db = db;
+    }
+
+    public static void main(String[] args) {
+        System.out.println("Archived " + new BookingArchiver(new MongoManager()).run() + " bookings");
+    }
+
+    // Archives every booking due; the number moved
+    public int run() {
+        Bson due = Filters.and(Filters.eq("Status", "Returned"),
+                Filters.lt("ReturnDate", new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(AFTER_DAYS))));
+        int moved = 0;
+        int n;
+        while ((n = moveBatch(due)) > 0)
+            moved += n;
+        return moved;
+    }
+
+    private int moveBatch(Bson due) {
+        List<Document> bookings = db.bookings.find(due).sort(Sorts.ascending("BookingID")).limit(CHUNK)
+                .into(new ArrayList<>());
+        if (bookings.isEmpty())
+            return 0;
+        List<Integer> ids = new ArrayList<>(bookings.size());
+        for (Document b : bookings)
+            ids.add(b.getInteger("BookingID"));
+
+        // A booking is copied before its payments and deleted after them
+        db.bookingsArchive.bulkWrite(upserts(bookings));
+        movePayments(ids);
+        int moved = (int) db.bookings.deleteMany(Filters.and(Filters.in("BookingID", ids), due)).getDeletedCount();
+        movePayments(ids);
+        return moved;
+    }
+
+    // Archives the payments of these bookings, only deleting the ones just copied,
+    // until no more turn up
+    private void movePayments(List<Integer> bookingIds) {
+        List<Document> payments;
+        while (!(payments = db.payments.find(Filters.in("BookingID", bookingIds)).into(new ArrayList<>())).isEmpty()) {
+            db.paymentsArchive.bulkWrite(upserts(payments));
+            List<Object> paymentIds = new ArrayList<>(payments.size());
+            for (Document p : payments)
+                paymentIds.add(p.get("_id"));
+            db.payments.deleteMany(Filters.in("_id", paymentIds));
+        }
+    }
+
+    private static List<WriteModel<Document>> upserts(List<Document> docs) {
+        List<WriteModel<Document>> writes = new ArrayList<>(docs.size());
+        ReplaceOptions upsert = new ReplaceOptions().upsert(true);
+        for (Document d : docs)
+            writes.add(new ReplaceOneModel<>(Filters.eq("_id", d.get("_id")), d, upsert));
+        return writes;
+    }
+
+    // Runs the archiver every vrs.archive.everyMin minutes on a background thread
+    public static void schedule(MongoManager db) {
+        if (EVERY_MIN <= 0)
+            return;
+        BookingArchiver archiver = new BookingArchiver(db);
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "booking-archiver");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.scheduleWithFixedDelay(() -> {
+            try {
+                int moved = archiver.run();
+                if (moved > 0)
+                    System.out.println("Archive: moved " + moved + " returned bookings");
+            } catch (RuntimeException e) {
+                System.err.println("Archive: run failed: " + e.getMessage());
+            }
+        }, 1, EVERY_MIN, TimeUnit.MINUTES);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,117 @@
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Updates;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+import java.util.Date;
+
+// Books and returns vehicles with conditional findOneAndUpdate claims, so a vehicle
+// can only be taken while it is still available no matter how many sessions try at
+// once. A booking ID is only drawn once the claim succeeds, and if allocating it or
+// inserting the booking fails, the claim is undone.
+class BookingEngine {
+    // Shared by every dashboard in this JVM
+    private static final VehicleLocks SHARED_LOCKS = new VehicleLocks(64);
+
+    private final VehicleLocks locks;
+
+    private final MongoManager db;
+    private final VehicleIndex index;
+    private final FleetStats stats;
+
+    public BookingEngine(MongoManager db) {
+        this(db, SHARED_LOCKS);
+    }
+
+    // A private lock table behaves like a separate app instance
+    BookingEngine(MongoManager db, VehicleLocks locks) {
+        this.db = db;
+        this.locks = locks;
+        this.index = VehicleIndex.of(db, () -> PageSources.vehicles(db));
+        this.stats = FleetStats.of(db, PageSources.fleet(db));
+    }
+
+    // The search index this engine reports bookings and returns to
+    VehicleIndex index() {
+        return index;
+    }
+
+    // The fleet counters this engine reports bookings and returns to
+    FleetStats stats() {
+        return stats;
+    }
+
+    public BookingOutcome book(int customerId, int vehicleId) {
+        if (!locks.tryClaim(vehicleId))
+            return BookingOutcome.BUSY;
+        try {
+            // Claim: only matches while the vehicle is still available. HeldBy marks
+            // this claim so that only this call can undo it.
+            ObjectId claim = new ObjectId();
+            Document claimed = db.vehicles.findOneAndUpdate(
+                    Filters.and(Filters.eq("VehicleID", vehicleId), Filters.eq("Available", "Y")),
+                    Updates.combine(Updates.set("Available", "N"), Updates.set("HeldBy", claim)));
+            if (claimed == null)
+                return BookingOutcome.UNAVAILABLE;
+            try {
+                int bid = db.getNextSequence("bookingid");
+                db.bookings.insertOne(new Document("BookingID", bid).append("CustomerID", customerId)
+                        .append("VehicleID", vehicleId).append("BookingDate", new Date()).append("Status", "Booked"));
+            } catch (RuntimeException e) {
+                db.vehicles.updateOne(Filters.and(Filters.eq("VehicleID", vehicleId), Filters.eq("HeldBy", claim)),
+                        Updates.combine(Updates.set("Available", "Y"), Updates.unset("HeldBy")));
+                throw e;
+            }
+            stats.availabilityChanged(claimed.getString("Category"), rentOf(claimed), false);
+            index.availabilityChanged(vehicleId, false);
+            // Unlike the SQL edition, the count is not bumped in the booking's transaction:
+            // the app runs against a standalone mongod, which has no multi-document
+            // transactions. If this step fails or the process dies first, the booking
+            // stands and the customer's BookingCount stays one short; the leaderboard is
+            // a ranking, not a ledger, so that is accepted rather than undoing the booking.
+            try {
+                Document c = db.customers.findOneAndUpdate(Filters.eq("CustomerID", customerId),
+                        Updates.inc("BookingCount", 1), new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER)
+                                .projection(Projections.include("CustomerID", "Name", "MobileNumber", "BookingCount")));
+                if (c != null)
+                    Leaderboard.recordBooking(customerId, c.getString("Name"), c.getString("MobileNumber"),
+                            ((Number) c.get("BookingCount")).intValue());
+            } catch (RuntimeException e) {
+                System.err.println("Leaderboard: count for customer " + customerId + " not updated: " + e.getMessage());
+            }
+            return BookingOutcome.BOOKED;
+        } finally {
+            locks.release(vehicleId);
+        }
+    }
+
+    private static double rentOf(Document v) {
+        return v.get("RentPerDay") instanceof Number ? ((Number) v.get("RentPerDay")).doubleValue() : 0.0;
+    }
+
+    public BookingOutcome returnVehicle(int customerId, int vehicleId) {
+        if (!locks.tryClaim(vehicleId))
+            return BookingOutcome.BUSY;
+        try {
+            Document b = db.bookings.findOneAndUpdate(
+                    new Document("VehicleID", vehicleId).append("CustomerID", customerId).append("Status", "Booked"),
+                    Updates.combine(Updates.set("Status", "Returned"), Updates.set("ReturnDate", new Date())),
+                    new FindOneAndUpdateOptions().returnDocument(ReturnDocument.BEFORE));
+            if (b == null)
+                return BookingOutcome.NOT_BOOKED;
+            Document released = db.vehicles.findOneAndUpdate(
+                    Filters.and(Filters.eq("VehicleID", vehicleId), Filters.eq("Available", "N")),
+                    Updates.combine(Updates.set("Available", "Y"), Updates.unset("HeldBy")));
+            if (released != null) {
+                stats.availabilityChanged(released.getString("Category"), rentOf(released), true);
+                index.availabilityChanged(vehicleId, true);
+            }
+            return BookingOutcome.RETURNED;
+        } finally {
+            locks.release(vehicleId);
+        }
+    }
+}
\ No newline at end of file
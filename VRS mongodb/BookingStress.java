@@ -0,0 +1,133 @@
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import org.bson.Document;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Stress check for BookingEngine: many threads book and return a small throw-away
+// fleet at once, then the bookings collection is checked for vehicles with more than
+// one active booking. Everything it creates is deleted afterwards.
+//
+// Usage: java BookingStress [threads] [vehicles] [seconds] [shared|isolated]
+// "isolated" gives every thread its own lock table, as if each were a separate app
+// instance, so only the findOneAndUpdate claim stands between them.
+public class BookingStress {
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int vehicles = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        boolean isolated = args.length > 3 && "isolated".equals(args[3]);
+        String tag = "STRESS-" + Long.toString(System.currentTimeMillis(), 36);
+
+        MongoManager db = new MongoManager();
+        List<Integer> vehicleIds = new ArrayList<>();
+        List<Integer> customerIds = new ArrayList<>();
+        int doubles;
+        setUp(db, tag, vehicles, threads, vehicleIds, customerIds);
+        try {
+            run(db, threads, seconds, isolated, vehicleIds, customerIds);
+            doubles = countDoubleBookings(db, vehicleIds);
+        } finally {
+            tearDown(db, tag, vehicleIds);
+        }
+        System.out.println("Double bookings: " + doubles + (doubles == 0 ? " (OK)" : " (FAIL)"));
+        System.exit(doubles == 0 ? 0 : 1);
+    }
+
+    private static void setUp(MongoManager db, String tag, int vehicles, int customers, List<Integer> vehicleIds,
+            List<Integer> customerIds) {
+        List<Document> docs = new ArrayList<>();
+        for (int i = 0; i < vehicles; i++) {
+            int vid = db.getNextSequence("vehicleid");
+            vehicleIds.add(vid);
+            docs.add(new Document("VehicleID", vid).append("Model", tag).append("Category", "Stress")
+                    .append("RentPerDay", 1.0).append("Available", "Y"));
+        }
+        db.vehicles.insertMany(docs);
+
+        docs = new ArrayList<>();
+        for (int i = 0; i < customers; i++) {
+            int cid = db.getNextSequence("userid");
+            customerIds.add(cid);
+            docs.add(new Document("CustomerID", cid).append("Name", tag).append("MobileNumber", "-")
+                    .append("Username", tag + "-" + i).append("HashedPassword", "-"));
+        }
+        db.customers.insertMany(docs);
+    }
+
+    private static void run(MongoManager db, int threads, int seconds, boolean isolated, List<Integer> vehicleIds,
+            List<Integer> customerIds) throws InterruptedException {
+        BookingEngine shared = new BookingEngine(db);
+        Map<BookingOutcome, AtomicLong> outcomes = new EnumMap<>(BookingOutcome.class);
+        for (BookingOutcome o : BookingOutcome.values())
+            outcomes.put(o, new AtomicLong());
+        AtomicLong errors = new AtomicLong();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            int customerId = customerIds.get(t % customerIds.size());
+            BookingEngine engine = isolated ? new BookingEngine(db, new VehicleLocks(64)) : shared;
+            pool.execute(() -> {
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                Deque<Integer> held = new ArrayDeque<>();
+                while (System.nanoTime() < deadline) {
+                    try {
+                        if (!held.isEmpty() && rnd.nextInt(3) == 0) {
+                            int vid = held.poll();
+                            BookingOutcome o = engine.returnVehicle(customerId, vid);
+                            outcomes.get(o).incrementAndGet();
+                            if (o == BookingOutcome.BUSY)
+                                held.add(vid);
+                        } else {
+                            int vid = vehicleIds.get(rnd.nextInt(vehicleIds.size()));
+                            BookingOutcome o = engine.book(customerId, vid);
+                            outcomes.get(o).incrementAndGet();
+                            if (o == BookingOutcome.BOOKED)
+                                held.add(vid);
+                        }
+                    } catch (RuntimeException e) {
+                        errors.incrementAndGet();
+                    }
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(seconds + 60L, TimeUnit.SECONDS);
+
+        long booked = outcomes.get(BookingOutcome.BOOKED).get();
+        System.out.printf("%d threads, %d vehicles, %d s, %s locks%n", threads, vehicleIds.size(), seconds,
+                isolated ? "isolated" : "shared");
+        System.out.printf("Bookings: %d (%.1f/s)  Returns: %d%n", booked, booked / (double) seconds,
+                outcomes.get(BookingOutcome.RETURNED).get());
+        System.out.printf("Unavailable: %d  Busy (failed fast): %d  Errors: %d%n",
+                outcomes.get(BookingOutcome.UNAVAILABLE).get(),
+                outcomes.get(BookingOutcome.BUSY).get(), errors.get());
+    }
+
+    private static int countDoubleBookings(MongoManager db, List<Integer> vehicleIds) {
+        List<Document> dupes = db.bookings.aggregate(Arrays.asList(
+                Aggregates.match(Filters.and(Filters.in("VehicleID", vehicleIds), Filters.eq("Status", "Booked"))),
+                Aggregates.group("$VehicleID", Accumulators.sum("n", 1)),
+                Aggregates.match(Filters.gt("n", 1)))).into(new ArrayList<>());
+        return dupes.size();
+    }
+
+    private static void tearDown(MongoManager db, String tag, List<Integer> vehicleIds) {
+        db.bookings.deleteMany(Filters.in("VehicleID", vehicleIds));
+        db.vehicles.deleteMany(Filters.eq("Model", tag));
+        db.customers.deleteMany(Filters.eq("Name", tag));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,161 @@
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+// Deletes a customer and everything hanging off them in bounded steps. Vehicles the
+// customer still holds are returned first; then their finished bookings go a chunk at
+// a time, lowest BookingID first, each chunk's payments just before it, and then any
+// payments left without a booking. Their archived payments and bookings follow, a
+// chunk at a time as well, and the customer document goes last.
+//
+// A customerPurges document marks a deletion as started and is removed with the
+// customer. Every step only deletes what is still there, so a deletion that was
+// stopped or cut short finishes by running it again: deleting the same customer
+// again, or resumePending() at startup.
+//
+//   vrs.purge.chunk    bookings (or payments) per step              (500)
+//   vrs.purge.pauseMs  pause between chunks, so other work gets a turn   (20)
+class CustomerPurge {
+    private static final int CHUNK = Integer.getInteger("vrs.purge.chunk", 500);
+    private static final long PAUSE_MS = Long.getLong("vrs.purge.pauseMs", 20L);
+    private static final int ROUNDS = 5; // release-and-delete passes before giving up on a busy customer
+
+    private final MongoManager db;
+    private final BookingEngine engine;
+    private final MongoCollection<Document> purges;
+
+    public CustomerPurge(MongoManager db, BookingEngine engine) {
+        this.db = db;
+        this.engine = engine;
+        this.purges = db.collection("customerPurges");
+    }
+
+    public void run(int customerId, RentalRepository.Progress progress) throws InterruptedException {
+        if (progress == null)
+            progress = (step, done, total) -> {
+            };
+        purges.updateOne(Filters.eq("CustomerID", customerId),
+                Updates.setOnInsert("StartedAt", new Date()), new UpdateOptions().upsert(true));
+        Bson mine = Filters.eq("CustomerID", customerId);
+        int total = (int) db.bookings.countDocuments(mine);
+        int deleted = 0;
+        for (int round = 1;; round++) {
+            releaseVehicles(customerId, progress);
+            progress.update("bookings", deleted, total);
+            int removed;
+            while ((removed = deleteChunk(customerId)) > 0) {
+                deleted += removed;
+                total = Math.max(total, deleted);
+                progress.update("bookings", deleted, total);
+                pause();
+            }
+            if (db.bookings.countDocuments(mine) == 0)
+                break;
+            // Bookings made while this ran; return those vehicles too and go again
+            if (round == ROUNDS)
+                throw new IllegalStateException("Customer " + customerId + " still has bookings after " + ROUNDS
+                        + " passes; run the deletion again to finish it");
+        }
+        // Payments whose booking is already gone, e.g. left behind by older versions
+        deleteInChunks(customerId, db.payments, Sorts.ascending("PaymentID"), "payments", progress);
+        deleteInChunks(customerId, db.paymentsArchive, Sorts.descending("PaymentDate", "PaymentID"),
+                "archived payments", progress);
+        deleteInChunks(customerId, db.bookingsArchive, Sorts.descending("BookingID"), "archived bookings", progress);
+        db.customers.deleteOne(mine);
+        purges.deleteOne(mine);
+        Leaderboard.forget(customerId);
+        progress.update("customer", 1, 1);
+    }
+
+    private void releaseVehicles(int customerId, RentalRepository.Progress progress) throws InterruptedException {
+        List<Integer> held = new ArrayList<>();
+        for (Document b : db.bookings.find(Filters.and(Filters.eq("CustomerID", customerId), Filters.eq("Status", "Booked")))
+                .projection(Projections.include("VehicleID")))
+            held.add(b.getInteger("VehicleID"));
+        for (int i = 0; i < held.size(); i++) {
+            progress.update("vehicles", i, held.size());
+            // BUSY means someone else is mid-update on the vehicle; wait our turn
+            for (int attempt = 0; engine.returnVehicle(customerId, held.get(i)) == BookingOutcome.BUSY; attempt++) {
+                if (attempt == 100)
+                    throw new IllegalStateException("Vehicle " + held.get(i) + " stayed busy; run the deletion again");
+                Thread.sleep(10);
+            }
+        }
+        progress.update("vehicles", held.size(), held.size());
+    }
+
+    // Deletes the next chunk of the customer's finished bookings and their payments;
+    // the number of bookings deleted. A finished booking never goes back to Booked,
+    // so the chunk cannot change between the two deletes.
+    private int deleteChunk(int customerId) throws InterruptedException {
+        if (Thread.interrupted())
+            throw new InterruptedException("Deletion of customer " + customerId + " stopped");
+        List<Integer> bookingIds = new ArrayList<>(CHUNK);
+        for (Document b : db.bookings.find(Filters.and(Filters.eq("CustomerID", customerId), Filters.ne("Status", "Booked")))
+                .sort(Sorts.ascending("BookingID")).limit(CHUNK).projection(Projections.include("BookingID")))
+            bookingIds.add(b.getInteger("BookingID"));
+        if (bookingIds.isEmpty())
+            return 0;
+        db.payments.deleteMany(Filters.in("BookingID", bookingIds));
+        return (int) db.bookings.deleteMany(Filters.and(Filters.in("BookingID", bookingIds),
+                Filters.ne("Status", "Booked"))).getDeletedCount();
+    }
+
+    // Deletes the customer's documents in coll a chunk at a time, in the order of sort
+    private void deleteInChunks(int customerId, MongoCollection<Document> coll, Bson sort, String step,
+            RentalRepository.Progress progress) throws InterruptedException {
+        Bson mine = Filters.eq("CustomerID", customerId);
+        int total = (int) coll.countDocuments(mine);
+        int deleted = 0;
+        progress.update(step, deleted, total);
+        List<Object> ids;
+        while (!(ids = nextIds(coll, mine, sort)).isEmpty()) {
+            if (Thread.interrupted())
+                throw new InterruptedException("Deletion of customer " + customerId + " stopped");
+            deleted += (int) coll.deleteMany(Filters.in("_id", ids)).getDeletedCount();
+            total = Math.max(total, deleted);
+            progress.update(step, deleted, total);
+            pause();
+        }
+    }
+
+    private static List<Object> nextIds(MongoCollection<Document> coll, Bson filter, Bson sort) {
+        List<Object> ids = new ArrayList<>(CHUNK);
+        for (Document d : coll.find(filter).sort(sort).limit(CHUNK).projection(Projections.include("_id")))
+            ids.add(d.get("_id"));
+        return ids;
+    }
+
+    private static void pause() throws InterruptedException {
+        if (PAUSE_MS > 0)
+            Thread.sleep(PAUSE_MS);
+    }
+
+    // Finishes, on a background thread, deletions an earlier run did not complete
+    public static void resumePending(MongoManager db) {
+        Thread t = new Thread(() -> {
+            CustomerPurge purge = new CustomerPurge(db, new BookingEngine(db));
+            try {
+                for (Document d : db.collection("customerPurges").find().sort(Sorts.ascending("StartedAt"))
+                        .into(new ArrayList<>())) {
+                    int customerId = d.getInteger("CustomerID");
+                    System.out.println("Purge: finishing the deletion of customer " + customerId);
+                    purge.run(customerId, null);
+                }
+            } catch (RuntimeException | InterruptedException e) {
+                System.err.println("Purge: pending deletions not finished: " + e.getMessage());
+            }
+        }, "customer-purge");
+        t.setDaemon(true);
+        t.start();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,130 @@
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Projections;
+import org.bson.Document;
+
+import javax.swing.*;
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.Date;
+
+// Streams a whole collection to a file in CSV or the columnar binary format. Documents
+// go from the cursor straight to the sink, fetched in batches of BATCH_SIZE, so the
+// heap holds at most one batch (plus one row group for the columnar format).
+class DataExport {
+    private static final int BATCH_SIZE = Integer.getInteger("vrs.export.batchSize", 1000);
+
+    enum Dataset {
+        BOOKINGS("Bookings", "bookings",
+                col("BookingID", ExportFormats.Type.INT), col("CustomerID", ExportFormats.Type.INT),
+                col("VehicleID", ExportFormats.Type.INT), col("BookingDate", ExportFormats.Type.DATE),
+                col("ReturnDate", ExportFormats.Type.DATE), col("Status", ExportFormats.Type.STRING)),
+        PAYMENTS("Payments", "payments",
+                col("PaymentID", ExportFormats.Type.INT), col("BookingID", ExportFormats.Type.INT),
+                col("Amount", ExportFormats.Type.DOUBLE), col("PaymentMethod", ExportFormats.Type.STRING),
+                col("PaymentDate", ExportFormats.Type.DATE)),
+        // Password hashes are deliberately left out
+        CUSTOMERS("Customers", "customers",
+                col("CustomerID", ExportFormats.Type.INT), col("Name", ExportFormats.Type.STRING),
+                col("MobileNumber", ExportFormats.Type.STRING), col("Username", ExportFormats.Type.STRING));
+
+        final String label;
+        final String collection;
+        final ExportFormats.Column[] columns;
+
+        Dataset(String label, String collection, ExportFormats.Column... columns) {
+            this.label = label;
+            this.collection = collection;
+            this.columns = columns;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    private static ExportFormats.Column col(String name, ExportFormats.Type type) {
+        return new ExportFormats.Column(name, type);
+    }
+
+    private final MongoManager db;
+
+    public DataExport(MongoManager db) {
+        this.db = db;
+    }
+
+    // Returns a one-line summary with the row count and rows/s
+    public String export(Dataset ds, Path file, boolean columnar, boolean gzip) throws IOException {
+        long start = System.nanoTime();
+        long rows = 0;
+        ExportFormats.Column[] cols = ds.columns;
+        String[] names = new String[cols.length];
+        for (int i = 0; i < cols.length; i++)
+            names[i] = cols[i].name;
+        try (OutputStream out = ExportFormats.open(file, gzip);
+                ExportFormats.Sink sink = columnar ? ExportFormats.columnar(out, cols) : ExportFormats.csv(out, cols);
+                MongoCursor<Document> cursor = db.collection(ds.collection).find()
+                        .projection(Projections.fields(Projections.include(names), Projections.excludeId()))
+                        .batchSize(BATCH_SIZE).iterator()) {
+            Object[] row = new Object[cols.length];
+            while (cursor.hasNext()) {
+                Document d = cursor.next();
+                for (int i = 0; i < cols.length; i++)
+                    row[i] = read(d.get(names[i]), cols[i].type);
+                sink.row(row);
+                rows++;
+                if (Thread.currentThread().isInterrupted())
+                    throw new IOException("Export cancelled after " + rows + " rows");
+            }
+        }
+        double secs = Math.max(0.001, (System.nanoTime() - start) / 1e9);
+        return String.format("Exported %d %s rows in %.1f s (%.0f rows/s)", rows, ds.label.toLowerCase(), secs,
+                rows / secs);
+    }
+
+    // Coerces a field to the column type; anything that does not fit becomes null
+    private static Object read(Object v, ExportFormats.Type type) {
+        switch (type) {
+            case INT:
+                return v instanceof Number ? ((Number) v).intValue() : null;
+            case DOUBLE:
+                return v instanceof Number ? ((Number) v).doubleValue() : null;
+            case DATE:
+                return v instanceof Date ? v : null;
+            default:
+                return v == null ? null : v.toString();
+        }
+    }
+
+    // Asks what to export and where, then runs the export off the event thread
+    static void showDialog(JFrame owner, DataExport exporter) {
+        JComboBox<Dataset> dataset = new JComboBox<>(Dataset.values());
+        JComboBox<String> format = new JComboBox<>(new String[] { "CSV", "Columnar (binary)" });
+        JCheckBox gzip = new JCheckBox("Compress (gzip)");
+        JPanel p = new JPanel(new GridLayout(3, 2, 10, 10));
+        p.add(new JLabel("Data:"));
+        p.add(dataset);
+        p.add(new JLabel("Format:"));
+        p.add(format);
+        p.add(new JLabel(""));
+        p.add(gzip);
+        if (JOptionPane.showConfirmDialog(owner, p, "Export", JOptionPane.OK_CANCEL_OPTION,
+                JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION)
+            return;
+
+        Dataset ds = (Dataset) dataset.getSelectedItem();
+        boolean columnar = format.getSelectedIndex() == 1;
+        boolean zipped = gzip.isSelected();
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new File(ds.label.toLowerCase() + (columnar ? ".vrsc" : ".csv") + (zipped ? ".gz" : "")));
+        if (chooser.showSaveDialog(owner) != JFileChooser.APPROVE_OPTION)
+            return;
+        Path file = chooser.getSelectedFile().toPath();
+
+        AsyncDb.run(owner, () -> exporter.export(ds, file, columnar, zipped),
+                summary -> JOptionPane.showMessageDialog(owner, summary));
+    }
+}
\ No newline at end of file
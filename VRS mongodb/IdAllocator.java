@@ -0,0 +1,132 @@
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.ReturnDocument;
+import org.bson.Document;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Hi/lo ID allocator over the counters collection. Each round trip reserves a whole
+// block with $inc, so IDs stay unique across app instances; they are handed out
+// locally and the next block is fetched in the background before the current one
+// runs dry. With a block size of 1 there is nothing to prefetch ahead of, so every ID
+// is its own round trip. IDs left in a block when the app exits are skipped, not reused.
+class IdAllocator {
+    private static final int DEFAULT_BLOCK_SIZE = 20;
+
+    // Atomically bumps a named counter by n and returns the new (inclusive) upper bound
+    interface Counter {
+        long bump(String sequence, int n);
+    }
+
+    private final Counter counter;
+    private final Map<String, Integer> blockSizes;
+    private final ConcurrentHashMap<String, Sequence> sequences = new ConcurrentHashMap<>();
+    private final ExecutorService refiller = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "id-block-refill");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public IdAllocator(MongoCollection<Document> counters, Map<String, Integer> blockSizes) {
+        this((sequence, n) -> bump(counters, sequence, n), blockSizes);
+    }
+
+    IdAllocator(Counter counter, Map<String, Integer> blockSizes) {
+        this.counter = counter;
+        this.blockSizes = blockSizes;
+    }
+
+    public int next(String sequence) {
+        return sequences.computeIfAbsent(sequence, Sequence::new).next();
+    }
+
+    // Reserves n consecutive IDs in one round trip, bypassing the local block.
+    // Returns the first ID of the range.
+    public int reserve(String sequence, int n) {
+        return (int) (counter.bump(sequence, n) - n + 1);
+    }
+
+    public int blockSize(String sequence) {
+        return Math.max(1, blockSizes.getOrDefault(sequence, DEFAULT_BLOCK_SIZE));
+    }
+
+    private static long bump(MongoCollection<Document> counters, String sequence, int n) {
+        Document result = counters.findOneAndUpdate(new Document("_id", sequence),
+                new Document("$inc", new Document("seq", n)),
+                new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER).upsert(true));
+        return ((Number) result.get("seq")).longValue();
+    }
+
+    private static final class Block {
+        final long hi;
+        final AtomicLong next;
+
+        Block(long lo, long hi) {
+            this.hi = hi;
+            this.next = new AtomicLong(lo);
+        }
+    }
+
+    private final class Sequence {
+        private final String name;
+        private final int size;
+        private final long lowWater;
+        private volatile Block current;
+        private CompletableFuture<Block> prefetch; // guarded by this
+
+        Sequence(String name) {
+            this.name = name;
+            this.size = blockSize(name);
+            // At least one ID must be left when the refill starts, or it would only begin
+            // once the block is already used up
+            this.lowWater = Math.max(1, size / 4);
+        }
+
+        int next() {
+            while (true) {
+                Block b = current;
+                if (b != null) {
+                    long id = b.next.getAndIncrement();
+                    if (id <= b.hi) {
+                        if (size > 1 && b.hi - id == lowWater)
+                            prefetch();
+                        return (int) id;
+                    }
+                }
+                synchronized (this) {
+                    if (current == b)
+                        current = takeBlock();
+                }
+            }
+        }
+
+        private Block fetch() {
+            long hi = counter.bump(name, size);
+            return new Block(hi - size + 1, hi);
+        }
+
+        private synchronized void prefetch() {
+            if (prefetch == null)
+                prefetch = CompletableFuture.supplyAsync(this::fetch, refiller);
+        }
+
+        // Called with the monitor held
+        private Block takeBlock() {
+            CompletableFuture<Block> pending = prefetch;
+            prefetch = null;
+            if (pending != null) {
+                try {
+                    return pending.join();
+                } catch (RuntimeException e) {
+                    // Background refill failed; fall through and try in the foreground
+                }
+            }
+            return fetch();
+        }
+    }
+}
\ No newline at end of file
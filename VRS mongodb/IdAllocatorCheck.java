@@ -0,0 +1,106 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Check for IdAllocator with small block sizes, run against an in-memory counter so no
+// database is needed. For each size it draws IDs from one thread and then from many,
+// and checks that no ID is handed out twice, that at most one block is reserved ahead,
+// and that blocks after the first are fetched in the background (none at size 1).
+//
+// Usage: java IdAllocatorCheck [ids] [threads]
+public class IdAllocatorCheck {
+    private static final int[] SIZES = {1, 2, 3, 4, 5, 20};
+
+    public static void main(String[] args) throws Exception {
+        int ids = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+
+        List<String> failures = new ArrayList<>();
+        for (int size : SIZES) {
+            checkSequential(size, ids, failures);
+            checkConcurrent(size, ids, threads, failures);
+        }
+        for (String failure : failures)
+            System.out.println("  " + failure);
+        System.out.println("Block sizes " + Arrays.toString(SIZES) + ": " + failures.size() + " failures"
+                + (failures.isEmpty() ? " (OK)" : " (FAIL)"));
+        System.exit(failures.isEmpty() ? 0 : 1);
+    }
+
+    private static void checkSequential(int size, int ids, List<String> failures) {
+        CountingCounter counter = new CountingCounter();
+        IdAllocator allocator = allocator(counter, size);
+        for (int i = 1; i <= ids; i++) {
+            int id = allocator.next("seq");
+            if (id != i) {
+                failures.add("size " + size + ": expected ID " + i + ", got " + id);
+                return;
+            }
+        }
+        long ahead = counter.value.get() - ids;
+        if (ahead >= 2L * size)
+            failures.add("size " + size + ": " + ahead + " IDs reserved ahead of use");
+        int expectedForeground = size == 1 ? ids : 1;
+        if (counter.foreground.get() != expectedForeground)
+            failures.add("size " + size + ": " + counter.foreground.get() + " foreground round trips, expected "
+                    + expectedForeground);
+        if (size == 1 && counter.background.get() != 0)
+            failures.add("size 1: " + counter.background.get() + " background round trips, expected none");
+    }
+
+    private static void checkConcurrent(int size, int ids, int threads, List<String> failures) throws Exception {
+        CountingCounter counter = new CountingCounter();
+        IdAllocator allocator = allocator(counter, size);
+        Map<Integer, Boolean> seen = new ConcurrentHashMap<>();
+        AtomicInteger duplicates = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> done = new ArrayList<>();
+            for (int t = 0; t < threads; t++)
+                done.add(pool.submit(() -> {
+                    for (int i = 0; i < ids; i++)
+                        if (seen.put(allocator.next("seq"), Boolean.TRUE) != null)
+                            duplicates.incrementAndGet();
+                }));
+            for (Future<?> f : done)
+                f.get();
+        } finally {
+            pool.shutdown();
+        }
+        if (duplicates.get() > 0)
+            failures.add("size " + size + ", " + threads + " threads: " + duplicates.get() + " duplicate IDs");
+        long ahead = counter.value.get() - (long) ids * threads;
+        if (ahead >= 2L * size)
+            failures.add("size " + size + ", " + threads + " threads: " + ahead + " IDs reserved ahead of use");
+    }
+
+    private static IdAllocator allocator(IdAllocator.Counter counter, int size) {
+        Map<String, Integer> sizes = new HashMap<>();
+        sizes.put("seq", size);
+        return new IdAllocator(counter, sizes);
+    }
+
+    // Stands in for the counters collection; tells refills apart by the thread they run on
+    private static final class CountingCounter implements IdAllocator.Counter {
+        final AtomicLong value = new AtomicLong();
+        final AtomicInteger foreground = new AtomicInteger();
+        final AtomicInteger background = new AtomicInteger();
+
+        @Override
+        public long bump(String sequence, int n) {
+            if (Thread.currentThread().getName().equals("id-block-refill"))
+                background.incrementAndGet();
+            else
+                foreground.incrementAndGet();
+            return value.addAndGet(n);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,22 @@
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+// ClientBenchmarks plus the one client hot path only this edition has: turning
+// vehicle Documents into grid rows.
+//
+// Usage: java -Djava.awt.headless=true MongoClientBenchmarks
+// with the same vrs.bench.* settings as ClientBenchmarks.
+public class MongoClientBenchmarks {
+    public static void main(String[] args) throws Exception {
+        Microbench bench = ClientBenchmarks.cases();
+
+        Document[] docs = new Document[1024];
+        for (int i = 0; i < docs.length; i++)
+            docs[i] = new Document("_id", new ObjectId()).append("VehicleID", i + 1)
+                    .append("Model", "Model " + i).append("Category", "Category " + i % 7)
+                    .append("RentPerDay", 20.0 + i % 280).append("Available", i % 3 == 0 ? "N" : "Y");
+        bench.add("pageSources.vehicleRow", i -> PageSources.vehicleRow(docs[i & 1023]));
+
+        System.exit(ClientBenchmarks.run(MongoClientBenchmarks.class, bench));
+    }
+}
\ No newline at end of file
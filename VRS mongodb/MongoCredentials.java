@@ -0,0 +1,82 @@
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Sorts;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+// Admin and customer credential lookup. Usernames are matched on a stored UsernameKey
+// (trimmed, lower-cased) that is indexed in both collections, and both are checked
+// in one $unionWith aggregation. A document without a key yet (added by hand, or
+// before ensureKeys has run) is matched on its exact Username instead. Once the keys
+// are filled in, recently failed attempts are answered from memory (see Credentials).
+class MongoCredentials {
+    // Until ensureKeys has run a miss may only mean the key is not there yet, so
+    // failures are not remembered
+    private static volatile boolean keysFilled;
+
+    private final MongoManager db;
+
+    public MongoCredentials(MongoManager db) {
+        this.db = db;
+    }
+
+    // The matching admin or customer, or null if the username/password pair is wrong
+    public Credentials.Login authenticate(String username, String hashedPassword) {
+        if (Credentials.recentlyFailed(username, hashedPassword))
+            return null;
+
+        Bson match = Aggregates.match(Filters.and(byUsername(username), Filters.eq("HashedPassword", hashedPassword)));
+        // An admin wins over a customer with the same login, and an exact spelling over
+        // a case variant left over from before usernames were unique ignoring case
+        Document exact = new Document("$eq", Arrays.asList("$Username", username));
+        Document found = db.admins.aggregate(Arrays.asList(
+                match,
+                Aggregates.project(new Document("_id", 0).append("admin", new Document("$literal", true))
+                        .append("exact", exact)),
+                Aggregates.unionWith("customers", Arrays.asList(match,
+                        Aggregates.project(new Document("_id", 0).append("admin", new Document("$literal", false))
+                                .append("exact", exact).append("CustomerID", 1).append("Name", 1)))),
+                Aggregates.sort(Sorts.descending("admin", "exact")),
+                Aggregates.limit(1))).first();
+        if (found != null)
+            return found.getBoolean("admin")
+                    ? new Credentials.Login(true, 0, null)
+                    : new Credentials.Login(false, found.getInteger("CustomerID"), found.getString("Name"));
+
+        if (keysFilled)
+            Credentials.failed(username, hashedPassword);
+        return null;
+    }
+
+    // On UsernameKey, or on the exact Username for a document that has no key yet
+    private static Bson byUsername(String username) {
+        return Filters.or(Filters.eq("UsernameKey", Credentials.normalize(username)),
+                Filters.and(Filters.exists("UsernameKey", false), Filters.eq("Username", username)));
+    }
+
+    // True if an admin or customer already uses this username, ignoring case and spacing
+    public boolean isTaken(String username) {
+        Bson match = Aggregates.match(byUsername(username));
+        Bson idOnly = Aggregates.project(new Document("_id", 1));
+        return db.admins.aggregate(Arrays.asList(match, idOnly,
+                Aggregates.unionWith("customers", Arrays.asList(match, idOnly)),
+                Aggregates.limit(1))).first() != null;
+    }
+
+    // Fills in UsernameKey on documents written before it existed (or added by hand,
+    // e.g. admins). MongoSchema indexes it. Safe to run on every start.
+    public static void ensureKeys(MongoManager db) {
+        for (MongoCollection<Document> coll : Arrays.asList(db.admins, db.customers)) {
+            List<Bson> setKey = Collections.singletonList(new Document("$set", new Document("UsernameKey",
+                    new Document("$toLower", new Document("$trim", new Document("input", "$Username"))))));
+            coll.updateMany(Filters.and(Filters.exists("UsernameKey", false), Filters.type("Username", "string")),
+                    setKey);
+        }
+        keysFilled = true;
+    }
+}
\ No newline at end of file
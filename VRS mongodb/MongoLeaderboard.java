@@ -0,0 +1,56 @@
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// The Mongo side of the Leaderboard. customers.BookingCount is bumped right after each
+// booking is inserted (not atomically with it; see BookingEngine.book), so seeding
+// only reads the first K entries of an index.
+class MongoLeaderboard {
+    private MongoLeaderboard() {
+    }
+
+    // The current top K, highest first
+    public static List<Leaderboard.Entry> top(MongoManager db) {
+        return Leaderboard.top(k -> seed(db, k));
+    }
+
+    private static List<Leaderboard.Entry> seed(MongoManager db, int k) {
+        List<Leaderboard.Entry> top = new ArrayList<>(k);
+        for (Document c : db.customers.find(Filters.gt("BookingCount", 0)).sort(Sorts.descending("BookingCount"))
+                .limit(k))
+            top.add(new Leaderboard.Entry(c.getInteger("CustomerID"), c.getString("Name"), c.getString("MobileNumber"),
+                    ((Number) c.get("BookingCount")).intValue()));
+        return top;
+    }
+
+    // Fills in BookingCount from existing bookings for customers that predate it.
+    // Only customers without the field are touched, so later runs do nothing.
+    public static void backfill(MongoManager db) {
+        if (db.customers.countDocuments(Filters.exists("BookingCount", false)) == 0)
+            return;
+        List<UpdateOneModel<Document>> batch = new ArrayList<>();
+        for (Document g : db.bookings.aggregate(Collections.singletonList(
+                Aggregates.group("$CustomerID", Accumulators.sum("n", 1))))) {
+            batch.add(new UpdateOneModel<>(
+                    Filters.and(Filters.eq("CustomerID", g.get("_id")), Filters.exists("BookingCount", false)),
+                    Updates.set("BookingCount", g.get("n"))));
+            if (batch.size() == 500) {
+                db.customers.bulkWrite(batch, new BulkWriteOptions().ordered(false));
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty())
+            db.customers.bulkWrite(batch, new BulkWriteOptions().ordered(false));
+        db.customers.updateMany(Filters.exists("BookingCount", false), Updates.set("BookingCount", 0));
+        System.out.println("Leaderboard: backfilled customers.BookingCount");
+    }
+}
\ No newline at end of file
@@ -0,0 +1,125 @@
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.MongoIterable;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+
+class MongoManager {
+    private static final String CONNECTION_STRING = "mongodb://localhost:27017";
+    private static final String DB_NAME = "rental_db";
+
+    private final MongoClient mongoClient;
+    private final MongoDatabase database;
+
+    // Collections
+    public final MongoCollection<Document> admins;
+    public final MongoCollection<Document> customers;
+    public final MongoCollection<Document> vehicles;
+    public final MongoCollection<Document> bookings;
+    public final MongoCollection<Document> payments;
+    public final MongoCollection<Document> counters;
+    // Returned bookings past vrs.archive.afterDays, and their payments
+    public final MongoCollection<Document> bookingsArchive;
+    public final MongoCollection<Document> paymentsArchive;
+
+    private final IdAllocator ids;
+
+    public MongoManager() {
+        mongoClient = MongoClients.create(CONNECTION_STRING);
+        database = mongoClient.getDatabase(DB_NAME);
+
+        admins = database.getCollection("admins");
+        customers = database.getCollection("customers");
+        vehicles = database.getCollection("vehicles");
+        bookings = database.getCollection("bookings");
+        payments = database.getCollection("payments");
+        counters = database.getCollection("counters");
+        bookingsArchive = database.getCollection("bookings_archive");
+        paymentsArchive = database.getCollection("payments_archive");
+
+        ids = new IdAllocator(counters, idBlockSizes());
+    }
+
+    // IDs reserved per counter round trip; override with -Dvrs.idblock.<sequence>=N
+    private static Map<String, Integer> idBlockSizes() {
+        Map<String, Integer> sizes = new HashMap<>();
+        sizes.put("userid", 10);
+        sizes.put("vehicleid", 20);
+        sizes.put("bookingid", 50);
+        sizes.put("paymentid", 50);
+        for (String seq : new ArrayList<>(sizes.keySet()))
+            sizes.put(seq, Integer.getInteger("vrs.idblock." + seq, sizes.get(seq)));
+        return sizes;
+    }
+
+    public MongoCollection<Document> collection(String name) {
+        return database.getCollection(name);
+    }
+
+    // Auto-Increment Helper, served from a locally reserved block
+    public int getNextSequence(String collectionId) {
+        return ids.next(collectionId);
+    }
+
+    // Reserves count consecutive IDs in one round trip and returns the first
+    public int reserveSequence(String collectionId, int count) {
+        return ids.reserve(collectionId, count);
+    }
+
+    // Runs a find or aggregate and maps every document. Opening the cursor, the rest of
+    // the cursor iteration and the mapping are traced as separate spans of the current
+    // action; the statement is only rendered when an action is being traced.
+    @SuppressWarnings("try")
+    static <T> List<T> list(java.util.function.Supplier<String> statement, MongoIterable<Document> query,
+            java.util.function.Function<Document, T> mapper) {
+        List<T> rows = new ArrayList<>();
+        MongoCursor<Document> cursor;
+        try (Trace.Span s = Trace.tracing() ? Trace.span("execute", statement.get()) : Trace.span("execute")) {
+            cursor = query.iterator();
+        }
+        try (MongoCursor<Document> open = cursor) {
+            long fetching = 0;
+            long mapping = 0;
+            while (true) {
+                long t0 = System.nanoTime();
+                Document d = open.hasNext() ? open.next() : null;
+                long t1 = System.nanoTime();
+                fetching += t1 - t0;
+                if (d == null)
+                    break;
+                rows.add(mapper.apply(d));
+                mapping += System.nanoTime() - t1;
+            }
+            Trace.add("fetch", fetching, rows.size() + " documents");
+            Trace.add("map", mapping);
+        }
+        return rows;
+    }
+
+    // "collection.find {filter} sort {...} skip n limit n" and the like, for traces
+    static String describe(String collection, String operation, Object... parts) {
+        StringBuilder sb = new StringBuilder(collection).append('.').append(operation);
+        for (Object part : parts) {
+            sb.append(' ');
+            if (part instanceof Bson)
+                sb.append(((Bson) part).toBsonDocument().toJson());
+            else if (part instanceof List) {
+                StringJoiner stages = new StringJoiner(", ", "[", "]");
+                for (Object stage : (List<?>) part)
+                    stages.add(((Bson) stage).toBsonDocument().toJson());
+                sb.append(stages);
+            } else
+                sb.append(part);
+        }
+        return sb.toString();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,224 @@
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Field;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// RentalRepository over the rental_db collections
+class MongoRentalRepository implements RentalRepository {
+    private final MongoManager db;
+    private final MongoCredentials credentials;
+    private final BookingEngine bookings;
+    private final VehicleIndex index;
+    private final FleetStats stats;
+
+    public MongoRentalRepository(MongoManager db) {
+        this.db = db;
+        this.credentials = new MongoCredentials(db);
+        this.bookings = new BookingEngine(db);
+        this.index = bookings.index();
+        this.stats = bookings.stats();
+    }
+
+    // --- Accounts ---
+
+    @Override
+    public Credentials.Login login(String username, String password) {
+        return credentials.authenticate(username, Credentials.sha256Hex(password));
+    }
+
+    @Override
+    public boolean register(String name, String mobile, String username, String password) {
+        if (credentials.isTaken(username))
+            return false;
+        int id = db.getNextSequence("userid");
+        db.customers.insertOne(new Document("CustomerID", id).append("Name", name)
+                .append("MobileNumber", mobile).append("Username", username)
+                .append("UsernameKey", Credentials.normalize(username))
+                .append("HashedPassword", Credentials.sha256Hex(password)));
+        Credentials.forget(username);
+        return true;
+    }
+
+    // --- Vehicles ---
+
+    @Override
+    public PageSource vehicles() {
+        return PageSources.vehicles(db);
+    }
+
+    @Override
+    public PageSource searchVehicles(VehicleIndex.Query query) {
+        return index.search(query);
+    }
+
+    @Override
+    public VehicleIndex.Facets vehicleFacets() throws Exception {
+        return index.facets();
+    }
+
+    @Override
+    public void addVehicle(String model, String category, double rent) {
+        int id = db.getNextSequence("vehicleid");
+        db.vehicles.insertOne(new Document("VehicleID", id).append("Model", model)
+                .append("Category", category).append("RentPerDay", rent)
+                .append("Available", "Y"));
+        stats.added(category, rent, true);
+        index.added(id, model, category, rent, true);
+    }
+
+    @Override
+    public void updateVehicle(int vehicleId, String model, String category, double rent) {
+        Document set = new Document("Model", model).append("Category", category).append("RentPerDay", rent);
+        Document was = db.vehicles.findOneAndUpdate(new Document("VehicleID", vehicleId), new Document("$set", set));
+        if (was != null) {
+            stats.changed(was.getString("Category"), num(was.get("RentPerDay")), category, rent,
+                    "Y".equalsIgnoreCase(was.getString("Available")));
+            index.changed(vehicleId, model, category, rent);
+        }
+    }
+
+    @Override
+    public void deleteVehicle(int vehicleId) {
+        Document was = db.vehicles.findOneAndDelete(new Document("VehicleID", vehicleId));
+        if (was != null) {
+            stats.removed(was.getString("Category"), num(was.get("RentPerDay")),
+                    "Y".equalsIgnoreCase(was.getString("Available")));
+            index.removed(vehicleId);
+        }
+    }
+
+    // --- Bookings ---
+
+    @Override
+    public BookingOutcome book(int customerId, int vehicleId) {
+        return bookings.book(customerId, vehicleId);
+    }
+
+    @Override
+    public BookingOutcome returnVehicle(int customerId, int vehicleId) {
+        return bookings.returnVehicle(customerId, vehicleId);
+    }
+
+    @Override
+    public Set<Integer> activeVehicles(int customerId) {
+        Bson filter = new Document("CustomerID", customerId).append("Status", "Booked");
+        return new HashSet<>(MongoManager.list(() -> MongoManager.describe("bookings", "find", filter),
+                db.bookings.find(filter).projection(Projections.include("VehicleID")),
+                b -> b.getInteger("VehicleID")));
+    }
+
+    // Live and archived bookings together
+    @Override
+    public List<Object[]> history(int customerId) {
+        Bson mine = Filters.eq("CustomerID", customerId);
+        List<Bson> pipe = Arrays.asList(
+                Aggregates.match(mine),
+                Aggregates.unionWith("bookings_archive", Arrays.asList(Aggregates.match(mine))),
+                Aggregates.sort(Sorts.descending("BookingID")),
+                Aggregates.lookup("vehicles", "VehicleID", "VehicleID", "v"),
+                Aggregates.project(Projections.fields(Projections.excludeId(),
+                        Projections.include("BookingID", "Status", "BookingDate", "ReturnDate"),
+                        Projections.computed("Model", new Document("$arrayElemAt", Arrays.asList("$v.Model", 0))))));
+        return MongoManager.list(() -> MongoManager.describe("bookings", "aggregate", pipe), db.bookings.aggregate(pipe),
+                d -> new Object[] { d.getInteger("BookingID"), d.getString("Model"), d.getString("Status"),
+                        d.getDate("BookingDate"), d.getDate("ReturnDate") });
+    }
+
+    @Override
+    public PageSource bookings(String statusFilter) {
+        return PageSources.bookings(db, statusFilter);
+    }
+
+    @Override
+    public boolean bookingExists(int bookingId) {
+        return db.bookings.find(new Document("BookingID", bookingId)).projection(Projections.include("_id"))
+                .first() != null;
+    }
+
+    // --- Payments ---
+
+    // Ordered by (PaymentDate, PaymentID) descending. Live and archived payments are each
+    // cut to a page on their {CustomerID, PaymentDate, PaymentID} index and merged; only
+    // the rows on the page are joined to their booking, wherever it is, and its vehicle
+    @Override
+    public List<Object[]> payments(int customerId, Object[] after, int limit) {
+        Bson filter = Filters.eq("CustomerID", customerId);
+        if (after != null) {
+            Date d = (Date) after[4];
+            filter = Filters.and(filter, Filters.or(Filters.lt("PaymentDate", d),
+                    Filters.and(Filters.eq("PaymentDate", d), Filters.lt("PaymentID", after[0]))));
+        }
+        Bson newest = Sorts.descending("PaymentDate", "PaymentID");
+        List<Bson> pipe = Arrays.asList(
+                Aggregates.match(filter),
+                Aggregates.sort(newest),
+                Aggregates.limit(limit),
+                Aggregates.unionWith("payments_archive",
+                        Arrays.asList(Aggregates.match(filter), Aggregates.sort(newest), Aggregates.limit(limit))),
+                Aggregates.sort(newest),
+                Aggregates.limit(limit),
+                Aggregates.lookup("bookings", "BookingID", "BookingID", "b"),
+                Aggregates.lookup("bookings_archive", "BookingID", "BookingID", "a"),
+                Aggregates.addFields(new Field<>("vid", new Document("$ifNull", Arrays.asList(
+                        new Document("$arrayElemAt", Arrays.asList("$b.VehicleID", 0)),
+                        new Document("$arrayElemAt", Arrays.asList("$a.VehicleID", 0)))))),
+                Aggregates.lookup("vehicles", "vid", "VehicleID", "v"),
+                Aggregates.project(Projections.fields(Projections.excludeId(),
+                        Projections.include("PaymentID", "Amount", "PaymentMethod", "PaymentDate"),
+                        Projections.computed("Model", new Document("$arrayElemAt", Arrays.asList("$v.Model", 0))))));
+        return MongoManager.list(() -> MongoManager.describe("payments", "aggregate", pipe),
+                db.payments.aggregate(pipe).batchSize(limit),
+                p -> new Object[] { p.getInteger("PaymentID"), p.getString("Model"), num(p.get("Amount")),
+                        p.getString("PaymentMethod"), p.getDate("PaymentDate") });
+    }
+
+    @Override
+    public boolean recordPayment(int bookingId, double amount, String method) {
+        Document booking = db.bookings.find(new Document("BookingID", bookingId)).first();
+        if (booking == null)
+            return false;
+        db.payments.insertOne(new Document("PaymentID", db.getNextSequence("paymentid"))
+                .append("BookingID", bookingId).append("CustomerID", booking.get("CustomerID"))
+                .append("Amount", amount)
+                .append("PaymentMethod", method).append("PaymentDate", new Date()));
+        return true;
+    }
+
+    // --- Customers and reports ---
+
+    @Override
+    public List<Object[]> customers() {
+        Bson fields = Projections.include("CustomerID", "Name", "MobileNumber", "Username");
+        return MongoManager.list(() -> MongoManager.describe("customers", "find", "{}", "projection", fields),
+                db.customers.find().projection(fields),
+                d -> new Object[] { d.get("CustomerID"), d.get("Name"), d.get("MobileNumber"), d.get("Username") });
+    }
+
+    @Override
+    public void deleteCustomer(int customerId, Progress progress) throws InterruptedException {
+        new CustomerPurge(db, bookings).run(customerId, progress);
+    }
+
+    @Override
+    public String fleetReport() {
+        return stats.report();
+    }
+
+    @Override
+    public List<Leaderboard.Entry> topCustomers() {
+        return MongoLeaderboard.top(db);
+    }
+
+    private static double num(Object v) {
+        return v instanceof Number ? ((Number) v).doubleValue() : 0.0;
+    }
+}
\ No newline at end of file
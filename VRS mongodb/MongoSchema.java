@@ -0,0 +1,139 @@
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.IndexOptions;
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+// Indexes the app's queries rely on. On startup each one is checked against what the
+// collection already has and only the missing ones are built. In dry-run mode
+// (-Dvrs.schema.dryRun=true, or run this class with --dry-run) the plan is printed
+// and nothing is changed.
+//
+// Unique indexes fail to build while duplicates exist; that is logged and the rest
+// of the bootstrap carries on.
+public class MongoSchema {
+    private static final class Spec {
+        final String collection;
+        final Document keys;
+        final boolean unique;
+        final Document partial; // only documents matching this are indexed; null for all
+
+        Spec(String collection, Document keys, boolean unique) {
+            this(collection, keys, unique, null);
+        }
+
+        Spec(String collection, Document keys, boolean unique, Document partial) {
+            this.collection = collection;
+            this.keys = keys;
+            this.unique = unique;
+            this.partial = partial;
+        }
+
+        @Override
+        public String toString() {
+            return collection + " " + keys.toJson() + (unique ? " unique" : "")
+                    + (partial != null ? " where " + partial.toJson() : "");
+        }
+    }
+
+    // Documents not yet given a key (see MongoCredentials.ensureKeys) stay out of its
+    // unique index instead of colliding on null
+    private static final Document HAS_USERNAME_KEY = new Document("UsernameKey", new Document("$exists", true));
+
+    private static final List<Spec> SPECS = Arrays.asList(
+            new Spec("admins", new Document("Username", 1), true),
+            new Spec("admins", new Document("UsernameKey", 1), true, HAS_USERNAME_KEY),
+            new Spec("customers", new Document("CustomerID", 1), true),
+            new Spec("customers", new Document("Username", 1), true),
+            new Spec("customers", new Document("UsernameKey", 1), true, HAS_USERNAME_KEY),
+            new Spec("customers", new Document("BookingCount", -1), false),
+            new Spec("vehicles", new Document("VehicleID", 1), true),
+            new Spec("bookings", new Document("BookingID", 1), true),
+            new Spec("bookings", new Document("CustomerID", 1).append("Status", 1), false),
+            new Spec("bookings", new Document("VehicleID", 1).append("Status", 1), false),
+            new Spec("bookings", new Document("Status", 1).append("BookingID", -1), false),
+            new Spec("payments", new Document("PaymentID", 1), true),
+            new Spec("payments", new Document("BookingID", 1), false),
+            new Spec("payments", new Document("CustomerID", 1).append("PaymentDate", -1).append("PaymentID", -1),
+                    false),
+            new Spec("bookings", new Document("Status", 1).append("ReturnDate", 1), false),
+            new Spec("bookings_archive", new Document("BookingID", 1), true),
+            new Spec("bookings_archive", new Document("CustomerID", 1).append("BookingID", -1), false),
+            new Spec("payments_archive", new Document("PaymentID", 1), true),
+            new Spec("payments_archive", new Document("CustomerID", 1).append("PaymentDate", -1).append("PaymentID", -1),
+                    false));
+
+    private MongoSchema() {
+    }
+
+    public static void main(String[] args) {
+        boolean dryRun = Arrays.asList(args).contains("--dry-run");
+        bootstrap(new MongoManager(), dryRun);
+    }
+
+    public static void bootstrap(MongoManager db) {
+        bootstrap(db, Boolean.getBoolean("vrs.schema.dryRun"));
+    }
+
+    // Returns the specs that were missing (and, unless dryRun, have now been built)
+    public static List<String> bootstrap(MongoManager db, boolean dryRun) {
+        List<String> missing = new ArrayList<>();
+        for (Spec spec : SPECS) {
+            MongoCollection<Document> coll = db.collection(spec.collection);
+            Document existing = find(coll, spec.keys);
+            if (existing != null) {
+                if (spec.unique && !existing.getBoolean("unique", false))
+                    System.err.println("Schema: " + spec.collection + " index " + existing.getString("name")
+                            + " exists but is not unique; drop it to let it be rebuilt as unique");
+                continue;
+            }
+            missing.add(spec.toString());
+            if (dryRun) {
+                System.out.println("Schema (dry run): would create " + spec);
+                continue;
+            }
+            long start = System.nanoTime();
+            try {
+                IndexOptions options = new IndexOptions().unique(spec.unique);
+                if (spec.partial != null)
+                    options.partialFilterExpression(spec.partial);
+                coll.createIndex(spec.keys, options);
+                System.out.printf("Schema: created %s in %d ms%n", spec, (System.nanoTime() - start) / 1_000_000);
+            } catch (MongoException e) {
+                System.err.println("Schema: could not create " + spec + ": " + e.getMessage());
+            }
+        }
+        if (missing.isEmpty())
+            System.out.println("Schema: all " + SPECS.size() + " indexes present");
+        return missing;
+    }
+
+    // The existing index with exactly these keys, in this order and direction
+    private static Document find(MongoCollection<Document> coll, Document keys) {
+        for (Document index : coll.listIndexes()) {
+            Document have = index.get("key", Document.class);
+            if (sameKeys(have, keys))
+                return index;
+        }
+        return null;
+    }
+
+    private static boolean sameKeys(Document have, Document want) {
+        if (have == null || have.size() != want.size())
+            return false;
+        Iterator<Map.Entry<String, Object>> h = have.entrySet().iterator();
+        for (Map.Entry<String, Object> w : want.entrySet()) {
+            Map.Entry<String, Object> e = h.next();
+            // Shell-created indexes may store the direction as a double
+            if (!e.getKey().equals(w.getKey()) || !(e.getValue() instanceof Number)
+                    || ((Number) e.getValue()).intValue() != ((Number) w.getValue()).intValue())
+                return false;
+        }
+        return true;
+    }
+}
\ No newline at end of file
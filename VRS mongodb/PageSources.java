@@ -0,0 +1,99 @@
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Keyset-paginated queries behind the fleet and booking grids, and the grouped read
+// behind the fleet report
+class PageSources {
+    private PageSources() {
+    }
+
+    static FleetStats.Loader fleet(MongoManager db) {
+        return () -> {
+            Map<FleetStats.Cell, Long> counts = new HashMap<>();
+            for (Document g : db.vehicles.aggregate(Arrays.asList(Aggregates.group(
+                    new Document("c", "$Category").append("r", "$RentPerDay").append("a", "$Available"),
+                    Accumulators.sum("n", 1))))) {
+                Document k = g.get("_id", Document.class);
+                Object rent = k.get("r");
+                FleetStats.Cell cell = new FleetStats.Cell(k.get("c") instanceof String ? k.getString("c") : null,
+                        rent instanceof Number ? ((Number) rent).doubleValue() : 0.0, "Y".equalsIgnoreCase(
+                                k.get("a") instanceof String ? k.getString("a") : null));
+                counts.merge(cell, ((Number) g.get("n")).longValue(), Long::sum);
+            }
+            return counts;
+        };
+    }
+
+    static Object[] vehicleRow(Document d) {
+        String avail = "Y".equalsIgnoreCase(d.getString("Available")) ? "Yes" : "No";
+        double rent = 0.0;
+        if (d.get("RentPerDay") instanceof Number)
+            rent = ((Number) d.get("RentPerDay")).doubleValue();
+        return new Object[] { d.getInteger("VehicleID"), d.getString("Model"), d.getString("Category"), rent,
+                avail };
+    }
+
+    static PageSource vehicles(MongoManager db) {
+        return new PageSource() {
+            @Override
+            public int count() {
+                return (int) db.vehicles.estimatedDocumentCount();
+            }
+
+            @Override
+            public List<Object[]> fetch(Integer afterKey, int skip, int limit) {
+                Bson filter = afterKey != null ? Filters.gt("VehicleID", afterKey) : new Document();
+                Bson sort = Sorts.ascending("VehicleID");
+                return MongoManager.list(
+                        () -> MongoManager.describe("vehicles", "find", filter, "sort", sort, "skip", skip, "limit", limit),
+                        db.vehicles.find(filter).sort(sort).skip(skip).limit(limit).batchSize(limit),
+                        PageSources::vehicleRow);
+            }
+        };
+    }
+
+    // Newest first; filter is "ALL" or a booking Status value
+    static PageSource bookings(MongoManager db, String filter) {
+        Bson status = filter.equals("ALL") ? new Document() : Filters.eq("Status", filter);
+        return new PageSource() {
+            @Override
+            public int count() {
+                return (int) db.bookings.countDocuments(status);
+            }
+
+            @Override
+            public List<Object[]> fetch(Integer afterKey, int skip, int limit) {
+                Bson match = afterKey != null ? Filters.and(status, Filters.lt("BookingID", afterKey)) : status;
+                // Filter and page on the {Status, BookingID} index first, then join just the
+                // rows on this page and keep only the two joined fields the grid shows
+                List<Bson> pipe = Arrays.asList(
+                        Aggregates.match(match),
+                        Aggregates.sort(Sorts.descending("BookingID")),
+                        Aggregates.skip(skip),
+                        Aggregates.limit(limit),
+                        Aggregates.lookup("customers", "CustomerID", "CustomerID", "c"),
+                        Aggregates.lookup("vehicles", "VehicleID", "VehicleID", "v"),
+                        Aggregates.project(Projections.fields(Projections.excludeId(),
+                                Projections.include("BookingID", "Status", "BookingDate"),
+                                Projections.computed("Name", new Document("$arrayElemAt", Arrays.asList("$c.Name", 0))),
+                                Projections.computed("Model",
+                                        new Document("$arrayElemAt", Arrays.asList("$v.Model", 0))))));
+
+                return MongoManager.list(() -> MongoManager.describe("bookings", "aggregate", pipe),
+                        db.bookings.aggregate(pipe).batchSize(limit),
+                        d -> new Object[] { d.getInteger("BookingID"), d.getString("Name"), d.getString("Model"),
+                                d.getString("Status"), d.getDate("BookingDate") });
+            }
+        };
+    }
+}
\ No newline at end of file
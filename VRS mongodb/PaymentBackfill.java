@@ -0,0 +1,49 @@
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Copies CustomerID from each payment's booking onto the payment, for payments
+// recorded before recPay() started writing it. Only touches payments that lack the
+// field, so it is cheap to run on every start and safe to run again.
+public class PaymentBackfill {
+    private static final int BATCH_SIZE = 500;
+
+    private PaymentBackfill() {
+    }
+
+    public static void main(String[] args) {
+        run(new MongoManager());
+    }
+
+    public static int run(MongoManager db) {
+        int updated = 0;
+        List<UpdateOneModel<Document>> batch = new ArrayList<>(BATCH_SIZE);
+        for (Document p : db.payments.aggregate(Arrays.asList(
+                Aggregates.match(Filters.exists("CustomerID", false)),
+                Aggregates.lookup("bookings", "BookingID", "BookingID", "b"),
+                Aggregates.unwind("$b"),
+                Aggregates.project(Projections.fields(Projections.include("_id"),
+                        Projections.computed("CustomerID", "$b.CustomerID")))))
+                .batchSize(BATCH_SIZE)) {
+            batch.add(new UpdateOneModel<>(Filters.eq("_id", p.get("_id")),
+                    Updates.set("CustomerID", p.get("CustomerID"))));
+            if (batch.size() == BATCH_SIZE) {
+                updated += db.payments.bulkWrite(batch, new BulkWriteOptions().ordered(false)).getModifiedCount();
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty())
+            updated += db.payments.bulkWrite(batch, new BulkWriteOptions().ordered(false)).getModifiedCount();
+        if (updated > 0)
+            System.out.println("Backfilled CustomerID on " + updated + " payments");
+        return updated;
+    }
+}
\ No newline at end of file
@@ -4,82 +4,109 @@ import org.bson.Document;
 import org.bson.conversions.Bson;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
-import java.security.MessageDigest;
 import java.util.*;
 import java.util.List;
-import java.util.HexFormat; 
+import java.util.function.Consumer;
 
 public class VehicleRentalSystem {
+    // This edition's database backend
+    static final String DATABASE = "mongo";
+
+    // Where the data lives: "mongo" (the default) or "memory" for an in-process store
+    // that starts empty and is lost on exit
+    static final String BACKEND = System.getProperty("vrs.backend", DATABASE);
+
+    // "--serve [port]" runs the headless HTTP API instead of the Swing client, and
+    // -Dvrs.api=http://host:port points the Swing client at such a server instead of
+    // the database
     public static void main(String[] args) {
+        if (!BACKEND.equals(DATABASE) && !BACKEND.equals("memory")) {
+            System.err.println("Unknown vrs.backend '" + BACKEND + "' (expected mongo or memory)");
+            System.exit(2);
+        }
+        if (args.length > 0 && args[0].equals("--serve")) {
+            serve(args.length > 1 ? Integer.parseInt(args[1])
+                    : Integer.getInteger("vrs.api.port", ApiServer.DEFAULT_PORT));
+            return;
+        }
+        String api = System.getProperty("vrs.api");
         SwingUtilities.invokeLater(() -> {
+            if (api != null) {
+                new AuthSystem(instrumented(new HttpRentalRepository(api)), null).showWelcome();
+                return;
+            }
+            if (BACKEND.equals("memory")) {
+                new AuthSystem(instrumented(new InMemoryRentalRepository()), null).showWelcome();
+                return;
+            }
             try {
                 MongoManager dbManager = new MongoManager();
-                new AuthSystem(dbManager).showWelcome();
+                AsyncDb.run(null, () -> {
+                    bootstrap(dbManager);
+                    return null;
+                }, ignored -> {
+                }, Throwable::printStackTrace);
+                new AuthSystem(instrumented(new MongoRentalRepository(dbManager)), dbManager).showWelcome();
             } catch (Exception e) {
                 e.printStackTrace();
                 JOptionPane.showMessageDialog(null, "Critical Error: " + e.getMessage());
             }
         });
     }
-}
 
-class MongoManager {
-    private static final String CONNECTION_STRING = "mongodb://localhost:27017";
-    private static final String DB_NAME = "rental_db";
-
-    private final MongoClient mongoClient;
-    private final MongoDatabase database;
-
-    // Collections
-    public final MongoCollection<Document> admins;
-    public final MongoCollection<Document> customers;
-    public final MongoCollection<Document> vehicles;
-    public final MongoCollection<Document> bookings;
-    public final MongoCollection<Document> payments;
-    public final MongoCollection<Document> counters;
-
-    public MongoManager() {
-        mongoClient = MongoClients.create(CONNECTION_STRING);
-        database = mongoClient.getDatabase(DB_NAME);
-
-        admins = database.getCollection("admins");
-        customers = database.getCollection("customers");
-        vehicles = database.getCollection("vehicles");
-        bookings = database.getCollection("bookings");
-        payments = database.getCollection("payments");
-        counters = database.getCollection("counters");
+    // Index and data upgrades and in-memory caches every entry point needs
+    static void bootstrap(MongoManager db) {
+        MongoCredentials.ensureKeys(db);
+        MongoSchema.bootstrap(db);
+        PaymentBackfill.run(db);
+        MongoLeaderboard.backfill(db);
+        FleetStats.of(db, PageSources.fleet(db));
+        VehicleIndex.of(db, () -> PageSources.vehicles(db));
+        CustomerPurge.resumePending(db);
+        BookingArchiver.schedule(db);
     }
 
-    // Auto-Increment Helper
-    public int getNextSequence(String collectionId) {
-        Document filter = new Document("_id", collectionId);
-        Document update = new Document("$inc", new Document("seq", 1));
-        FindOneAndUpdateOptions options = new FindOneAndUpdateOptions()
-                .returnDocument(ReturnDocument.AFTER)
-                .upsert(true);
-        Document result = counters.findOneAndUpdate(filter, update, options);
-        return (result != null) ? result.getInteger("seq") : 1;
+    // Timed into Metrics, for JMX, dumps and the admin Diagnostics dialog
+    static RentalRepository instrumented(RentalRepository repo) {
+        return new InstrumentedRentalRepository(repo);
     }
-}
-
-class AuthSystem {
-    private final MongoManager db;
 
-    public AuthSystem(MongoManager db) {
-        this.db = db;
+    // A ready-to-use repository for a backend name, for headless tools
+    static RentalRepository openBackend(String backend) {
+        if (backend.equals("memory"))
+            return new InMemoryRentalRepository();
+        if (!backend.equals(DATABASE))
+            throw new IllegalArgumentException("Unknown backend '" + backend + "'");
+        MongoManager db = new MongoManager();
+        bootstrap(db);
+        return new MongoRentalRepository(db);
     }
 
-    private String sha256Hex(String input) {
+    private static void serve(int port) {
+        MongoManager db = BACKEND.equals("memory") ? null : new MongoManager();
+        ApiServer server = new ApiServer(instrumented(
+                db == null ? new InMemoryRentalRepository() : new MongoRentalRepository(db)));
         try {
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            byte[] digest = md.digest(input.getBytes("UTF-8"));
-            return HexFormat.of().formatHex(digest);
+            if (db != null)
+                bootstrap(db);
+            server.start(port);
         } catch (Exception e) {
-            throw new RuntimeException(e);
+            e.printStackTrace();
+            System.exit(1);
         }
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+    }
+}
+
+class AuthSystem {
+    private final RentalRepository repo;
+    private final MongoManager db; // null when running against the HTTP API
+
+    public AuthSystem(RentalRepository repo, MongoManager db) {
+        this.repo = repo;
+        this.db = db;
     }
 
     public void showWelcome() {
@@ -149,21 +176,20 @@ class AuthSystem {
                 return;
             }
 
-            String hash = sha256Hex(p);
-            // Admin Check
-            if (db.admins.find(new Document("Username", u).append("HashedPassword", hash)).first() != null) {
-                frame.dispose();
-                new AdminDashboard(db).show();
-                return;
-            }
-            // Customer Check
-            Document cust = db.customers.find(new Document("Username", u).append("HashedPassword", hash)).first();
-            if (cust != null) {
+            AsyncDb.run(frame, () -> repo.login(u, p), found -> {
+                if (found == null) {
+                    status.setText("Invalid credentials.");
+                    return;
+                }
                 frame.dispose();
-                new CustomerDashboard(db, cust.getInteger("CustomerID"), cust.getString("Name")).show();
-                return;
-            }
-            status.setText("Invalid credentials.");
+                if (found.admin)
+                    new AdminDashboard(repo, db).show();
+                else
+                    new CustomerDashboard(repo, db, found.customerId, found.name).show();
+            }, ex -> {
+                ex.printStackTrace();
+                status.setText("Error: " + ex.getMessage());
+            });
         });
 
         back.addActionListener(e -> {
@@ -226,18 +252,18 @@ class AuthSystem {
                 return;
             }
 
-            if (db.customers.countDocuments(new Document("Username", u)) > 0) {
-                status.setText("Username taken.");
-                return;
-            }
-
-            int id = db.getNextSequence("userid");
-            db.customers.insertOne(new Document("CustomerID", id).append("Name", n)
-                    .append("MobileNumber", m).append("Username", u).append("HashedPassword", sha256Hex(p)));
-
-            JOptionPane.showMessageDialog(frame, "Created!");
-            frame.dispose();
-            showLogin();
+            AsyncDb.run(frame, () -> repo.register(n, m, u, p), created -> {
+                if (!created) {
+                    status.setText("Username taken.");
+                    return;
+                }
+                JOptionPane.showMessageDialog(frame, "Created!");
+                frame.dispose();
+                showLogin();
+            }, ex -> {
+                ex.printStackTrace();
+                status.setText("Error: " + ex.getMessage());
+            });
         });
 
         back.addActionListener(e -> {
@@ -249,14 +275,21 @@ class AuthSystem {
 }
 
 class CustomerDashboard {
+    private static final int PAYMENT_PAGE_SIZE = 50;
+    private final RentalRepository repo;
     private final MongoManager db;
     private final int cid;
     private final String cname;
     private JFrame frame;
-    private DefaultTableModel model;
+    private PagedTableModel model;
     private JTable table;
+    private VehicleSearchBar search;
+    // Vehicles this customer currently holds; lets the renderer colour rows without querying
+    private final Set<Integer> myActive = new HashSet<>();
+    private SwingWorker<?, ?> activeLoad;
 
-    public CustomerDashboard(MongoManager db, int cid, String cname) {
+    public CustomerDashboard(RentalRepository repo, MongoManager db, int cid, String cname) {
+        this.repo = repo;
         this.db = db;
         this.cid = cid;
         this.cname = cname;
@@ -264,39 +297,27 @@ class CustomerDashboard {
 
     public void show() {
         frame = new JFrame("Customer: " + cname);
-        frame.setSize(900, 500);
+        frame.setSize(1100, 500);
         frame.setLocationRelativeTo(null);
         frame.setLayout(new BorderLayout(10, 10));
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 
-        model = new DefaultTableModel(new Object[] { "ID", "Model", "Category", "Rent", "Available" }, 0) {
-            public boolean isCellEditable(int r, int c) {
-                return false;
-            }
-        };
+        model = new PagedTableModel(new String[] { "ID", "Model", "Category", "Rent", "Available" },
+                repo.vehicles());
         table = new JTable(model);
 
-        table.getColumnModel().getColumn(4).setCellRenderer((tbl, value, isSelected, hasFocus, row, col) -> {
-            JLabel cell = new JLabel(value.toString());
-            cell.setOpaque(true);
-            int vid = (int) model.getValueAt(row, 0);
-            long booked = db.bookings.countDocuments(new Document("VehicleID", vid)
-                    .append("CustomerID", cid).append("Status", "Booked"));
-
-            if (booked > 0)
-                cell.setForeground(Color.BLUE);
-            else if ("No".equals(value))
-                cell.setForeground(Color.RED);
-            else
-                cell.setForeground(Color.BLACK);
-
-            cell.setBackground(isSelected ? tbl.getSelectionBackground() : tbl.getBackground());
-            return cell;
-        });
+        table.getColumnModel().getColumn(4).setCellRenderer(new AvailabilityRenderer(myActive));
         table.setRowHeight(25);
         frame.add(new JScrollPane(table), BorderLayout.CENTER);
 
-        frame.add(new JLabel("Welcome, " + cname, SwingConstants.CENTER), BorderLayout.NORTH);
+        search = new VehicleSearchBar(repo, model, frame);
+        JPanel top = new JPanel(new BorderLayout());
+        top.add(new JLabel("Welcome, " + cname, SwingConstants.CENTER), BorderLayout.NORTH);
+        top.add(search, BorderLayout.SOUTH);
+        frame.add(top, BorderLayout.NORTH);
+        VehicleFacetPanel facets = new VehicleFacetPanel(repo, frame);
+        search.attach(facets);
+        frame.add(facets, BorderLayout.WEST);
 
         JPanel pnl = new JPanel(new FlowLayout());
         JButton book = new JButton("Book");
@@ -319,31 +340,27 @@ class CustomerDashboard {
         pay.addActionListener(e -> showPayments());
         out.addActionListener(e -> {
             frame.dispose();
-            new AuthSystem(db).showWelcome();
+            new AuthSystem(repo, db).showWelcome();
         });
 
         frame.setVisible(true);
     }
 
     private void loadVehicles() {
-        model.setRowCount(0);
-        for (Document d : db.vehicles.find().sort(new Document("VehicleID", 1))) {
-            String avail = "No";
-            if ("Y".equalsIgnoreCase(d.getString("Available")))
-                avail = "Yes";
-
-            double rent = 0.0;
-            if (d.get("RentPerDay") instanceof Number)
-                rent = ((Number) d.get("RentPerDay")).doubleValue();
-
-            model.addRow(new Object[] { d.getInteger("VehicleID"), d.getString("Model"),
-                    d.getString("Category"), rent, avail });
-        }
+        search.refresh();
+        if (activeLoad != null)
+            activeLoad.cancel(true);
+        activeLoad = AsyncDb.run(frame, () -> repo.activeVehicles(cid), active -> {
+            myActive.clear();
+            myActive.addAll(active);
+            table.repaint();
+        }, Throwable::printStackTrace);
     }
 
+
     private void bookVehicle() {
         int r = table.getSelectedRow();
-        if (r < 0) {
+        if (r < 0 || model.getRow(r) == null) {
             JOptionPane.showMessageDialog(frame, "Select vehicle.");
             return;
         }
@@ -355,106 +372,117 @@ class CustomerDashboard {
         int vid = (int) model.getValueAt(r, 0);
         if (JOptionPane.showConfirmDialog(frame, "Confirm Booking?", "Confirm",
                 JOptionPane.YES_NO_OPTION) == JOptionPane.YES_OPTION) {
-            int bid = db.getNextSequence("bookingid");
-            db.bookings.insertOne(new Document("BookingID", bid).append("CustomerID", cid)
-                    .append("VehicleID", vid).append("BookingDate", new Date()).append("Status", "Booked"));
-            db.vehicles.updateOne(new Document("VehicleID", vid), new Document("$set", new Document("Available", "N")));
-            JOptionPane.showMessageDialog(frame, "Booked!");
-            loadVehicles();
+            AsyncDb.run(frame, () -> repo.book(cid, vid), outcome -> {
+                switch (outcome) {
+                    case BOOKED:
+                        myActive.add(vid);
+                        JOptionPane.showMessageDialog(frame, "Booked!");
+                        break;
+                    case BUSY:
+                        JOptionPane.showMessageDialog(frame, "Someone else is booking this vehicle. Try again.");
+                        return;
+                    default:
+                        JOptionPane.showMessageDialog(frame, "Unavailable.");
+                        break;
+                }
+                loadVehicles();
+            });
         }
     }
 
     private void returnVehicle() {
         int r = table.getSelectedRow();
-        if (r < 0)
+        if (r < 0 || model.getRow(r) == null)
             return;
         int vid = (int) model.getValueAt(r, 0);
 
-        Document b = db.bookings
-                .find(new Document("VehicleID", vid).append("CustomerID", cid).append("Status", "Booked")).first();
-        if (b == null) {
-            JOptionPane.showMessageDialog(frame, "Not booked by you.");
-            return;
-        }
-
-        db.bookings.updateOne(new Document("BookingID", b.getInteger("BookingID")),
-                new Document("$set", new Document("Status", "Returned").append("ReturnDate", new Date())));
-        db.vehicles.updateOne(new Document("VehicleID", vid), new Document("$set", new Document("Available", "Y")));
-
-        JOptionPane.showMessageDialog(frame, "Returned!");
-        loadVehicles();
+        AsyncDb.run(frame, () -> repo.returnVehicle(cid, vid), outcome -> {
+            switch (outcome) {
+                case RETURNED:
+                    myActive.remove(vid);
+                    JOptionPane.showMessageDialog(frame, "Returned!");
+                    loadVehicles();
+                    break;
+                case BUSY:
+                    JOptionPane.showMessageDialog(frame, "This vehicle is being updated. Try again.");
+                    break;
+                default:
+                    JOptionPane.showMessageDialog(frame, "Not booked by you.");
+                    break;
+            }
+        });
     }
 
+    @SuppressWarnings("try")
     private void showHistory() {
-        DefaultTableModel hm = new DefaultTableModel(new Object[] { "ID", "Vehicle", "Status", "Date" }, 0);
-        List<Bson> pipe = Arrays.asList(
-                Aggregates.match(Filters.eq("CustomerID", cid)),
-                Aggregates.lookup("vehicles", "VehicleID", "VehicleID", "v"),
-                Aggregates.unwind("$v"),
-                Aggregates.sort(Sorts.descending("BookingDate")));
-        for (Document d : db.bookings.aggregate(pipe)) {
-            Document v = (Document) d.get("v");
-            hm.addRow(new Object[] { d.getInteger("BookingID"), v.getString("Model"), d.getString("Status"),
-                    d.getDate("BookingDate") });
-        }
-        JOptionPane.showMessageDialog(frame, new JScrollPane(new JTable(hm)));
+        AsyncDb.run(frame, () -> {
+            DefaultTableModel hm = new DefaultTableModel(
+                    new Object[] { "ID", "Vehicle", "Status", "Date", "Returned" }, 0);
+            try (Trace.Span s = Trace.span("populate")) {
+                for (Object[] row : repo.history(cid))
+                    hm.addRow(row);
+            }
+            return hm;
+        }, hm -> JOptionPane.showMessageDialog(frame, new JScrollPane(new JTable(hm))));
     }
 
+    // Newest payments first, a page at a time; older pages load on request
+    @SuppressWarnings("try")
     private void showPayments() {
-        DefaultTableModel pm = new DefaultTableModel(new Object[] { "ID", "Amt", "Method", "Date" }, 0);
-        List<Integer> bids = new ArrayList<>();
-        for (Document b : db.bookings.find(new Document("CustomerID", cid)))
-            bids.add(b.getInteger("BookingID"));
-
-        if (!bids.isEmpty()) {
-            for (Document p : db.payments.find(Filters.in("BookingID", bids))) {
-                pm.addRow(new Object[] { p.getInteger("PaymentID"), p.getDouble("Amount"), p.getString("PaymentMethod"),
-                        p.getDate("PaymentDate") });
+        DefaultTableModel pm = new DefaultTableModel(new Object[] { "ID", "Vehicle", "Amt", "Method", "Date" }, 0);
+        JButton older = new JButton("Older payments");
+        Object[][] last = new Object[1][];
+        Consumer<List<Object[]>> append = page -> {
+            try (Trace.Span s = Trace.span("populate")) {
+                for (Object[] row : page)
+                    pm.addRow(row);
             }
-        }
-        JOptionPane.showMessageDialog(frame, new JScrollPane(new JTable(pm)));
+            if (!page.isEmpty())
+                last[0] = page.get(page.size() - 1);
+            older.setEnabled(page.size() == PAYMENT_PAGE_SIZE);
+        };
+        older.addActionListener(
+                e -> AsyncDb.run(older, () -> repo.payments(cid, last[0], PAYMENT_PAGE_SIZE), append));
+        AsyncDb.run(frame, () -> repo.payments(cid, null, PAYMENT_PAGE_SIZE), page -> {
+            append.accept(page);
+            JPanel p = new JPanel(new BorderLayout(5, 5));
+            p.add(new JScrollPane(new JTable(pm)), BorderLayout.CENTER);
+            p.add(older, BorderLayout.SOUTH);
+            JOptionPane.showMessageDialog(frame, p);
+        });
     }
+
 }
 
 // === ADMIN DASHBOARD ===
 class AdminDashboard {
-    private final MongoManager db;
+    private final RentalRepository repo;
+    private final MongoManager db; // import and export need a direct connection
     private JFrame frame;
-    private DefaultTableModel model;
+    private PagedTableModel model;
     private JTable table;
     private JTextField mf, cf, rf;
+    private VehicleSearchBar search;
 
-    public AdminDashboard(MongoManager db) {
+    public AdminDashboard(RentalRepository repo, MongoManager db) {
+        this.repo = repo;
         this.db = db;
     }
 
+    @SuppressWarnings("try")
     private void showTopCustomers() {
         DefaultTableModel model = new DefaultTableModel(new Object[] { "Rank", "Customer Name", "Total Bookings" }, 0);
         JTable table = new JTable(model);
 
-        List<Bson> pipeline = Arrays.asList(
-                Aggregates.group("$CustomerID", Accumulators.sum("total_bookings", 1)),
-
-                Aggregates.sort(Sorts.descending("total_bookings")),
-
-                Aggregates.lookup("customers", "_id", "CustomerID", "cust_info"),
-
-                Aggregates.unwind("$cust_info"),
-
-                Aggregates.limit(5));
-
-        int rank = 1;
-        for (Document doc : db.bookings.aggregate(pipeline)) {
-            Document custInfo = (Document) doc.get("cust_info");
-            model.addRow(new Object[] {
-                    rank++,
-                    custInfo.getString("Name"),
-                    doc.getInteger("total_bookings")
-            });
-        }
-
-        JOptionPane.showMessageDialog(frame, new JScrollPane(table), "Top 5 Customers (Aggregation)",
-                JOptionPane.PLAIN_MESSAGE);
+        AsyncDb.run(frame, repo::topCustomers, top -> {
+            try (Trace.Span s = Trace.span("populate")) {
+                int rank = 1;
+                for (Leaderboard.Entry e : top)
+                    model.addRow(new Object[] { rank++, e.name, e.bookings });
+            }
+            JOptionPane.showMessageDialog(frame, new JScrollPane(table), "Top " + Leaderboard.k() + " Customers",
+                    JOptionPane.PLAIN_MESSAGE);
+        });
     }
 
     public void show() {
@@ -464,28 +492,16 @@ class AdminDashboard {
         frame.setLayout(new BorderLayout(10, 10));
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 
-        model = new DefaultTableModel(new Object[] { "ID", "Model", "Category", "Rent", "Available" }, 0) {
-            public boolean isCellEditable(int r, int c) {
-                return false;
-            }
-        };
+        model = new PagedTableModel(new String[] { "ID", "Model", "Category", "Rent", "Available" },
+                repo.vehicles());
         table = new JTable(model);
-        table.getColumnModel().getColumn(4).setCellRenderer(new DefaultTableCellRenderer() {
-            public Component getTableCellRendererComponent(JTable t, Object v, boolean s, boolean f, int r, int c) {
-                Component comp = super.getTableCellRendererComponent(t, v, s, f, r, c);
-                if ("No".equals(v))
-                    comp.setForeground(Color.RED);
-                else
-                    comp.setForeground(Color.BLACK);
-                return comp;
-            }
-        });
+        table.getColumnModel().getColumn(4).setCellRenderer(new AvailabilityRenderer(null));
         table.setRowHeight(25);
         frame.add(new JScrollPane(table), BorderLayout.CENTER);
 
         table.getSelectionModel().addListSelectionListener(e -> {
             int r = table.getSelectedRow();
-            if (r >= 0) {
+            if (r >= 0 && model.getRow(r) != null) {
                 mf.setText(table.getValueAt(r, 1).toString());
                 cf.setText(table.getValueAt(r, 2).toString());
                 rf.setText(table.getValueAt(r, 3).toString());
@@ -510,12 +526,15 @@ class AdminDashboard {
         form.add(new JLabel("Rent:"));
         form.add(rf);
         top.add(new JLabel("Vehicle Management", SwingConstants.CENTER), BorderLayout.NORTH);
-        top.add(form, BorderLayout.SOUTH);
+        top.add(form, BorderLayout.CENTER);
+        search = new VehicleSearchBar(repo, model, frame);
+        top.add(search, BorderLayout.SOUTH);
         frame.add(top, BorderLayout.NORTH);
 
         JPanel btns = new JPanel(new FlowLayout());
         JButton topCustBtn = new JButton("Top Customers");
         JButton add = new JButton("Add Vehicle");
+        JButton imp = new JButton("Import");
         JButton upd = new JButton("Update");
         JButton del = new JButton("Delete");
         JButton rep = new JButton("Report");
@@ -523,10 +542,13 @@ class AdminDashboard {
         JButton dcust = new JButton("Delete Customer");
         JButton book = new JButton(" view Bookings");
         JButton pay = new JButton("Rec. Payment");
+        JButton exp = new JButton("Export");
+        JButton diag = new JButton("Diagnostics");
         JButton out = new JButton("Logout");
 
         btns.add(topCustBtn);
         btns.add(add);
+        btns.add(imp);
         btns.add(upd);
         btns.add(del);
         btns.add(rep);
@@ -534,11 +556,14 @@ class AdminDashboard {
         btns.add(dcust);
         btns.add(book);
         btns.add(pay);
+        btns.add(exp);
+        btns.add(diag);
         btns.add(out);
         frame.add(btns, BorderLayout.SOUTH);
 
         topCustBtn.addActionListener(e -> showTopCustomers());
         add.addActionListener(e -> addV());
+        imp.addActionListener(e -> importFleet());
         upd.addActionListener(e -> updV());
         del.addActionListener(e -> delV());
         rep.addActionListener(e -> showRep());
@@ -546,66 +571,88 @@ class AdminDashboard {
         dcust.addActionListener(e -> delC());
         book.addActionListener(e -> viewBookings()); // THE NEW SORTING FEATURE
         pay.addActionListener(e -> recPay());
+        exp.addActionListener(e -> DataExport.showDialog(frame, new DataExport(db)));
+        diag.addActionListener(e -> Metrics.showDialog(frame));
+        if (db == null) {
+            imp.setEnabled(false);
+            exp.setEnabled(false);
+            imp.setToolTipText("Needs a direct database connection");
+            exp.setToolTipText("Needs a direct database connection");
+        }
         out.addActionListener(e -> {
             frame.dispose();
-            new AuthSystem(db).showWelcome();
+            new AuthSystem(repo, db).showWelcome();
         });
     }
 
     private void loadVehicles() {
-        model.setRowCount(0);
-        for (Document d : db.vehicles.find().sort(new Document("VehicleID", 1))) {
-            String avail = "Y".equalsIgnoreCase(d.getString("Available")) ? "Yes" : "No";
-            double rent = 0.0;
-            if (d.get("RentPerDay") instanceof Number)
-                rent = ((Number) d.get("RentPerDay")).doubleValue();
-            model.addRow(new Object[] { d.getInteger("VehicleID"), d.getString("Model"), d.getString("Category"), rent,
-                    avail });
-        }
+        search.refresh();
     }
 
     private void addV() {
+        String m = mf.getText();
+        String c = cf.getText();
+        double rent;
         try {
-            int id = db.getNextSequence("vehicleid");
-            db.vehicles.insertOne(new Document("VehicleID", id).append("Model", mf.getText())
-                    .append("Category", cf.getText()).append("RentPerDay", Double.parseDouble(rf.getText()))
-                    .append("Available", "Y"));
-            loadVehicles();
-            JOptionPane.showMessageDialog(frame, "Added!");
+            rent = Double.parseDouble(rf.getText());
         } catch (Exception e) {
             JOptionPane.showMessageDialog(frame, "Error!");
+            return;
         }
+        AsyncDb.run(frame, () -> {
+            repo.addVehicle(m, c, rent);
+            return null;
+        }, ignored -> {
+            loadVehicles();
+            JOptionPane.showMessageDialog(frame, "Added!");
+        }, e -> JOptionPane.showMessageDialog(frame, "Error!"));
+    }
+
+    // Bulk add from a CSV file; the grid is refreshed once when the import ends
+    private void importFleet() {
+        FleetImport.showDialog(frame, new FleetImport(db), this::loadVehicles);
     }
 
     private void updV() {
         int r = table.getSelectedRow();
-        if (r < 0)
+        if (r < 0 || model.getRow(r) == null)
             return;
         int vid = (int) model.getValueAt(r, 0);
-        db.vehicles.updateOne(new Document("VehicleID", vid), new Document("$set", new Document("Model", mf.getText())
-                .append("Category", cf.getText()).append("RentPerDay", Double.parseDouble(rf.getText()))));
-        loadVehicles();
+        String vModel = mf.getText();
+        String category = cf.getText();
+        double rent = Double.parseDouble(rf.getText());
+        AsyncDb.run(frame, () -> {
+            repo.updateVehicle(vid, vModel, category, rent);
+            return null;
+        }, ignored -> loadVehicles());
     }
 
     private void delV() {
         int r = table.getSelectedRow();
-        if (r < 0)
+        if (r < 0 || model.getRow(r) == null)
             return;
-        db.vehicles.deleteOne(new Document("VehicleID", (int) model.getValueAt(r, 0)));
-        loadVehicles();
+        int vid = (int) model.getValueAt(r, 0);
+        AsyncDb.run(frame, () -> {
+            repo.deleteVehicle(vid);
+            return null;
+        }, ignored -> loadVehicles());
     }
 
+
     private void showRep() {
-        long tot = db.vehicles.countDocuments();
-        long av = db.vehicles.countDocuments(new Document("Available", "Y"));
-        JOptionPane.showMessageDialog(frame, "Total: " + tot + "\nAvail: " + av + "\nRented: " + (tot - av));
+        AsyncDb.run(frame, repo::fleetReport, rep -> JOptionPane.showMessageDialog(frame, rep));
     }
 
+    @SuppressWarnings("try")
     private void viewC() {
-        DefaultTableModel cm = new DefaultTableModel(new Object[] { "ID", "Name", "Mobile", "User" }, 0);
-        for (Document d : db.customers.find())
-            cm.addRow(new Object[] { d.get("CustomerID"), d.get("Name"), d.get("MobileNumber"), d.get("Username") });
-        JOptionPane.showMessageDialog(frame, new JScrollPane(new JTable(cm)));
+        AsyncDb.run(frame, () -> {
+            DefaultTableModel cm = new DefaultTableModel(new Object[] { "ID", "Name", "Mobile", "User" }, 0);
+            try (Trace.Span s = Trace.span("populate")) {
+                for (Object[] row : repo.customers())
+                    cm.addRow(row);
+            }
+            return cm;
+        }, cm -> JOptionPane.showMessageDialog(frame, new JScrollPane(new JTable(cm))));
     }
 
     private void delC() {
@@ -613,9 +660,27 @@ class AdminDashboard {
         if (s == null)
             return;
         int id = Integer.parseInt(s);
-        db.bookings.deleteMany(new Document("CustomerID", id));
-        db.customers.deleteOne(new Document("CustomerID", id));
-        JOptionPane.showMessageDialog(frame, "Deleted");
+        // Runs in the background; the dashboard stays usable while a long history goes
+        SwingWorker<?, ?>[] job = new SwingWorker<?, ?>[1];
+        ProgressDialog progress = new ProgressDialog(frame, "Deleting customer " + id, () -> job[0].cancel(true));
+        job[0] = AsyncDb.run(null, () -> {
+            repo.deleteCustomer(id, progress);
+            return null;
+        }, ignored -> {
+            progress.dispose();
+            JOptionPane.showMessageDialog(frame, "Deleted");
+        }, e -> {
+            progress.dispose();
+            e.printStackTrace();
+            JOptionPane.showMessageDialog(frame, "Error: " + e.getMessage() + "\nDelete the customer again to finish.");
+        });
+        job[0].addPropertyChangeListener(e -> {
+            if (job[0].isCancelled() && job[0].isDone() && progress.isDisplayable()) {
+                progress.dispose();
+                JOptionPane.showMessageDialog(frame, "Stopped. Delete the customer again to finish.");
+            }
+        });
+        progress.setVisible(true);
     }
 
     // --- NEW: BOOKING VIEW WITH SORTING ---
@@ -625,7 +690,8 @@ class AdminDashboard {
         dlg.setLocationRelativeTo(frame);
         dlg.setLayout(new BorderLayout());
 
-        DefaultTableModel bm = new DefaultTableModel(new Object[] { "ID", "Cust", "Veh", "Status", "Date" }, 0);
+        PagedTableModel bm = new PagedTableModel(new String[] { "ID", "Cust", "Veh", "Status", "Date" },
+                repo.bookings("ALL"));
         JTable bt = new JTable(bm);
         bt.setRowHeight(25);
 
@@ -638,36 +704,23 @@ class AdminDashboard {
         p.add(b2);
         p.add(b3);
 
-        b1.addActionListener(e -> loadBData(bm, "ALL"));
-        b2.addActionListener(e -> loadBData(bm, "Booked"));
-        b3.addActionListener(e -> loadBData(bm, "Returned"));
+        Consumer<String> load = filter -> loadBData(dlg, bm, filter);
+
+        b1.addActionListener(e -> load.accept("ALL"));
+        b2.addActionListener(e -> load.accept("Booked"));
+        b3.addActionListener(e -> load.accept("Returned"));
 
-        loadBData(bm, "ALL"); // Load default
+        load.accept("ALL"); // Load default
 
         dlg.add(p, BorderLayout.NORTH);
         dlg.add(new JScrollPane(bt), BorderLayout.CENTER);
         dlg.setVisible(true);
     }
 
-    private void loadBData(DefaultTableModel mod, String filter) {
-        mod.setRowCount(0);
-        List<Bson> pipe = new ArrayList<>();
-        pipe.add(Aggregates.lookup("customers", "CustomerID", "CustomerID", "c"));
-        pipe.add(Aggregates.lookup("vehicles", "VehicleID", "VehicleID", "v"));
-        pipe.add(Aggregates.unwind("$c"));
-        pipe.add(Aggregates.unwind("$v"));
-
-        if (!filter.equals("ALL")) {
-            pipe.add(Aggregates.match(Filters.eq("Status", filter)));
-        }
-        pipe.add(Aggregates.sort(Sorts.descending("BookingID")));
-
-        for (Document d : db.bookings.aggregate(pipe)) {
-            Document c = (Document) d.get("c");
-            Document v = (Document) d.get("v");
-            mod.addRow(new Object[] { d.getInteger("BookingID"), c.getString("Name"), v.getString("Model"),
-                    d.getString("Status"), d.getDate("BookingDate") });
-        }
+    private void loadBData(Component owner, PagedTableModel mod, String filter) {
+        // Pages are fetched as the table scrolls; switching filters discards the old ones
+        mod.setSource(repo.bookings(filter));
+        mod.refresh(owner);
     }
 
     private void recPay() {
@@ -675,15 +728,16 @@ class AdminDashboard {
         if (s == null)
             return;
         int bid = Integer.parseInt(s);
-        if (db.bookings.countDocuments(new Document("BookingID", bid)) == 0) {
-            JOptionPane.showMessageDialog(frame, "Invalid ID");
-            return;
-        }
-        String amt = JOptionPane.showInputDialog("Amount:");
-        String meth = JOptionPane.showInputDialog("Method:");
-        db.payments.insertOne(new Document("PaymentID", db.getNextSequence("paymentid"))
-                .append("BookingID", bid).append("Amount", Double.parseDouble(amt))
-                .append("PaymentMethod", meth).append("PaymentDate", new Date()));
-        JOptionPane.showMessageDialog(frame, "Recorded!");
+        AsyncDb.run(frame, () -> repo.bookingExists(bid), exists -> {
+            if (!exists) {
+                JOptionPane.showMessageDialog(frame, "Invalid ID");
+                return;
+            }
+            String amt = JOptionPane.showInputDialog("Amount:");
+            String meth = JOptionPane.showInputDialog("Method:");
+            double amount = Double.parseDouble(amt);
+            AsyncDb.run(frame, () -> repo.recordPayment(bid, amount, meth),
+                    recorded -> JOptionPane.showMessageDialog(frame, recorded ? "Recorded!" : "Invalid ID"));
+        });
     }
 }
\ No newline at end of file
@@ -0,0 +1,172 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Moves bookings that were returned long ago, with their payments, out of Bookings and
+// Payments into BookingsArchive and PaymentsArchive, so the tables every status check
+// and booking runs against only hold recent and active bookings. History and payment
+// screens read both.
+//
+// The archive tables are range-partitioned by month, on BookingDate and PaymentDate,
+// where the database supports partitioning; old months can then be dropped or moved
+// to cheaper storage as whole partitions. Rows move in chunks of the lowest
+// BookingIDs, each chunk copied and deleted in one short transaction that holds the
+// chunk's Bookings rows, so no payment is added to them between copy and delete.
+//
+//   vrs.archive.afterDays  archive bookings returned this many days ago   (90)
+//   vrs.archive.everyMin   minutes between runs; 0 turns archiving off     (60)
+//   vrs.archive.chunk      bookings per transaction                        (1000)
+//
+// Run this class to archive once, e.g. after lowering vrs.archive.afterDays.
+class BookingArchiver {
+    private static final int AFTER_DAYS = Integer.getInteger("vrs.archive.afterDays", 90);
+    private static final long EVERY_MIN = Long.getLong("vrs.archive.everyMin", 60L);
+    private static final int CHUNK = Integer.getInteger("vrs.archive.chunk", 1000);
+
+    private final ConnectionProvider db;
+
+    public BookingArchiver(ConnectionProvider db) {
+        this.db = db;
+    }
+
+    public static void main(String[] args) throws Exception {
+        ConnectionProvider db = new DatabaseManager().open();
+        ensureSchema(db);
+        System.out.println("Archived " + new BookingArchiver(db).run() + " bookings");
+        System.exit(0);
+    }
+
+    // Archives every booking due; the number moved
+    public int run() throws SQLException {
+        Timestamp cutoff = new Timestamp(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(AFTER_DAYS));
+        int moved = 0;
+        int n;
+        while ((n = moveChunk(cutoff)) > 0)
+            moved += n;
+        return moved;
+    }
+
+    private int moveChunk(Timestamp cutoff) throws SQLException {
+        try (Connection conn = db.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                Integer last = null;
+                try (PreparedStatement ps = conn.prepareStatement(Sql.ARCHIVE_CHUNK_END)) {
+                    ps.setTimestamp(1, cutoff);
+                    ps.setInt(2, CHUNK);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        if (rs.next()) {
+                            last = rs.getInt(1);
+                            if (rs.wasNull())
+                                last = null;
+                        }
+                    }
+                }
+                if (last == null) {
+                    conn.rollback();
+                    return 0;
+                }
+                try (PreparedStatement ps = conn.prepareStatement(Sql.ARCHIVE_LOCK_CHUNK)) {
+                    ps.setTimestamp(1, cutoff);
+                    ps.setInt(2, last);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                        }
+                    }
+                }
+                // A booking is copied before its payments and deleted after them
+                String[] steps = { Sql.ARCHIVE_COPY_BOOKINGS, Sql.ARCHIVE_COPY_PAYMENTS, Sql.ARCHIVE_DELETE_PAYMENTS,
+                        Sql.ARCHIVE_DELETE_BOOKINGS };
+                int moved = 0;
+                for (String sql : steps) {
+                    try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                        ps.setTimestamp(1, cutoff);
+                        ps.setInt(2, last);
+                        moved = ps.executeUpdate();
+                    }
+                }
+                conn.commit();
+                return moved;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    // Runs the archiver every vrs.archive.everyMin minutes on a background thread
+    public static void schedule(ConnectionProvider db) {
+        if (EVERY_MIN <= 0)
+            return;
+        BookingArchiver archiver = new BookingArchiver(db);
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "booking-archiver");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.scheduleWithFixedDelay(() -> {
+            try {
+                int moved = archiver.run();
+                if (moved > 0)
+                    System.out.println("Archive: moved " + moved + " returned bookings");
+            } catch (SQLException e) {
+                // Another instance archiving the same chunk loses on the primary key; next run carries on
+                System.err.println("Archive: run failed: " + e.getMessage());
+            }
+        }, 1, EVERY_MIN, TimeUnit.MINUTES);
+    }
+
+    // --- Schema ---
+
+    private static final String PARTITIONED_BY_MONTH = " PARTITION BY RANGE (%s) INTERVAL (NUMTOYMINTERVAL(1, 'MONTH')) "
+            + "(PARTITION archive_start VALUES LESS THAN (DATE '2000-01-01'))";
+
+    // Creates the archive tables, shaped like the live ones, and their keys and
+    // indexes. Safe to run on every start.
+    public static void ensureSchema(ConnectionProvider db) {
+        try (Connection conn = db.getConnection(); Statement st = conn.createStatement()) {
+            createArchive(st, "BookingsArchive", "BookingDate",
+                    "SELECT BookingID, CustomerID, VehicleID, BookingDate, ReturnDate, Status FROM Bookings WHERE 1 = 0");
+            createArchive(st, "PaymentsArchive", "PaymentDate",
+                    "SELECT PaymentID, BookingID, Amount, PaymentMethod, PaymentDate FROM Payments WHERE 1 = 0");
+            String[] ddl = {
+                    "ALTER TABLE BookingsArchive ADD CONSTRAINT BookingsArchive_PK PRIMARY KEY (BookingID)",
+                    "ALTER TABLE PaymentsArchive ADD CONSTRAINT PaymentsArchive_PK PRIMARY KEY (PaymentID)",
+                    "CREATE INDEX BookingsArchive_Customer_IX ON BookingsArchive (CustomerID, BookingID)",
+                    "CREATE INDEX PaymentsArchive_Booking_IX ON PaymentsArchive (BookingID)",
+                    // What the archiver scans for on the live table
+                    "CREATE INDEX Bookings_Returned_IX ON Bookings (Status, ReturnDate, BookingID)"
+            };
+            for (String sql : ddl) {
+                try {
+                    st.execute(sql);
+                } catch (SQLException e) {
+                    // ORA-00955 name in use / ORA-01408 already indexed / ORA-02260 key exists
+                    if (e.getErrorCode() != 955 && e.getErrorCode() != 1408 && e.getErrorCode() != 2260)
+                        System.err.println("Archive: " + e.getMessage());
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void createArchive(Statement st, String table, String dateColumn, String shape) throws SQLException {
+        try {
+            st.execute("CREATE TABLE " + table + String.format(PARTITIONED_BY_MONTH, dateColumn) + " AS " + shape);
+            System.out.println("Archive: created " + table + ", partitioned by month of " + dateColumn);
+        } catch (SQLException e) {
+            if (e.getErrorCode() == 955) // ORA-00955: already there
+                return;
+            // e.g. ORA-00439 on editions without partitioning: same table, one segment
+            System.err.println("Archive: " + table + " not partitioned: " + e.getMessage());
+            st.execute("CREATE TABLE " + table + " AS " + shape);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,146 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+// Books and returns vehicles with conditional updates, so a vehicle can only be
+// claimed while it is still available no matter how many sessions try at once.
+class BookingEngine {
+    // Shared by every dashboard in this JVM
+    private static final VehicleLocks SHARED_LOCKS = new VehicleLocks(64);
+
+    private final VehicleLocks locks;
+
+    private final ConnectionProvider db;
+    private final VehicleIndex index;
+    private final FleetStats stats;
+
+    public BookingEngine(ConnectionProvider db) {
+        this(db, SHARED_LOCKS);
+    }
+
+    // A private lock table behaves like a separate app instance
+    BookingEngine(ConnectionProvider db, VehicleLocks locks) {
+        this.db = db;
+        this.locks = locks;
+        this.index = VehicleIndex.of(db, () -> PageSources.vehicles(db));
+        this.stats = FleetStats.of(db, PageSources.fleet(db));
+    }
+
+    // The search index this engine reports bookings and returns to
+    VehicleIndex index() {
+        return index;
+    }
+
+    // The fleet counters this engine reports bookings and returns to
+    FleetStats stats() {
+        return stats;
+    }
+
+    public BookingOutcome book(int customerId, int vehicleId) throws SQLException {
+        if (!locks.tryClaim(vehicleId))
+            return BookingOutcome.BUSY;
+        try (Connection conn = db.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                // Claim: only succeeds while the vehicle is still available
+                try (PreparedStatement ps = conn
+                        .prepareStatement(Sql.VEHICLES_CLAIM)) {
+                    ps.setInt(1, vehicleId);
+                    if (ps.executeUpdate() == 0) {
+                        conn.rollback();
+                        return BookingOutcome.UNAVAILABLE;
+                    }
+                }
+                Object[] cell = fleetCell(conn, vehicleId);
+                try (PreparedStatement ps = conn.prepareStatement(Sql.BOOKINGS_INSERT)) {
+                    ps.setInt(1, customerId);
+                    ps.setInt(2, vehicleId);
+                    ps.executeUpdate();
+                }
+                Leaderboard.Entry counted = countBooking(conn, customerId);
+                conn.commit();
+                if (cell != null)
+                    stats.availabilityChanged((String) cell[0], (double) cell[1], false);
+                index.availabilityChanged(vehicleId, false);
+                if (counted != null)
+                    Leaderboard.recordBooking(counted.customerId, counted.name, counted.mobile, counted.bookings);
+                return BookingOutcome.BOOKED;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } finally {
+            locks.release(vehicleId);
+        }
+    }
+
+    // {Category, RentPerDay} of the vehicle, for the fleet counters
+    private static Object[] fleetCell(Connection conn, int vehicleId) throws SQLException {
+        try (PreparedStatement ps = conn
+                .prepareStatement(Sql.VEHICLES_CELL)) {
+            ps.setInt(1, vehicleId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? new Object[] { rs.getString(1), rs.getDouble(2) } : null;
+            }
+        }
+    }
+
+    // Bumps the customer's booking counter inside the booking's transaction and
+    // returns the new total, or null while the counter column is not set up
+    private static Leaderboard.Entry countBooking(Connection conn, int customerId) throws SQLException {
+        try (PreparedStatement ps = conn
+                .prepareStatement(Sql.CUSTOMERS_COUNT_BOOKING)) {
+            ps.setInt(1, customerId);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            if (e.getErrorCode() == 904) // ORA-00904: invalid identifier
+                return null;
+            throw e;
+        }
+        try (PreparedStatement ps = conn
+                .prepareStatement(Sql.CUSTOMERS_ENTRY)) {
+            ps.setInt(1, customerId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? new Leaderboard.Entry(customerId, rs.getString(1), rs.getString(2), rs.getInt(3))
+                        : null;
+            }
+        }
+    }
+
+    public BookingOutcome returnVehicle(int customerId, int vehicleId) throws SQLException {
+        if (!locks.tryClaim(vehicleId))
+            return BookingOutcome.BUSY;
+        try (Connection conn = db.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                try (PreparedStatement ps = conn.prepareStatement(Sql.BOOKINGS_RETURN)) {
+                    ps.setInt(1, vehicleId);
+                    ps.setInt(2, customerId);
+                    if (ps.executeUpdate() == 0) {
+                        conn.rollback();
+                        return BookingOutcome.NOT_BOOKED;
+                    }
+                }
+                int released;
+                try (PreparedStatement ps = conn
+                        .prepareStatement(Sql.VEHICLES_RELEASE)) {
+                    ps.setInt(1, vehicleId);
+                    released = ps.executeUpdate();
+                }
+                Object[] cell = released == 1 ? fleetCell(conn, vehicleId) : null;
+                conn.commit();
+                if (cell != null) {
+                    stats.availabilityChanged((String) cell[0], (double) cell[1], true);
+                    index.availabilityChanged(vehicleId, true);
+                }
+                return BookingOutcome.RETURNED;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } finally {
+            locks.release(vehicleId);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,138 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Stress check for BookingEngine: many threads book and return a small throw-away
+// fleet at once, then the database is checked for vehicles with more than one
+// active booking. Everything it creates is deleted afterwards.
+//
+// Usage: java BookingStress [threads] [vehicles] [seconds] [shared|isolated]
+// "isolated" gives every thread its own lock table, as if each were a separate app
+// instance, so only the database-side conditional claim stands between them. A
+// database that cannot be reached fails the run with the connection error.
+public class BookingStress {
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int vehicles = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        boolean isolated = args.length > 3 && "isolated".equals(args[3]);
+        String tag = "STRESS-" + Long.toString(System.currentTimeMillis(), 36);
+
+        int doubles;
+        try (ConnectionProvider db = new DatabaseManager().open()) {
+            List<Integer> vehicleIds = new ArrayList<>();
+            List<Integer> customerIds = new ArrayList<>();
+            setUp(db, tag, vehicles, threads, vehicleIds, customerIds);
+            try {
+                run(db, threads, seconds, isolated, vehicleIds, customerIds);
+                doubles = countDoubleBookings(db, tag);
+            } finally {
+                tearDown(db, tag);
+            }
+        }
+        System.out.println("Double bookings: " + doubles + (doubles == 0 ? " (OK)" : " (FAIL)"));
+        System.exit(doubles == 0 ? 0 : 1);
+    }
+
+    private static void setUp(ConnectionProvider db, String tag, int vehicles, int customers,
+            List<Integer> vehicleIds, List<Integer> customerIds) throws SQLException {
+        try (Connection conn = db.getConnection()) {
+            try (PreparedStatement ps = conn.prepareStatement(Sql.STRESS_VEHICLES_INSERT)) {
+                for (int i = 0; i < vehicles; i++) {
+                    ps.setString(1, tag);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            try (PreparedStatement ps = conn.prepareStatement(Sql.STRESS_CUSTOMERS_INSERT)) {
+                for (int i = 0; i < customers; i++) {
+                    ps.setString(1, tag);
+                    ps.setString(2, tag + "-" + i);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            vehicleIds.addAll(Sql.list(conn, Sql.STRESS_VEHICLE_IDS, 0, rs -> rs.getInt(1), tag));
+            customerIds.addAll(Sql.list(conn, Sql.STRESS_CUSTOMER_IDS, 0, rs -> rs.getInt(1), tag));
+        }
+    }
+
+    private static void run(ConnectionProvider db, int threads, int seconds, boolean isolated,
+            List<Integer> vehicleIds, List<Integer> customerIds) throws InterruptedException {
+        BookingEngine shared = new BookingEngine(db);
+        Map<BookingOutcome, AtomicLong> outcomes = new EnumMap<>(BookingOutcome.class);
+        for (BookingOutcome o : BookingOutcome.values())
+            outcomes.put(o, new AtomicLong());
+        AtomicLong errors = new AtomicLong();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            int customerId = customerIds.get(t % customerIds.size());
+            BookingEngine engine = isolated ? new BookingEngine(db, new VehicleLocks(64)) : shared;
+            pool.execute(() -> {
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                Deque<Integer> held = new ArrayDeque<>();
+                while (System.nanoTime() < deadline) {
+                    try {
+                        if (!held.isEmpty() && rnd.nextInt(3) == 0) {
+                            int vid = held.poll();
+                            BookingOutcome o = engine.returnVehicle(customerId, vid);
+                            outcomes.get(o).incrementAndGet();
+                            if (o == BookingOutcome.BUSY)
+                                held.add(vid);
+                        } else {
+                            int vid = vehicleIds.get(rnd.nextInt(vehicleIds.size()));
+                            BookingOutcome o = engine.book(customerId, vid);
+                            outcomes.get(o).incrementAndGet();
+                            if (o == BookingOutcome.BOOKED)
+                                held.add(vid);
+                        }
+                    } catch (SQLException e) {
+                        errors.incrementAndGet();
+                    }
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(seconds + 60L, TimeUnit.SECONDS);
+
+        long booked = outcomes.get(BookingOutcome.BOOKED).get();
+        System.out.printf("%d threads, %d vehicles, %d s, %s locks%n", threads, vehicleIds.size(), seconds,
+                isolated ? "isolated" : "shared");
+        System.out.printf("Bookings: %d (%.1f/s)  Returns: %d%n", booked, booked / (double) seconds,
+                outcomes.get(BookingOutcome.RETURNED).get());
+        System.out.printf("Unavailable: %d  Busy (failed fast): %d  Errors: %d%n",
+                outcomes.get(BookingOutcome.UNAVAILABLE).get(),
+                outcomes.get(BookingOutcome.BUSY).get(), errors.get());
+    }
+
+    private static int countDoubleBookings(ConnectionProvider db, String tag) throws SQLException {
+        try (Connection conn = db.getConnection()) {
+            return Sql.list(conn, Sql.STRESS_DOUBLE_BOOKINGS, 0, rs -> rs.getInt(1), tag).get(0);
+        }
+    }
+
+    private static void tearDown(ConnectionProvider db, String tag) throws SQLException {
+        try (Connection conn = db.getConnection()) {
+            for (String sql : new String[] { Sql.STRESS_DELETE_BOOKINGS, Sql.STRESS_DELETE_VEHICLES,
+                    Sql.STRESS_DELETE_CUSTOMERS }) {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setString(1, tag);
+                    ps.executeUpdate();
+                }
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,480 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Bounded JDBC pool. Connections handed out are proxies whose close() returns the
+// physical connection to the pool with auto-commit restored.
+//
+// Each physical connection also keeps its most recently used prepared statements
+// open, so the statements in Sql are parsed once per connection rather than on every
+// call. prepareStatement(sql) hands out a cached statement whose close() puts it back.
+// This is done here rather than with the driver's implicit statement cache so the
+// hit/miss counts can be reported per statement.
+class ConnectionPool implements ConnectionProvider {
+    private final String url;
+    private final String user;
+    private final String pass;
+    private final int minSize;
+    private final int maxSize;
+    private final long borrowTimeoutMs;
+    private final long leakThresholdMs;
+    private final int validationTimeoutSec = 2;
+    private final int statementCacheSize;
+
+    private final Deque<Connection> idle = new ArrayDeque<>();
+    private final ConcurrentHashMap<Connection, Lease> leased = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Connection, StatementCache> statementCaches = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService leakWatcher;
+    private int total; // physical connections open, guarded by this
+    private boolean closed;
+
+    // Metrics
+    private final AtomicLong borrows = new AtomicLong();
+    private final AtomicLong borrowWaitNanos = new AtomicLong();
+    private final AtomicLong maxBorrowWaitNanos = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong discarded = new AtomicLong();
+    private final AtomicLong leaks = new AtomicLong();
+    private final AtomicLong statementHits = new AtomicLong();
+    private final AtomicLong statementMisses = new AtomicLong();
+    private final AtomicLong statementEvictions = new AtomicLong();
+    private final ConcurrentHashMap<String, StatementUse> statementUse = new ConcurrentHashMap<>();
+
+    private static final class Lease {
+        final long since = System.currentTimeMillis();
+        final Throwable borrower = new Throwable("Connection borrowed here");
+        volatile boolean reported;
+    }
+
+    private static final class StatementUse {
+        final AtomicLong hits = new AtomicLong();
+        final AtomicLong misses = new AtomicLong();
+    }
+
+    public ConnectionPool(String url, String user, String pass, int minSize, int maxSize, long borrowTimeoutMs,
+            long leakThresholdMs, int statementCacheSize) throws SQLException {
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize)
+            throw new IllegalArgumentException("Invalid pool size: min=" + minSize + ", max=" + maxSize);
+        this.url = url;
+        this.user = user;
+        this.pass = pass;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.borrowTimeoutMs = borrowTimeoutMs;
+        this.leakThresholdMs = leakThresholdMs;
+        this.statementCacheSize = statementCacheSize;
+
+        synchronized (this) {
+            for (int i = 0; i < minSize; i++) {
+                idle.push(open());
+                total++;
+            }
+        }
+
+        leakWatcher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "jdbc-pool-leak-watcher");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1000, leakThresholdMs / 2);
+        leakWatcher.scheduleAtFixedRate(this::checkLeaks, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(borrowTimeoutMs);
+        Connection physical = null;
+
+        while (physical == null) {
+            boolean mustOpen = false;
+            synchronized (this) {
+                while (idle.isEmpty() && total >= maxSize && !closed) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        timeouts.incrementAndGet();
+                        throw new SQLException("Timed out after " + borrowTimeoutMs + " ms waiting for a connection ("
+                                + leased.size() + "/" + maxSize + " in use)");
+                    }
+                    try {
+                        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrupted while waiting for a connection", e);
+                    }
+                }
+                if (closed)
+                    throw new SQLException("Connection pool is closed");
+                if (!idle.isEmpty()) {
+                    physical = idle.pop();
+                } else {
+                    total++;
+                    mustOpen = true;
+                }
+            }
+
+            if (mustOpen) {
+                try {
+                    physical = open();
+                } catch (SQLException e) {
+                    synchronized (this) {
+                        total--;
+                        notifyAll();
+                    }
+                    throw e;
+                }
+            } else if (!isUsable(physical)) {
+                discard(physical);
+                physical = null;
+            }
+        }
+
+        long waited = System.nanoTime() - start;
+        borrows.incrementAndGet();
+        borrowWaitNanos.addAndGet(waited);
+        maxBorrowWaitNanos.accumulateAndGet(waited, Math::max);
+        leased.put(physical, new Lease());
+        return wrap(physical);
+    }
+
+    private Connection open() throws SQLException {
+        Connection c = DriverManager.getConnection(url, user, pass);
+        created.incrementAndGet();
+        return c;
+    }
+
+    // Validation-on-borrow
+    private boolean isUsable(Connection c) {
+        try {
+            return !c.isClosed() && c.isValid(validationTimeoutSec);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void release(Connection physical) {
+        if (leased.remove(physical) == null)
+            return;
+        boolean healthy;
+        try {
+            StatementCache cache = statementCaches.get(physical);
+            if (cache != null)
+                cache.reclaim();
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            healthy = !physical.isClosed();
+        } catch (SQLException e) {
+            healthy = false;
+        }
+        if (!healthy) {
+            discard(physical);
+            return;
+        }
+        synchronized (this) {
+            if (closed) {
+                total--;
+                statementCaches.remove(physical);
+                closeQuietly(physical);
+            } else {
+                idle.push(physical);
+            }
+            notifyAll();
+        }
+    }
+
+    private void discard(Connection physical) {
+        leased.remove(physical);
+        statementCaches.remove(physical);
+        closeQuietly(physical);
+        discarded.incrementAndGet();
+        synchronized (this) {
+            total--;
+            notifyAll();
+        }
+    }
+
+    private static void closeQuietly(Connection c) {
+        try {
+            c.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    private void checkLeaks() {
+        long now = System.currentTimeMillis();
+        for (Lease lease : leased.values()) {
+            if (!lease.reported && now - lease.since > leakThresholdMs) {
+                lease.reported = true;
+                leaks.incrementAndGet();
+                System.err.println("Possible connection leak: held for " + (now - lease.since) + " ms");
+                lease.borrower.printStackTrace();
+            }
+        }
+    }
+
+    private Connection wrap(Connection physical) {
+        InvocationHandler handler = new InvocationHandler() {
+            private boolean returned;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                switch (method.getName()) {
+                    case "close":
+                        if (!returned) {
+                            returned = true;
+                            release(physical);
+                        }
+                        return null;
+                    case "isClosed":
+                        return returned || physical.isClosed();
+                    case "unwrap":
+                        if (((Class<?>) args[0]).isInstance(physical))
+                            return physical;
+                        break;
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "toString":
+                        return "Pooled[" + physical + "]";
+                    case "prepareStatement":
+                        if (returned)
+                            throw new SQLException("Connection already returned to the pool");
+                        if (args.length == 1 && statementCacheSize > 0)
+                            return statementCaches.computeIfAbsent(physical, StatementCache::new)
+                                    .prepare((String) args[0], (Connection) proxy);
+                        break;
+                    default:
+                        break;
+                }
+                if (returned)
+                    throw new SQLException("Connection already returned to the pool");
+                try {
+                    return method.invoke(physical, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+        };
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, handler);
+    }
+
+    // The open statements of one physical connection, least recently used first.
+    // Only the thread holding the connection touches it, so it needs no locking.
+    private final class StatementCache {
+        private final Connection physical;
+        private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+        private final class Entry {
+            final String sql;
+            final PreparedStatement statement;
+            final int fetchSize;
+            Object holder; // the proxy currently using the statement, if any
+            ResultSet lastResult;
+
+            Entry(String sql, PreparedStatement statement) throws SQLException {
+                this.sql = sql;
+                this.statement = statement;
+                this.fetchSize = statement.getFetchSize();
+            }
+        }
+
+        StatementCache(Connection physical) {
+            this.physical = physical;
+        }
+
+        PreparedStatement prepare(String sql, Connection owner) throws SQLException {
+            StatementUse use = statementUse.computeIfAbsent(sql, k -> new StatementUse());
+            Entry e = entries.get(sql);
+            if (e != null && e.holder != null) {
+                // Same statement opened twice at once; the second one is not cached
+                statementMisses.incrementAndGet();
+                use.misses.incrementAndGet();
+                return physical.prepareStatement(sql);
+            }
+            if (e != null) {
+                statementHits.incrementAndGet();
+                use.hits.incrementAndGet();
+            } else {
+                statementMisses.incrementAndGet();
+                use.misses.incrementAndGet();
+                e = new Entry(sql, physical.prepareStatement(sql));
+                entries.put(sql, e);
+                evict();
+            }
+            return lend(e, owner);
+        }
+
+        private void evict() {
+            Iterator<Entry> it = entries.values().iterator();
+            while (entries.size() > statementCacheSize && it.hasNext()) {
+                Entry eldest = it.next();
+                it.remove();
+                statementEvictions.incrementAndGet();
+                if (eldest.holder == null)
+                    closeQuietly(eldest);
+                // else closed when its holder gives it back
+            }
+        }
+
+        private PreparedStatement lend(Entry e, Connection owner) {
+            InvocationHandler handler = new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    boolean mine = e.holder == this;
+                    switch (method.getName()) {
+                        case "close":
+                            if (mine)
+                                giveBack(e);
+                            return null;
+                        case "isClosed":
+                            return !mine || e.statement.isClosed();
+                        case "getConnection":
+                            return owner;
+                        case "unwrap":
+                            if (((Class<?>) args[0]).isInstance(e.statement))
+                                return e.statement;
+                            break;
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "toString":
+                            return "Cached[" + e.sql + "]";
+                        default:
+                            break;
+                    }
+                    if (!mine)
+                        throw new SQLException("Statement is closed");
+                    try {
+                        Object result = method.invoke(e.statement, args);
+                        if (result instanceof ResultSet)
+                            e.lastResult = (ResultSet) result;
+                        return result;
+                    } catch (InvocationTargetException ex) {
+                        throw ex.getCause();
+                    }
+                }
+            };
+            e.holder = handler;
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[] { PreparedStatement.class }, handler);
+        }
+
+        // Readies the statement for its next user, or closes it if it was evicted
+        // or cannot be reset
+        private void giveBack(Entry e) {
+            e.holder = null;
+            try {
+                if (e.lastResult != null) {
+                    e.lastResult.close();
+                    e.lastResult = null;
+                }
+                if (entries.get(e.sql) != e) {
+                    e.statement.close();
+                    return;
+                }
+                e.statement.clearParameters();
+                e.statement.clearBatch();
+                if (e.statement.getFetchSize() != e.fetchSize)
+                    e.statement.setFetchSize(e.fetchSize);
+            } catch (SQLException ex) {
+                entries.remove(e.sql, e);
+                closeQuietly(e);
+            }
+        }
+
+        // Takes back statements whose users forgot to close them before the
+        // connection went back to the pool
+        void reclaim() {
+            for (Entry e : new ArrayList<>(entries.values()))
+                if (e.holder != null)
+                    giveBack(e);
+        }
+
+        private void closeQuietly(Entry e) {
+            try {
+                e.statement.close();
+            } catch (SQLException ignored) {
+            }
+        }
+    }
+
+    @Override
+    public String stats() {
+        long n = borrows.get();
+        int idleNow;
+        int totalNow;
+        synchronized (this) {
+            idleNow = idle.size();
+            totalNow = total;
+        }
+        return "Pool: open=" + totalNow + " (min " + minSize + ", max " + maxSize + "), in use=" + leased.size()
+                + ", idle=" + idleNow
+                + "\nBorrows: " + n + ", avg wait=" + (n == 0 ? 0 : borrowWaitNanos.get() / n / 1000) + " us"
+                + ", max wait=" + maxBorrowWaitNanos.get() / 1000 + " us, timeouts=" + timeouts.get()
+                + "\nCreated: " + created.get() + ", discarded: " + discarded.get() + ", leaks: " + leaks.get()
+                + "\n" + statementStats();
+    }
+
+    // Cache totals, then the ten most used statements by catalog name
+    String statementStats() {
+        long hits = statementHits.get();
+        long misses = statementMisses.get();
+        StringBuilder sb = new StringBuilder("Statements: cache " + statementCacheSize + " per connection, hits="
+                + hits + ", misses=" + misses + ", hit rate="
+                + (hits + misses == 0 ? 0 : hits * 100 / (hits + misses)) + "%, evictions=" + statementEvictions.get());
+        List<Map.Entry<String, StatementUse>> top = new ArrayList<>(statementUse.entrySet());
+        top.sort((a, b) -> Long.compare(b.getValue().hits.get() + b.getValue().misses.get(),
+                a.getValue().hits.get() + a.getValue().misses.get()));
+        for (Map.Entry<String, StatementUse> e : top.subList(0, Math.min(10, top.size()))) {
+            String name = Sql.nameOf(e.getKey());
+            if (name == null)
+                name = e.getKey().length() > 40 ? e.getKey().substring(0, 40) + "..." : e.getKey();
+            sb.append("\n  ").append(name).append(": ").append(e.getValue().hits.get()).append(" hits, ")
+                    .append(e.getValue().misses.get()).append(" misses");
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public void close() {
+        List<Connection> toClose;
+        synchronized (this) {
+            if (closed)
+                return;
+            closed = true;
+            toClose = new ArrayList<>(idle);
+            total -= idle.size();
+            idle.clear();
+            notifyAll();
+        }
+        leakWatcher.shutdownNow();
+        for (Connection c : toClose) {
+            statementCaches.remove(c);
+            closeQuietly(c);
+        }
+    }
+}
\ No newline at end of file
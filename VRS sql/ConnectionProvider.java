@@ -0,0 +1,12 @@
+import java.sql.Connection;
+import java.sql.SQLException;
+
+// Hands out a connection per operation. Callers close() what they borrow.
+interface ConnectionProvider extends AutoCloseable {
+    Connection getConnection() throws SQLException;
+
+    String stats();
+
+    @Override
+    void close();
+}
\ No newline at end of file
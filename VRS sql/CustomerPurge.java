@@ -0,0 +1,231 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+// Deletes a customer and everything hanging off them without holding locks on the
+// busy Bookings table for long. Vehicles the customer still holds are returned first;
+// then their bookings go in chunks, lowest BookingID first, each chunk together with
+// its payments in one short transaction, and after them their archived bookings and
+// payments the same way. The customer row goes last.
+//
+// A CustomerPurges row marks a deletion as started and is removed with the customer.
+// Every step only deletes what is still there, so a deletion that was stopped or cut
+// short finishes by running it again: deleting the same customer again, or
+// resumePending() at startup.
+//
+//   vrs.purge.chunk    bookings per transaction                       (500)
+//   vrs.purge.pauseMs  pause between chunks, so other work gets a turn   (20)
+class CustomerPurge {
+    private static final int CHUNK = Integer.getInteger("vrs.purge.chunk", 500);
+    private static final long PAUSE_MS = Long.getLong("vrs.purge.pauseMs", 20L);
+    private static final int ROUNDS = 5; // release-and-delete passes before giving up on a busy customer
+
+    private final ConnectionProvider db;
+    private final BookingEngine engine;
+
+    public CustomerPurge(ConnectionProvider db, BookingEngine engine) {
+        this.db = db;
+        this.engine = engine;
+    }
+
+    public void run(int customerId, RentalRepository.Progress progress) throws SQLException, InterruptedException {
+        if (progress == null)
+            progress = (step, done, total) -> {
+            };
+        mark(customerId);
+        int total = count(Sql.BOOKINGS_COUNT_FOR_CUSTOMER, customerId);
+        int deleted = 0;
+        for (int round = 1;; round++) {
+            releaseVehicles(customerId, progress);
+            progress.update("bookings", deleted, total);
+            int removed;
+            while ((removed = deleteChunk(customerId, Sql.BOOKINGS_CHUNK_END, Sql.BOOKINGS_LOCK_CHUNK,
+                    Sql.PAYMENTS_DELETE_CHUNK, Sql.BOOKINGS_DELETE_CHUNK)) > 0) {
+                deleted += removed;
+                total = Math.max(total, deleted);
+                progress.update("bookings", deleted, total);
+                pause();
+            }
+            if (count(Sql.BOOKINGS_COUNT_FOR_CUSTOMER, customerId) == 0)
+                break;
+            // Bookings made while this ran; return those vehicles too and go again
+            if (round == ROUNDS)
+                throw new SQLException("Customer " + customerId + " still has bookings after " + ROUNDS
+                        + " passes; run the deletion again to finish it");
+        }
+        int archived = 0, archivedTotal = count(Sql.ARCHIVE_COUNT_FOR_CUSTOMER, customerId);
+        progress.update("archived bookings", 0, archivedTotal);
+        int removed;
+        while ((removed = deleteChunk(customerId, Sql.ARCHIVE_CUSTOMER_CHUNK_END, null,
+                Sql.ARCHIVE_DELETE_PAYMENTS_CHUNK, Sql.ARCHIVE_DELETE_BOOKINGS_CHUNK)) > 0) {
+            archived += removed;
+            archivedTotal = Math.max(archivedTotal, archived);
+            progress.update("archived bookings", archived, archivedTotal);
+            pause();
+        }
+        try (Connection conn = db.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                String[] steps = { Sql.CUSTOMERS_DELETE, Sql.PURGES_DONE };
+                for (String sql : steps) {
+                    try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                        ps.setInt(1, customerId);
+                        ps.executeUpdate();
+                    }
+                }
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+        Leaderboard.forget(customerId);
+        progress.update("customer", 1, 1);
+    }
+
+    private void mark(int customerId) throws SQLException {
+        try (Connection conn = db.getConnection();
+                PreparedStatement ps = conn.prepareStatement(Sql.PURGES_START)) {
+            ps.setInt(1, customerId);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            if (e.getErrorCode() != 1) // ORA-00001: already started, this run resumes it
+                throw e;
+        }
+    }
+
+    private void releaseVehicles(int customerId, RentalRepository.Progress progress)
+            throws SQLException, InterruptedException {
+        List<Integer> held;
+        try (Connection conn = db.getConnection()) {
+            held = Sql.list(conn, Sql.BOOKINGS_ACTIVE_FOR_CUSTOMER, 0, rs -> rs.getInt(1), customerId);
+        }
+        for (int i = 0; i < held.size(); i++) {
+            progress.update("vehicles", i, held.size());
+            // BUSY means someone else is mid-update on the vehicle; wait our turn
+            for (int attempt = 0; engine.returnVehicle(customerId, held.get(i)) == BookingOutcome.BUSY; attempt++) {
+                if (attempt == 100)
+                    throw new SQLException("Vehicle " + held.get(i) + " stayed busy; run the deletion again");
+                Thread.sleep(10);
+            }
+        }
+        progress.update("vehicles", held.size(), held.size());
+    }
+
+    // Deletes the next chunk of the customer's bookings and their payments, up to the
+    // BookingID chunkEnd finds, holding the chunk's rows with lock first if given; the
+    // number of bookings deleted
+    private int deleteChunk(int customerId, String chunkEnd, String lock, String payments, String bookings)
+            throws SQLException, InterruptedException {
+        if (Thread.interrupted())
+            throw new InterruptedException("Deletion of customer " + customerId + " stopped");
+        try (Connection conn = db.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                Integer last = null;
+                try (PreparedStatement ps = conn.prepareStatement(chunkEnd)) {
+                    ps.setInt(1, customerId);
+                    ps.setInt(2, CHUNK);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        if (rs.next()) {
+                            last = rs.getInt(1);
+                            if (rs.wasNull())
+                                last = null;
+                        }
+                    }
+                }
+                if (last == null) {
+                    conn.rollback();
+                    return 0;
+                }
+                // Hold the chunk's rows so none of them is returned between the two deletes
+                if (lock != null) {
+                    try (PreparedStatement ps = conn.prepareStatement(lock)) {
+                        ps.setInt(1, customerId);
+                        ps.setInt(2, last);
+                        try (ResultSet rs = ps.executeQuery()) {
+                            while (rs.next()) {
+                            }
+                        }
+                    }
+                }
+                try (PreparedStatement ps = conn.prepareStatement(payments)) {
+                    ps.setInt(1, customerId);
+                    ps.setInt(2, last);
+                    ps.executeUpdate();
+                }
+                int removed;
+                try (PreparedStatement ps = conn.prepareStatement(bookings)) {
+                    ps.setInt(1, customerId);
+                    ps.setInt(2, last);
+                    removed = ps.executeUpdate();
+                }
+                conn.commit();
+                return removed;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    private int count(String sql, int customerId) throws SQLException {
+        try (Connection conn = db.getConnection()) {
+            return Sql.list(conn, sql, 0, rs -> rs.getInt(1), customerId).get(0);
+        }
+    }
+
+    private static void pause() throws InterruptedException {
+        if (PAUSE_MS > 0)
+            Thread.sleep(PAUSE_MS);
+    }
+
+    // --- Schema and restart ---
+
+    // The CustomerPurges table and the index the chunk queries walk. Safe to run on
+    // every start.
+    public static void ensureSchema(ConnectionProvider db) {
+        String[] ddl = {
+                "CREATE TABLE CustomerPurges (CustomerID NUMBER PRIMARY KEY, "
+                        + "StartedAt TIMESTAMP DEFAULT SYSTIMESTAMP NOT NULL)",
+                "CREATE INDEX Bookings_Customer_IX ON Bookings (CustomerID, BookingID)"
+        };
+        try (Connection conn = db.getConnection(); Statement st = conn.createStatement()) {
+            for (String sql : ddl) {
+                try {
+                    st.execute(sql);
+                } catch (SQLException e) {
+                    // ORA-00955 name in use / ORA-01408 already indexed: nothing to do
+                    if (e.getErrorCode() != 955 && e.getErrorCode() != 1408)
+                        System.err.println("Purge: " + e.getMessage());
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Finishes, on a background thread, deletions an earlier run did not complete
+    public static void resumePending(ConnectionProvider db) {
+        Thread t = new Thread(() -> {
+            CustomerPurge purge = new CustomerPurge(db, new BookingEngine(db));
+            try {
+                List<Integer> pending;
+                try (Connection conn = db.getConnection()) {
+                    pending = Sql.list(conn, Sql.PURGES_PENDING, 0, rs -> rs.getInt(1));
+                }
+                for (int customerId : pending) {
+                    System.out.println("Purge: finishing the deletion of customer " + customerId);
+                    purge.run(customerId, null);
+                }
+            } catch (SQLException | InterruptedException e) {
+                System.err.println("Purge: pending deletions not finished: " + e.getMessage());
+            }
+        }, "customer-purge");
+        t.setDaemon(true);
+        t.start();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,133 @@
+import javax.swing.*;
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+// Streams a whole table to a file in CSV or the columnar binary format. Rows go from
+// the ResultSet straight to the sink, fetched in chunks of FETCH_SIZE, so the heap
+// holds at most one fetch (plus one row group for the columnar format).
+class DataExport {
+    private static final int FETCH_SIZE = Integer.getInteger("vrs.export.fetchSize", 1000);
+
+    enum Dataset {
+        BOOKINGS("Bookings", Sql.BOOKINGS_EXPORT,
+                col("BookingID", ExportFormats.Type.INT), col("CustomerID", ExportFormats.Type.INT),
+                col("VehicleID", ExportFormats.Type.INT), col("BookingDate", ExportFormats.Type.DATE),
+                col("ReturnDate", ExportFormats.Type.DATE), col("Status", ExportFormats.Type.STRING)),
+        PAYMENTS("Payments", Sql.PAYMENTS_EXPORT,
+                col("PaymentID", ExportFormats.Type.INT), col("BookingID", ExportFormats.Type.INT),
+                col("Amount", ExportFormats.Type.DOUBLE), col("PaymentMethod", ExportFormats.Type.STRING),
+                col("PaymentDate", ExportFormats.Type.DATE)),
+        // Password hashes are deliberately left out
+        CUSTOMERS("Customers", Sql.CUSTOMERS_LIST,
+                col("CustomerID", ExportFormats.Type.INT), col("Name", ExportFormats.Type.STRING),
+                col("MobileNumber", ExportFormats.Type.STRING), col("Username", ExportFormats.Type.STRING));
+
+        final String label;
+        final String sql;
+        final ExportFormats.Column[] columns;
+
+        Dataset(String label, String sql, ExportFormats.Column... columns) {
+            this.label = label;
+            this.sql = sql;
+            this.columns = columns;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    private static ExportFormats.Column col(String name, ExportFormats.Type type) {
+        return new ExportFormats.Column(name, type);
+    }
+
+    private final ConnectionProvider db;
+
+    public DataExport(ConnectionProvider db) {
+        this.db = db;
+    }
+
+    // Returns a one-line summary with the row count and rows/s
+    public String export(Dataset ds, Path file, boolean columnar, boolean gzip) throws SQLException, IOException {
+        long start = System.nanoTime();
+        long rows = 0;
+        ExportFormats.Column[] cols = ds.columns;
+        try (OutputStream out = ExportFormats.open(file, gzip);
+                ExportFormats.Sink sink = columnar ? ExportFormats.columnar(out, cols) : ExportFormats.csv(out, cols);
+                Connection conn = db.getConnection();
+                PreparedStatement ps = conn.prepareStatement(ds.sql)) {
+            ps.setFetchSize(FETCH_SIZE);
+            try (ResultSet rs = ps.executeQuery()) {
+                Object[] row = new Object[cols.length];
+                while (rs.next()) {
+                    for (int i = 0; i < cols.length; i++)
+                        row[i] = read(rs, i + 1, cols[i].type);
+                    sink.row(row);
+                    rows++;
+                    if (Thread.currentThread().isInterrupted())
+                        throw new IOException("Export cancelled after " + rows + " rows");
+                }
+            }
+        }
+        double secs = Math.max(0.001, (System.nanoTime() - start) / 1e9);
+        return String.format("Exported %d %s rows in %.1f s (%.0f rows/s)", rows, ds.label.toLowerCase(), secs,
+                rows / secs);
+    }
+
+    private static Object read(ResultSet rs, int i, ExportFormats.Type type) throws SQLException {
+        switch (type) {
+            case INT: {
+                int v = rs.getInt(i);
+                return rs.wasNull() ? null : v;
+            }
+            case DOUBLE: {
+                double v = rs.getDouble(i);
+                return rs.wasNull() ? null : v;
+            }
+            case DATE: {
+                Timestamp t = rs.getTimestamp(i);
+                return t == null ? null : new java.util.Date(t.getTime());
+            }
+            default:
+                return rs.getString(i);
+        }
+    }
+
+    // Asks what to export and where, then runs the export off the event thread
+    static void showDialog(JFrame owner, DataExport exporter) {
+        JComboBox<Dataset> dataset = new JComboBox<>(Dataset.values());
+        JComboBox<String> format = new JComboBox<>(new String[] { "CSV", "Columnar (binary)" });
+        JCheckBox gzip = new JCheckBox("Compress (gzip)");
+        JPanel p = new JPanel(new GridLayout(3, 2, 10, 10));
+        p.add(new JLabel("Data:"));
+        p.add(dataset);
+        p.add(new JLabel("Format:"));
+        p.add(format);
+        p.add(new JLabel(""));
+        p.add(gzip);
+        if (JOptionPane.showConfirmDialog(owner, p, "Export", JOptionPane.OK_CANCEL_OPTION,
+                JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION)
+            return;
+
+        Dataset ds = (Dataset) dataset.getSelectedItem();
+        boolean columnar = format.getSelectedIndex() == 1;
+        boolean zipped = gzip.isSelected();
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new File(ds.label.toLowerCase() + (columnar ? ".vrsc" : ".csv") + (zipped ? ".gz" : "")));
+        if (chooser.showSaveDialog(owner) != JFileChooser.APPROVE_OPTION)
+            return;
+        Path file = chooser.getSelectedFile().toPath();
+
+        AsyncDb.run(owner, () -> exporter.export(ds, file, columnar, zipped),
+                summary -> JOptionPane.showMessageDialog(owner, summary));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,33 @@
+import javax.swing.JOptionPane;
+
+class DatabaseManager {
+    private static final String DB_URL = "jdbc:oracle:thin:@//localhost:1521/orclpdb";
+    private static final String DB_USER = "rental";
+    private static final String DB_PASS = "rental123";
+
+    // Pool sizing, overridable with -Dvrs.pool.min=... etc.
+    private static final int POOL_MIN = Integer.getInteger("vrs.pool.min", 2);
+    private static final int POOL_MAX = Integer.getInteger("vrs.pool.max", 10);
+    private static final long BORROW_TIMEOUT_MS = Long.getLong("vrs.pool.borrowTimeoutMs", 10_000L);
+    private static final long LEAK_THRESHOLD_MS = Long.getLong("vrs.pool.leakThresholdMs", 60_000L);
+    // Prepared statements kept open per connection; 0 turns the cache off
+    private static final int STATEMENT_CACHE = Integer.getInteger("vrs.pool.statementCache", 50);
+
+    public ConnectionProvider open() throws Exception {
+        Class.forName("oracle.jdbc.driver.OracleDriver");
+        return new ConnectionPool(DB_URL, DB_USER, DB_PASS, POOL_MIN, POOL_MAX, BORROW_TIMEOUT_MS,
+                LEAK_THRESHOLD_MS, STATEMENT_CACHE);
+    }
+
+    // open(), reporting failure in a dialog and exiting
+    public ConnectionProvider connect() {
+        try {
+            return open();
+        } catch (Exception e) {
+            e.printStackTrace();
+            JOptionPane.showMessageDialog(null, "Database Connection Failed: " + e.getMessage());
+            System.exit(1);
+            return null;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,375 @@
+import javax.swing.*;
+import java.awt.*;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Imports vehicles from a CSV file (Model, Category, RentPerDay[, Available]).
+// The file is streamed a line at a time and written in batches, so memory use does
+// not grow with the file. Bad rows are reported by line number and skipped.
+class FleetImport {
+    private static final int DEFAULT_BATCH_SIZE = 500;
+    private static final int MAX_LINE_LENGTH = 4096;
+    private static final int MAX_REPORTED_ERRORS = 200;
+
+    interface Progress {
+        void update(long charsRead, long totalChars, Report soFar);
+    }
+
+    static final class Row {
+        final int line;
+        final String model;
+        final String category;
+        final double rent;
+        final String available;
+
+        Row(int line, String model, String category, double rent, String available) {
+            this.line = line;
+            this.model = model;
+            this.category = category;
+            this.rent = rent;
+            this.available = available;
+        }
+    }
+
+    static final class Report {
+        int rowsRead;
+        int imported;
+        int failed;
+        boolean cancelled;
+        String abortedBy;
+        long elapsedMs;
+        final List<String> errors = new ArrayList<>();
+
+        void fail(int line, String message) {
+            failed++;
+            if (errors.size() < MAX_REPORTED_ERRORS)
+                errors.add("Line " + line + ": " + message);
+        }
+
+        String summary() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("Imported ").append(imported).append(" of ").append(rowsRead).append(" rows");
+            if (failed > 0)
+                sb.append(", ").append(failed).append(" failed");
+            sb.append(" in ").append(elapsedMs / 1000.0).append(" s");
+            if (cancelled)
+                sb.append(" (cancelled)");
+            if (abortedBy != null)
+                sb.append("\nStopped: ").append(abortedBy);
+            return sb.toString();
+        }
+    }
+
+    private final ConnectionProvider db;
+    private final int batchSize;
+    private final FleetStats stats;
+
+    public FleetImport(ConnectionProvider db) {
+        this(db, Integer.getInteger("vrs.import.batchSize", DEFAULT_BATCH_SIZE));
+    }
+
+    public FleetImport(ConnectionProvider db, int batchSize) {
+        this.db = db;
+        this.batchSize = Math.max(1, batchSize);
+        this.stats = FleetStats.of(db, PageSources.fleet(db));
+    }
+
+    public Report run(Path file, Progress progress, AtomicBoolean cancelled) throws IOException {
+        Report report = new Report();
+        long start = System.nanoTime();
+        long total = Math.max(1, Files.size(file));
+        List<Row> batch = new ArrayList<>(batchSize);
+
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            LineReader lines = new LineReader(in);
+            String line;
+            while ((line = lines.next()) != null) {
+                if (cancelled.get()) {
+                    report.cancelled = true;
+                    break;
+                }
+                int lineNo = lines.lineNumber;
+                if (line.isBlank())
+                    continue;
+                if (lines.overlong) {
+                    report.rowsRead++;
+                    report.fail(lineNo, "line longer than " + MAX_LINE_LENGTH + " characters");
+                    continue;
+                }
+                List<String> fields = parseFields(line);
+                if (lineNo == 1 && isHeader(fields))
+                    continue;
+                report.rowsRead++;
+                Row row = validate(lineNo, fields, report);
+                if (row == null)
+                    continue;
+                batch.add(row);
+                if (batch.size() == batchSize) {
+                    writeBatch(batch, report);
+                    batch.clear();
+                    progress.update(lines.charsRead, total, report);
+                }
+            }
+            if (!batch.isEmpty() && !report.cancelled)
+                writeBatch(batch, report);
+            progress.update(total, total, report);
+        } catch (SQLException e) {
+            // Connection-level failure: keep what was committed and say where it stopped
+            e.printStackTrace();
+            report.abortedBy = e.getMessage();
+        }
+        report.elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        if (report.imported > 0)
+            reindex();
+        return report;
+    }
+
+    // Batched inserts do not hand back their VehicleIDs; the search index re-reads the catalog
+    private void reindex() {
+        try {
+            VehicleIndex.of(db, () -> PageSources.vehicles(db)).reload();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void writeBatch(List<Row> batch, Report report) throws SQLException {
+        try (Connection conn = db.getConnection();
+                PreparedStatement ps = conn.prepareStatement(Sql.VEHICLES_IMPORT)) {
+            conn.setAutoCommit(false);
+            try {
+                for (Row r : batch) {
+                    bind(ps, r);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                conn.commit();
+                report.imported += batch.size();
+                for (Row r : batch)
+                    counted(r);
+            } catch (BatchUpdateException e) {
+                // One bad row fails the whole batch; replay it row by row to find out which
+                conn.rollback();
+                ps.clearBatch();
+                for (Row r : batch) {
+                    try {
+                        bind(ps, r);
+                        ps.executeUpdate();
+                        conn.commit();
+                        report.imported++;
+                        counted(r);
+                    } catch (SQLException rowError) {
+                        conn.rollback();
+                        report.fail(r.line, rowError.getMessage());
+                    }
+                }
+            }
+        }
+    }
+
+    private void counted(Row r) {
+        stats.added(r.category, r.rent, "Y".equals(r.available));
+    }
+
+    private static void bind(PreparedStatement ps, Row r) throws SQLException {
+        ps.setString(1, r.model);
+        ps.setString(2, r.category);
+        ps.setDouble(3, r.rent);
+        ps.setString(4, r.available);
+    }
+
+    private static boolean isHeader(List<String> fields) {
+        return !fields.isEmpty() && fields.get(0).trim().equalsIgnoreCase("Model");
+    }
+
+    private static Row validate(int line, List<String> fields, Report report) {
+        if (fields.size() < 3 || fields.size() > 4) {
+            report.fail(line, "expected 3 or 4 fields, found " + fields.size());
+            return null;
+        }
+        String model = fields.get(0).trim();
+        String category = fields.get(1).trim();
+        if (model.isEmpty() || category.isEmpty()) {
+            report.fail(line, "model and category are required");
+            return null;
+        }
+        double rent;
+        try {
+            rent = Double.parseDouble(fields.get(2).trim());
+        } catch (NumberFormatException e) {
+            report.fail(line, "rent is not a number: " + fields.get(2).trim());
+            return null;
+        }
+        if (!(rent > 0) || Double.isInfinite(rent)) {
+            report.fail(line, "rent must be positive");
+            return null;
+        }
+        String available = "Y";
+        if (fields.size() == 4 && !fields.get(3).isBlank()) {
+            String a = fields.get(3).trim().toUpperCase();
+            if (a.equals("Y") || a.equals("YES"))
+                available = "Y";
+            else if (a.equals("N") || a.equals("NO"))
+                available = "N";
+            else {
+                report.fail(line, "available must be Y or N");
+                return null;
+            }
+        }
+        return new Row(line, model, category, rent, available);
+    }
+
+    // Splits one CSV line; double quotes may wrap a field and "" is a literal quote
+    static List<String> parseFields(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder cur = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char ch = line.charAt(i);
+            if (quoted) {
+                if (ch == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        cur.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    cur.append(ch);
+                }
+            } else if (ch == '"') {
+                quoted = true;
+            } else if (ch == ',') {
+                fields.add(cur.toString());
+                cur.setLength(0);
+            } else {
+                cur.append(ch);
+            }
+        }
+        fields.add(cur.toString());
+        return fields;
+    }
+
+    // readLine() with a cap: a runaway line is truncated and flagged instead of
+    // being buffered whole
+    private static final class LineReader {
+        private final Reader in;
+        private final StringBuilder buf = new StringBuilder();
+        int lineNumber;
+        long charsRead;
+        boolean overlong;
+
+        LineReader(Reader in) {
+            this.in = in;
+        }
+
+        String next() throws IOException {
+            buf.setLength(0);
+            overlong = false;
+            int ch;
+            boolean any = false;
+            while ((ch = in.read()) != -1) {
+                any = true;
+                charsRead++;
+                if (ch == '\n')
+                    break;
+                if (ch == '\r')
+                    continue;
+                if (buf.length() < MAX_LINE_LENGTH)
+                    buf.append((char) ch);
+                else
+                    overlong = true;
+            }
+            if (!any)
+                return null;
+            lineNumber++;
+            return buf.toString();
+        }
+    }
+
+    // Modal progress dialog around run(); onFinished runs once the import ends
+    static void showDialog(JFrame owner, FleetImport importer, Runnable onFinished) {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Import Fleet (Model, Category, RentPerDay[, Available])");
+        if (chooser.showOpenDialog(owner) != JFileChooser.APPROVE_OPTION)
+            return;
+        File file = chooser.getSelectedFile();
+
+        JDialog dialog = new JDialog(owner, "Importing " + file.getName(), true);
+        JProgressBar bar = new JProgressBar(0, 1000);
+        bar.setStringPainted(true);
+        JLabel status = new JLabel("Starting...");
+        JButton cancel = new JButton("Cancel");
+        AtomicBoolean cancelled = new AtomicBoolean();
+        cancel.addActionListener(e -> {
+            cancelled.set(true);
+            cancel.setEnabled(false);
+            status.setText("Cancelling after the current batch...");
+        });
+        dialog.setDefaultCloseOperation(JDialog.DO_NOTHING_ON_CLOSE);
+
+        JPanel p = new JPanel(new BorderLayout(10, 10));
+        p.setBorder(BorderFactory.createEmptyBorder(15, 15, 15, 15));
+        p.add(status, BorderLayout.NORTH);
+        p.add(bar, BorderLayout.CENTER);
+        JPanel btns = new JPanel();
+        btns.add(cancel);
+        p.add(btns, BorderLayout.SOUTH);
+        dialog.add(p);
+        dialog.setSize(420, 150);
+        dialog.setLocationRelativeTo(owner);
+
+        long started = System.nanoTime();
+        Progress progress = (read, total, soFar) -> {
+            int permille = (int) Math.min(1000, read * 1000 / total);
+            int imported = soFar.imported;
+            int failed = soFar.failed;
+            double secs = Math.max(0.001, (System.nanoTime() - started) / 1e9);
+            SwingUtilities.invokeLater(() -> {
+                bar.setValue(permille);
+                if (!cancelled.get())
+                    status.setText(String.format("%d imported, %d failed (%.0f rows/s)", imported, failed,
+                            imported / secs));
+            });
+        };
+
+        AsyncDb.run(null, () -> importer.run(file.toPath(), progress, cancelled), report -> {
+            dialog.dispose();
+            onFinished.run();
+            showReport(owner, report);
+        }, e -> {
+            dialog.dispose();
+            onFinished.run();
+            e.printStackTrace();
+            JOptionPane.showMessageDialog(owner, "Error: " + e.getMessage());
+        });
+        dialog.setVisible(true);
+    }
+
+    private static void showReport(Component owner, Report report) {
+        if (report.errors.isEmpty()) {
+            JOptionPane.showMessageDialog(owner, report.summary());
+            return;
+        }
+        JTextArea area = new JTextArea(String.join("\n", report.errors), 12, 50);
+        area.setEditable(false);
+        JPanel p = new JPanel(new BorderLayout(5, 5));
+        p.add(new JLabel("<html>" + report.summary().replace("\n", "<br>") + "</html>"), BorderLayout.NORTH);
+        p.add(new JScrollPane(area), BorderLayout.CENTER);
+        if (report.failed > report.errors.size())
+            p.add(new JLabel("(first " + report.errors.size() + " errors shown)"), BorderLayout.SOUTH);
+        JOptionPane.showMessageDialog(owner, p, "Import Fleet", JOptionPane.WARNING_MESSAGE);
+    }
+}
\ No newline at end of file
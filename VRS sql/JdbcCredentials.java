@@ -0,0 +1,73 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+// Admin and customer credential lookup in Oracle. Usernames are matched on a
+// normalized key (trimmed, lower-cased) backed by function-based indexes, and both
+// tables are checked in one round trip. Recently failed attempts are answered from
+// memory (see Credentials).
+class JdbcCredentials {
+    private final ConnectionProvider db;
+
+    public JdbcCredentials(ConnectionProvider db) {
+        this.db = db;
+    }
+
+    // The matching admin or customer, or null if the username/password pair is wrong
+    public Credentials.Login authenticate(String username, String hashedPassword) throws SQLException {
+        if (Credentials.recentlyFailed(username, hashedPassword))
+            return null;
+        String key = Credentials.normalize(username);
+        try (Connection conn = db.getConnection();
+                PreparedStatement ps = conn.prepareStatement(Sql.LOGIN_LOOKUP)) {
+            ps.setString(1, key);
+            ps.setString(2, hashedPassword);
+            ps.setString(3, key);
+            ps.setString(4, hashedPassword);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next())
+                    return new Credentials.Login(rs.getInt("IsAdmin") == 1, rs.getInt("CustomerID"),
+                            rs.getString("Name"));
+            }
+        }
+        Credentials.failed(username, hashedPassword);
+        return null;
+    }
+
+    // True if an admin or customer already uses this username, ignoring case and spacing
+    public boolean isTaken(Connection conn, String username) throws SQLException {
+        String key = Credentials.normalize(username);
+        try (PreparedStatement ps = conn.prepareStatement(Sql.LOGIN_TAKEN)) {
+            ps.setString(1, key);
+            ps.setString(2, key);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    // Function-based indexes on the normalized key, so the lookups above are index
+    // probes instead of full scans. Safe to run on every start.
+    public static void ensureIndexes(ConnectionProvider db) {
+        String[] ddl = {
+                "CREATE INDEX Admins_UsernameKey_IX ON Admins (LOWER(TRIM(Username)))",
+                "CREATE INDEX Customers_UsernameKey_IX ON Customers (LOWER(TRIM(Username)))"
+        };
+        try (Connection conn = db.getConnection(); Statement st = conn.createStatement()) {
+            for (String sql : ddl) {
+                try {
+                    st.execute(sql);
+                } catch (SQLException e) {
+                    // ORA-00955 name in use / ORA-01408 already indexed: nothing to do
+                    if (e.getErrorCode() != 955 && e.getErrorCode() != 1408)
+                        System.err.println("Login index not created (logins still work, unindexed): "
+                                + e.getMessage());
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+}
\ No newline at end of file
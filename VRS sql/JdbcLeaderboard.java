@@ -0,0 +1,62 @@
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+// The Oracle side of the Leaderboard. Customers.BookingCount is bumped in the same
+// transaction as each booking, so seeding only reads the first K rows of an index.
+class JdbcLeaderboard {
+    private JdbcLeaderboard() {
+    }
+
+    // The current top K, highest first
+    public static List<Leaderboard.Entry> top(ConnectionProvider db) throws SQLException {
+        return Leaderboard.top(k -> seed(db, k));
+    }
+
+    private static List<Leaderboard.Entry> seed(ConnectionProvider db, int k) throws SQLException {
+        try (Connection conn = db.getConnection()) {
+            return Sql.list(conn, Sql.CUSTOMERS_TOP, k, rs -> new Leaderboard.Entry(rs.getInt(1), rs.getString(2),
+                    rs.getString(3), rs.getInt(4)), k);
+        }
+    }
+
+    // Adds Customers.BookingCount and its index, and fills in every count that is
+    // missing or does not match the customer's live and archived bookings. Each step
+    // is safe to repeat, so a start cut short part way is finished by the next one.
+    // Needs BookingsArchive, so runs after BookingArchiver.ensureSchema.
+    public static void ensureSchema(ConnectionProvider db) {
+        // Added without a default so rows not yet counted read as NULL; a booking made
+        // meanwhile leaves NULL + 1 = NULL and is picked up by the count below
+        String[] ddl = {
+                "ALTER TABLE Customers ADD (BookingCount NUMBER)",
+                "ALTER TABLE Customers MODIFY (BookingCount DEFAULT 0)",
+                "CREATE INDEX Customers_BookingCount_IX ON Customers (BookingCount DESC)"
+        };
+        String count = "(SELECT COUNT(*) FROM Bookings b WHERE b.CustomerID = c.CustomerID) "
+                + "+ (SELECT COUNT(*) FROM BookingsArchive a WHERE a.CustomerID = c.CustomerID)";
+        try (Connection conn = db.getConnection(); Statement st = conn.createStatement()) {
+            for (String sql : ddl) {
+                try {
+                    st.execute(sql);
+                } catch (SQLException e) {
+                    // ORA-01430 column exists / ORA-00955 name in use: already done
+                    if (e.getErrorCode() != 1430 && e.getErrorCode() != 955)
+                        throw e;
+                }
+            }
+            int fixed = st.executeUpdate("UPDATE Customers c SET BookingCount = " + count
+                    + " WHERE BookingCount IS NULL OR BookingCount <> " + count);
+            if (fixed > 0)
+                System.out.println("Leaderboard: counted bookings for " + fixed + " customers");
+            try {
+                st.execute("ALTER TABLE Customers MODIFY (BookingCount NOT NULL)");
+            } catch (SQLException e) {
+                if (e.getErrorCode() != 1442) // ORA-01442: already NOT NULL
+                    throw e;
+            }
+        } catch (SQLException e) {
+            System.err.println("Leaderboard: booking counter not set up: " + e.getMessage());
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,249 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// RentalRepository over the Oracle schema, through the connection pool
+class JdbcRentalRepository implements RentalRepository {
+    private final ConnectionProvider db;
+    private final JdbcCredentials credentials;
+    private final BookingEngine bookings;
+    private final VehicleIndex index;
+    private final FleetStats stats;
+
+    public JdbcRentalRepository(ConnectionProvider db) {
+        this.db = db;
+        this.credentials = new JdbcCredentials(db);
+        this.bookings = new BookingEngine(db);
+        this.index = bookings.index();
+        this.stats = bookings.stats();
+    }
+
+    // --- Accounts ---
+
+    @Override
+    public Credentials.Login login(String username, String password) throws SQLException {
+        return credentials.authenticate(username, Credentials.sha256Hex(password));
+    }
+
+    @Override
+    public boolean register(String name, String mobile, String username, String password) throws SQLException {
+        try (Connection conn = db.getConnection()) {
+            if (credentials.isTaken(conn, username))
+                return false;
+            try (PreparedStatement ps = conn.prepareStatement(Sql.CUSTOMERS_INSERT)) {
+                ps.setString(1, name);
+                ps.setString(2, mobile);
+                ps.setString(3, username);
+                ps.setString(4, Credentials.sha256Hex(password));
+                ps.executeUpdate();
+            }
+        }
+        Credentials.forget(username);
+        return true;
+    }
+
+    // --- Vehicles ---
+
+    @Override
+    public PageSource vehicles() {
+        return PageSources.vehicles(db);
+    }
+
+    @Override
+    public PageSource searchVehicles(VehicleIndex.Query query) {
+        return index.search(query);
+    }
+
+    @Override
+    public VehicleIndex.Facets vehicleFacets() throws Exception {
+        return index.facets();
+    }
+
+    @Override
+    public void addVehicle(String model, String category, double rent) throws SQLException {
+        // Not through the statement cache: the new VehicleID comes back as a generated key
+        try (Connection conn = db.getConnection();
+                PreparedStatement ps = conn.prepareStatement(Sql.VEHICLES_INSERT, new String[] { "VehicleID" })) {
+            ps.setString(1, model);
+            ps.setString(2, category);
+            ps.setDouble(3, rent);
+            ps.executeUpdate();
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                if (keys.next())
+                    index.added(keys.getInt(1), model, category, rent, true);
+            }
+        }
+        stats.added(category, rent, true);
+    }
+
+    @Override
+    public void updateVehicle(int vehicleId, String model, String category, double rent) throws SQLException {
+        try (Connection conn = db.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                Object[] was = lockVehicle(conn, vehicleId);
+                try (PreparedStatement ps = conn.prepareStatement(Sql.VEHICLES_UPDATE)) {
+                    ps.setString(1, model);
+                    ps.setString(2, category);
+                    ps.setDouble(3, rent);
+                    ps.setInt(4, vehicleId);
+                    ps.executeUpdate();
+                }
+                conn.commit();
+                if (was != null) {
+                    stats.changed((String) was[0], (double) was[1], category, rent, (boolean) was[2]);
+                    index.changed(vehicleId, model, category, rent);
+                }
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public void deleteVehicle(int vehicleId) throws SQLException {
+        try (Connection conn = db.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                Object[] was = lockVehicle(conn, vehicleId);
+                try (PreparedStatement ps = conn.prepareStatement(Sql.VEHICLES_DELETE)) {
+                    ps.setInt(1, vehicleId);
+                    ps.executeUpdate();
+                }
+                conn.commit();
+                if (was != null) {
+                    stats.removed((String) was[0], (double) was[1], (boolean) was[2]);
+                    index.removed(vehicleId);
+                }
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    // {Category, RentPerDay, available} of a vehicle, row-locked until the transaction ends
+    private static Object[] lockVehicle(Connection conn, int vid) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(Sql.VEHICLES_LOCK)) {
+            ps.setInt(1, vid);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? new Object[] { rs.getString(1), rs.getDouble(2), "Y".equals(rs.getString(3)) }
+                        : null;
+            }
+        }
+    }
+
+    // --- Bookings ---
+
+    @Override
+    public BookingOutcome book(int customerId, int vehicleId) throws SQLException {
+        return bookings.book(customerId, vehicleId);
+    }
+
+    @Override
+    public BookingOutcome returnVehicle(int customerId, int vehicleId) throws SQLException {
+        return bookings.returnVehicle(customerId, vehicleId);
+    }
+
+    @Override
+    public Set<Integer> activeVehicles(int customerId) throws SQLException {
+        try (Connection conn = db.getConnection()) {
+            return new HashSet<>(Sql.list(conn, Sql.BOOKINGS_ACTIVE_FOR_CUSTOMER, 0, rs -> rs.getInt(1), customerId));
+        }
+    }
+
+    @Override
+    public List<Object[]> history(int customerId) throws SQLException {
+        try (Connection conn = db.getConnection()) {
+            return Sql.list(conn, Sql.BOOKINGS_HISTORY, 0, rs -> new Object[] { rs.getInt(1), rs.getString(2),
+                    rs.getString(3), rs.getTimestamp(4), rs.getTimestamp(5) }, customerId, customerId);
+        }
+    }
+
+    @Override
+    public PageSource bookings(String statusFilter) {
+        return PageSources.bookings(db, statusFilter);
+    }
+
+    @Override
+    public boolean bookingExists(int bookingId) throws SQLException {
+        try (Connection conn = db.getConnection();
+                PreparedStatement ps = conn.prepareStatement(Sql.BOOKINGS_EXISTS)) {
+            ps.setInt(1, bookingId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() && rs.getInt(1) > 0;
+            }
+        }
+    }
+
+    // --- Payments ---
+
+    @Override
+    public List<Object[]> payments(int customerId, Object[] after, int limit) throws SQLException {
+        Sql.RowMapper<Object[]> row = rs -> new Object[] { rs.getInt(1), rs.getString(2), rs.getDouble(3),
+                rs.getString(4), rs.getTimestamp(5) };
+        try (Connection conn = db.getConnection()) {
+            if (after == null)
+                return Sql.list(conn, Sql.PAYMENTS_PAGE, limit, row, customerId, limit, customerId, limit, limit);
+            Timestamp date = new Timestamp(((java.util.Date) after[4]).getTime());
+            return Sql.list(conn, Sql.PAYMENTS_PAGE_AFTER, limit, row, customerId, date, date, after[0], limit,
+                    customerId, date, date, after[0], limit, limit);
+        }
+    }
+
+    @Override
+    public boolean recordPayment(int bookingId, double amount, String method) throws SQLException {
+        try (Connection conn = db.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                // Archiving and customer deletion lock the booking too, so it stays put until this commits
+                if (Sql.list(conn, Sql.BOOKINGS_LOCK, 0, rs -> rs.getInt(1), bookingId).isEmpty()) {
+                    conn.rollback();
+                    return false;
+                }
+                try (PreparedStatement ps = conn.prepareStatement(Sql.PAYMENTS_INSERT)) {
+                    ps.setInt(1, bookingId);
+                    ps.setDouble(2, amount);
+                    ps.setString(3, method);
+                    ps.executeUpdate();
+                }
+                conn.commit();
+                return true;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    // --- Customers and reports ---
+
+    @Override
+    public List<Object[]> customers() throws SQLException {
+        try (Connection conn = db.getConnection()) {
+            return Sql.list(conn, Sql.CUSTOMERS_LIST, 0,
+                    rs -> new Object[] { rs.getInt(1), rs.getString(2), rs.getString(3), rs.getString(4) });
+        }
+    }
+
+    @Override
+    public void deleteCustomer(int customerId, Progress progress) throws SQLException, InterruptedException {
+        new CustomerPurge(db, bookings).run(customerId, progress);
+    }
+
+    @Override
+    public String fleetReport() {
+        return stats.report();
+    }
+
+    @Override
+    public List<Leaderboard.Entry> topCustomers() throws SQLException {
+        return JdbcLeaderboard.top(db);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,98 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Keyset-paginated queries behind the fleet and booking grids, and the grouped read
+// behind the fleet report
+class PageSources {
+    private PageSources() {
+    }
+
+    static FleetStats.Loader fleet(ConnectionProvider db) {
+        return () -> {
+            Map<FleetStats.Cell, Long> counts = new HashMap<>();
+            try (Connection conn = db.getConnection();
+                    PreparedStatement ps = conn.prepareStatement(Sql.VEHICLES_STATS);
+                    ResultSet rs = ps.executeQuery()) {
+                while (rs.next())
+                    counts.merge(new FleetStats.Cell(rs.getString(1), rs.getDouble(2), "Y".equals(rs.getString(3))),
+                            rs.getLong(4), Long::sum);
+            }
+            return counts;
+        };
+    }
+
+    static PageSource vehicles(ConnectionProvider db) {
+        return new PageSource() {
+            @Override
+            public int count() throws SQLException {
+                try (Connection conn = db.getConnection();
+                        PreparedStatement ps = conn.prepareStatement(Sql.VEHICLES_COUNT);
+                        ResultSet rs = ps.executeQuery()) {
+                    return rs.next() ? rs.getInt(1) : 0;
+                }
+            }
+
+            @Override
+            public List<Object[]> fetch(Integer afterKey, int skip, int limit) throws SQLException {
+                Sql.RowMapper<Object[]> row = rs -> new Object[] {
+                        rs.getInt(1), rs.getString(2), rs.getString(3), rs.getDouble(4),
+                        "Y".equals(rs.getString(5)) ? "Yes" : "No"
+                };
+                try (Connection conn = db.getConnection()) {
+                    if (afterKey != null)
+                        return Sql.list(conn, Sql.VEHICLES_PAGE_AFTER, limit, row, afterKey, skip, limit);
+                    return Sql.list(conn, Sql.VEHICLES_PAGE, limit, row, skip, limit);
+                }
+            }
+        };
+    }
+
+    // Newest first; statusFilter is "ALL" or a Bookings.Status value
+    static PageSource bookings(ConnectionProvider db, String statusFilter) {
+        boolean filtered = !"ALL".equals(statusFilter);
+        return new PageSource() {
+            @Override
+            public int count() throws SQLException {
+                try (Connection conn = db.getConnection();
+                        PreparedStatement ps = conn.prepareStatement(
+                                filtered ? Sql.BOOKINGS_COUNT_BY_STATUS : Sql.BOOKINGS_COUNT)) {
+                    if (filtered)
+                        ps.setString(1, statusFilter);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        return rs.next() ? rs.getInt(1) : 0;
+                    }
+                }
+            }
+
+            @Override
+            public List<Object[]> fetch(Integer afterKey, int skip, int limit) throws SQLException {
+                String sql = filtered
+                        ? (afterKey != null ? Sql.BOOKINGS_PAGE_BY_STATUS_AFTER : Sql.BOOKINGS_PAGE_BY_STATUS)
+                        : (afterKey != null ? Sql.BOOKINGS_PAGE_AFTER : Sql.BOOKINGS_PAGE);
+
+                List<Object> binds = new ArrayList<>(4);
+                if (filtered)
+                    binds.add(statusFilter);
+                if (afterKey != null)
+                    binds.add(afterKey);
+                binds.add(skip);
+                binds.add(limit);
+                try (Connection conn = db.getConnection()) {
+                    return Sql.list(conn, sql, limit, rs -> new Object[] {
+                            rs.getInt("BookingID"),
+                            rs.getString("Name"),
+                            rs.getString("Model"),
+                            rs.getString("Status"),
+                            rs.getTimestamp("BookingDate")
+                    }, binds.toArray());
+                }
+            }
+        };
+    }
+}
\ No newline at end of file
@@ -0,0 +1,262 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Every statement the app prepares, by name. Statements are reused from the pool's
+// per-connection cache, so the text of each must be fixed: anything that varies goes
+// in a bind parameter, and queries with optional clauses get one entry per variant.
+final class Sql {
+    private static final Map<String, String> names = new LinkedHashMap<>();
+
+    private Sql() {
+    }
+
+    private static String def(String name, String sql) {
+        if (names.putIfAbsent(sql, name) != null)
+            throw new IllegalStateException("Duplicate SQL for " + name);
+        return sql;
+    }
+
+    // The catalog name of a statement, or null for SQL that is not in the catalog
+    static String nameOf(String sql) {
+        return names.get(sql);
+    }
+
+    static Map<String, String> all() {
+        return Collections.unmodifiableMap(names);
+    }
+
+    interface RowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    // Runs a catalog query with the given bind values and maps every row. Execution,
+    // cursor iteration and row mapping are traced as separate spans of the current
+    // action. A fetchSize of 0 leaves the driver default.
+    @SuppressWarnings("try")
+    static <T> List<T> list(Connection conn, String sql, int fetchSize, RowMapper<T> mapper, Object... binds)
+            throws SQLException {
+        List<T> rows = new ArrayList<>(fetchSize > 0 ? fetchSize : 10);
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (int i = 0; i < binds.length; i++)
+                ps.setObject(i + 1, binds[i]);
+            if (fetchSize > 0)
+                ps.setFetchSize(fetchSize);
+            ResultSet rs;
+            try (Trace.Span s = Trace.span("execute " + nameOf(sql), sql, binds)) {
+                rs = ps.executeQuery();
+            }
+            try (ResultSet open = rs) {
+                long fetching = 0;
+                long mapping = 0;
+                while (true) {
+                    long t0 = System.nanoTime();
+                    boolean more = open.next();
+                    long t1 = System.nanoTime();
+                    fetching += t1 - t0;
+                    if (!more)
+                        break;
+                    rows.add(mapper.map(open));
+                    mapping += System.nanoTime() - t1;
+                }
+                Trace.add("fetch", fetching, rows.size() + " rows");
+                Trace.add("map", mapping);
+            }
+        }
+        return rows;
+    }
+
+    // --- Logins ---
+
+    // Admin rows sort first, so an admin wins over a customer with the same login
+    static final String LOGIN_LOOKUP = def("credentials.lookup",
+            "SELECT 1 AS IsAdmin, 0 AS CustomerID, CAST(NULL AS VARCHAR2(100)) AS Name "
+                    + "FROM Admins WHERE LOWER(TRIM(Username)) = ? AND HashedPassword = ? "
+                    + "UNION ALL "
+                    + "SELECT 0, CustomerID, Name FROM Customers WHERE LOWER(TRIM(Username)) = ? AND HashedPassword = ? "
+                    + "ORDER BY 1 DESC");
+    static final String LOGIN_TAKEN = def("credentials.taken",
+            "SELECT 1 FROM Admins WHERE LOWER(TRIM(Username)) = ? "
+                    + "UNION ALL SELECT 1 FROM Customers WHERE LOWER(TRIM(Username)) = ?");
+
+    // --- Vehicles ---
+
+    static final String VEHICLES_COUNT = def("vehicles.count", "SELECT COUNT(*) FROM Vehicles");
+    private static final String VEHICLES_COLUMNS = "SELECT VehicleID, Model, Category, RentPerDay, Available FROM Vehicles ";
+    static final String VEHICLES_PAGE = def("vehicles.page",
+            VEHICLES_COLUMNS + "ORDER BY VehicleID OFFSET ? ROWS FETCH NEXT ? ROWS ONLY");
+    static final String VEHICLES_PAGE_AFTER = def("vehicles.pageAfter",
+            VEHICLES_COLUMNS + "WHERE VehicleID > ? ORDER BY VehicleID OFFSET ? ROWS FETCH NEXT ? ROWS ONLY");
+    static final String VEHICLES_INSERT = def("vehicles.insert",
+            "INSERT INTO Vehicles (Model, Category, RentPerDay, Available) VALUES (?, ?, ?, 'Y')");
+    static final String VEHICLES_IMPORT = def("vehicles.import",
+            "INSERT INTO Vehicles (Model, Category, RentPerDay, Available) VALUES (?, ?, ?, ?)");
+    static final String VEHICLES_UPDATE = def("vehicles.update",
+            "UPDATE Vehicles SET Model=?, Category=?, RentPerDay=? WHERE VehicleID=?");
+    static final String VEHICLES_DELETE = def("vehicles.delete", "DELETE FROM Vehicles WHERE VehicleID=?");
+    static final String VEHICLES_LOCK = def("vehicles.lock",
+            "SELECT Category, RentPerDay, Available FROM Vehicles WHERE VehicleID=? FOR UPDATE");
+    static final String VEHICLES_CELL = def("vehicles.cell",
+            "SELECT Category, RentPerDay FROM Vehicles WHERE VehicleID=?");
+    static final String VEHICLES_CLAIM = def("vehicles.claim",
+            "UPDATE Vehicles SET Available='N' WHERE VehicleID=? AND Available='Y'");
+    static final String VEHICLES_RELEASE = def("vehicles.release",
+            "UPDATE Vehicles SET Available='Y' WHERE VehicleID=? AND Available='N'");
+    static final String VEHICLES_STATS = def("vehicles.stats",
+            "SELECT Category, RentPerDay, Available, COUNT(*) FROM Vehicles GROUP BY Category, RentPerDay, Available");
+
+    // --- Bookings ---
+
+    static final String BOOKINGS_COUNT = def("bookings.count", "SELECT COUNT(*) FROM Bookings");
+    static final String BOOKINGS_COUNT_BY_STATUS = def("bookings.countByStatus",
+            "SELECT COUNT(*) FROM Bookings WHERE Status = ?");
+    private static final String BOOKINGS_COLUMNS = "SELECT b.BookingID, c.Name, v.Model, b.Status, b.BookingDate "
+            + "FROM Bookings b "
+            + "JOIN Customers c ON b.CustomerID = c.CustomerID "
+            + "JOIN Vehicles v ON b.VehicleID = v.VehicleID ";
+    private static final String BOOKINGS_ORDER = "ORDER BY b.BookingID DESC OFFSET ? ROWS FETCH NEXT ? ROWS ONLY";
+    static final String BOOKINGS_PAGE = def("bookings.page", BOOKINGS_COLUMNS + BOOKINGS_ORDER);
+    static final String BOOKINGS_PAGE_AFTER = def("bookings.pageAfter",
+            BOOKINGS_COLUMNS + "WHERE b.BookingID < ? " + BOOKINGS_ORDER);
+    static final String BOOKINGS_PAGE_BY_STATUS = def("bookings.pageByStatus",
+            BOOKINGS_COLUMNS + "WHERE b.Status = ? " + BOOKINGS_ORDER);
+    static final String BOOKINGS_PAGE_BY_STATUS_AFTER = def("bookings.pageByStatusAfter",
+            BOOKINGS_COLUMNS + "WHERE b.Status = ? AND b.BookingID < ? " + BOOKINGS_ORDER);
+    static final String BOOKINGS_ACTIVE_FOR_CUSTOMER = def("bookings.activeForCustomer",
+            "SELECT VehicleID FROM Bookings WHERE CustomerID=? AND Status='Booked'");
+    // Live and archived bookings together
+    static final String BOOKINGS_HISTORY = def("bookings.history",
+            "SELECT b.BookingID, v.Model, b.Status, b.BookingDate, b.ReturnDate FROM Bookings b "
+                    + "JOIN Vehicles v ON b.VehicleID=v.VehicleID WHERE b.CustomerID=? "
+                    + "UNION ALL SELECT a.BookingID, v.Model, a.Status, a.BookingDate, a.ReturnDate FROM BookingsArchive a "
+                    + "JOIN Vehicles v ON a.VehicleID=v.VehicleID WHERE a.CustomerID=? ORDER BY 1 DESC");
+    static final String BOOKINGS_EXISTS = def("bookings.exists", "SELECT COUNT(*) FROM Bookings WHERE BookingID=?");
+    // Held while a payment is recorded, so the booking cannot be archived or deleted meanwhile
+    static final String BOOKINGS_LOCK = def("bookings.lock", "SELECT BookingID FROM Bookings WHERE BookingID=? FOR UPDATE");
+    static final String BOOKINGS_INSERT = def("bookings.insert",
+            "INSERT INTO Bookings (CustomerID, VehicleID, Status) VALUES (?, ?, 'Booked')");
+    static final String BOOKINGS_RETURN = def("bookings.return",
+            "UPDATE Bookings SET Status='Returned', ReturnDate=SYSDATE WHERE VehicleID=? AND CustomerID=? AND Status='Booked'");
+    static final String BOOKINGS_COUNT_FOR_CUSTOMER = def("bookings.countForCustomer",
+            "SELECT COUNT(*) FROM Bookings WHERE CustomerID=?");
+    // Customer deletion works through finished bookings a chunk at a time, lowest ID first
+    static final String BOOKINGS_CHUNK_END = def("bookings.chunkEnd",
+            "SELECT MAX(BookingID) FROM (SELECT BookingID FROM Bookings WHERE CustomerID=? AND Status<>'Booked' "
+                    + "ORDER BY BookingID FETCH FIRST ? ROWS ONLY)");
+    static final String BOOKINGS_LOCK_CHUNK = def("bookings.lockChunk",
+            "SELECT BookingID FROM Bookings WHERE CustomerID=? AND BookingID<=? FOR UPDATE");
+    static final String BOOKINGS_DELETE_CHUNK = def("bookings.deleteChunk",
+            "DELETE FROM Bookings WHERE CustomerID=? AND Status<>'Booked' AND BookingID<=?");
+    static final String BOOKINGS_EXPORT = def("bookings.export",
+            "SELECT BookingID, CustomerID, VehicleID, BookingDate, ReturnDate, Status FROM Bookings");
+
+    // --- Payments ---
+
+    // A page is the newest rows of the live and the archived payments together; each
+    // side is cut to the page size first, on its own index
+    private static final String PAYMENTS_COLUMNS = "SELECT p.PaymentID, v.Model, p.Amount, p.PaymentMethod, p.PaymentDate ";
+    private static final String PAYMENTS_LIVE = PAYMENTS_COLUMNS
+            + "FROM Payments p JOIN Bookings b ON p.BookingID=b.BookingID JOIN Vehicles v ON b.VehicleID=v.VehicleID "
+            + "WHERE b.CustomerID=? ";
+    private static final String PAYMENTS_ARCHIVED = PAYMENTS_COLUMNS
+            + "FROM PaymentsArchive p JOIN BookingsArchive b ON p.BookingID=b.BookingID "
+            + "JOIN Vehicles v ON b.VehicleID=v.VehicleID WHERE b.CustomerID=? ";
+    private static final String PAYMENTS_AFTER = "AND (p.PaymentDate < ? OR (p.PaymentDate = ? AND p.PaymentID < ?)) ";
+    private static final String PAYMENTS_ORDER = "ORDER BY PaymentDate DESC, PaymentID DESC FETCH FIRST ? ROWS ONLY";
+
+    private static String paymentsPage(String after) {
+        return "SELECT * FROM (" + PAYMENTS_LIVE + after + "ORDER BY p.PaymentDate DESC, p.PaymentID DESC "
+                + "FETCH FIRST ? ROWS ONLY) UNION ALL SELECT * FROM (" + PAYMENTS_ARCHIVED + after
+                + "ORDER BY p.PaymentDate DESC, p.PaymentID DESC FETCH FIRST ? ROWS ONLY) " + PAYMENTS_ORDER;
+    }
+
+    static final String PAYMENTS_PAGE = def("payments.page", paymentsPage(""));
+    static final String PAYMENTS_PAGE_AFTER = def("payments.pageAfter", paymentsPage(PAYMENTS_AFTER));
+    static final String PAYMENTS_INSERT = def("payments.insert",
+            "INSERT INTO Payments (BookingID, Amount, PaymentMethod) VALUES (?, ?, ?)");
+    static final String PAYMENTS_DELETE_CHUNK = def("payments.deleteChunk",
+            "DELETE FROM Payments WHERE BookingID IN "
+                    + "(SELECT BookingID FROM Bookings WHERE CustomerID=? AND Status<>'Booked' AND BookingID<=?)");
+    static final String PAYMENTS_EXPORT = def("payments.export",
+            "SELECT PaymentID, BookingID, Amount, PaymentMethod, PaymentDate FROM Payments");
+
+    // --- Archive ---
+
+    // Bookings returned before the cutoff (bind 1) move a chunk at a time, up to the
+    // chunk's last BookingID (bind 2)
+    private static final String ARCHIVE_DUE = "FROM Bookings WHERE Status='Returned' AND ReturnDate < ? AND BookingID <= ?";
+    static final String ARCHIVE_CHUNK_END = def("archive.chunkEnd",
+            "SELECT MAX(BookingID) FROM (SELECT BookingID FROM Bookings WHERE Status='Returned' AND ReturnDate < ? "
+                    + "ORDER BY BookingID FETCH FIRST ? ROWS ONLY)");
+    // Held for the chunk's transaction; recording a payment locks its booking too, so
+    // none can be added to a booking between its copy and its delete
+    static final String ARCHIVE_LOCK_CHUNK = def("archive.lockChunk", "SELECT BookingID " + ARCHIVE_DUE + " FOR UPDATE");
+    static final String ARCHIVE_COPY_BOOKINGS = def("archive.copyBookings",
+            "INSERT INTO BookingsArchive (BookingID, CustomerID, VehicleID, BookingDate, ReturnDate, Status) "
+                    + "SELECT BookingID, CustomerID, VehicleID, BookingDate, ReturnDate, Status " + ARCHIVE_DUE);
+    static final String ARCHIVE_COPY_PAYMENTS = def("archive.copyPayments",
+            "INSERT INTO PaymentsArchive (PaymentID, BookingID, Amount, PaymentMethod, PaymentDate) "
+                    + "SELECT PaymentID, BookingID, Amount, PaymentMethod, PaymentDate FROM Payments "
+                    + "WHERE BookingID IN (SELECT BookingID " + ARCHIVE_DUE + ")");
+    // Only payments that made it into the archive are deleted
+    static final String ARCHIVE_DELETE_PAYMENTS = def("archive.deletePayments",
+            "DELETE FROM Payments WHERE PaymentID IN (SELECT PaymentID FROM PaymentsArchive "
+                    + "WHERE BookingID IN (SELECT BookingID " + ARCHIVE_DUE + "))");
+    static final String ARCHIVE_DELETE_BOOKINGS = def("archive.deleteBookings", "DELETE " + ARCHIVE_DUE);
+    // Customer deletion clears their archived bookings the same way, a chunk at a time
+    static final String ARCHIVE_COUNT_FOR_CUSTOMER = def("archive.countForCustomer",
+            "SELECT COUNT(*) FROM BookingsArchive WHERE CustomerID=?");
+    static final String ARCHIVE_CUSTOMER_CHUNK_END = def("archive.customerChunkEnd",
+            "SELECT MAX(BookingID) FROM (SELECT BookingID FROM BookingsArchive WHERE CustomerID=? "
+                    + "ORDER BY BookingID FETCH FIRST ? ROWS ONLY)");
+    static final String ARCHIVE_DELETE_PAYMENTS_CHUNK = def("archive.deletePaymentsChunk",
+            "DELETE FROM PaymentsArchive WHERE BookingID IN "
+                    + "(SELECT BookingID FROM BookingsArchive WHERE CustomerID=? AND BookingID<=?)");
+    static final String ARCHIVE_DELETE_BOOKINGS_CHUNK = def("archive.deleteBookingsChunk",
+            "DELETE FROM BookingsArchive WHERE CustomerID=? AND BookingID<=?");
+
+    // --- Customers ---
+
+    static final String CUSTOMERS_INSERT = def("customers.insert",
+            "INSERT INTO Customers (Name, MobileNumber, Username, HashedPassword) VALUES (?, ?, ?, ?)");
+    static final String CUSTOMERS_LIST = def("customers.list",
+            "SELECT CustomerID, Name, MobileNumber, Username FROM Customers");
+    static final String CUSTOMERS_DELETE = def("customers.delete", "DELETE FROM Customers WHERE CustomerID=?");
+    static final String CUSTOMERS_COUNT_BOOKING = def("customers.countBooking",
+            "UPDATE Customers SET BookingCount = BookingCount + 1 WHERE CustomerID=?");
+    static final String CUSTOMERS_ENTRY = def("customers.leaderboardEntry",
+            "SELECT Name, MobileNumber, BookingCount FROM Customers WHERE CustomerID=?");
+    static final String CUSTOMERS_TOP = def("customers.top",
+            "SELECT CustomerID, Name, MobileNumber, BookingCount FROM Customers "
+                    + "WHERE BookingCount > 0 ORDER BY BookingCount DESC FETCH FIRST ? ROWS ONLY");
+
+    // --- BookingStress ---
+
+    // Its throw-away vehicles and customers are tagged through Model and Name (bind 1)
+    static final String STRESS_VEHICLES_INSERT = def("stress.vehiclesInsert",
+            "INSERT INTO Vehicles (Model, Category, RentPerDay, Available) VALUES (?, 'Stress', 1, 'Y')");
+    static final String STRESS_CUSTOMERS_INSERT = def("stress.customersInsert",
+            "INSERT INTO Customers (Name, MobileNumber, Username, HashedPassword) VALUES (?, '-', ?, '-')");
+    static final String STRESS_VEHICLE_IDS = def("stress.vehicleIds", "SELECT VehicleID FROM Vehicles WHERE Model=?");
+    static final String STRESS_CUSTOMER_IDS = def("stress.customerIds", "SELECT CustomerID FROM Customers WHERE Name=?");
+    static final String STRESS_DOUBLE_BOOKINGS = def("stress.doubleBookings",
+            "SELECT COUNT(*) FROM (SELECT b.VehicleID FROM Bookings b JOIN Vehicles v ON b.VehicleID = v.VehicleID "
+                    + "WHERE v.Model=? AND b.Status='Booked' GROUP BY b.VehicleID HAVING COUNT(*) > 1)");
+    static final String STRESS_DELETE_BOOKINGS = def("stress.deleteBookings",
+            "DELETE FROM Bookings WHERE VehicleID IN (SELECT VehicleID FROM Vehicles WHERE Model=?)");
+    static final String STRESS_DELETE_VEHICLES = def("stress.deleteVehicles", "DELETE FROM Vehicles WHERE Model=?");
+    static final String STRESS_DELETE_CUSTOMERS = def("stress.deleteCustomers", "DELETE FROM Customers WHERE Name=?");
+
+    // --- Customer deletions in progress ---
+
+    static final String PURGES_START = def("purges.start", "INSERT INTO CustomerPurges (CustomerID) VALUES (?)");
+    static final String PURGES_DONE = def("purges.done", "DELETE FROM CustomerPurges WHERE CustomerID=?");
+    static final String PURGES_PENDING = def("purges.pending",
+            "SELECT CustomerID FROM CustomerPurges ORDER BY StartedAt");
+}
\ No newline at end of file
@@ -1,57 +1,133 @@
 import javax.swing.*;
-import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
-import java.security.MessageDigest;
 import java.sql.*;
-import java.util.HexFormat;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public class VehicleRentalSystem {
+    // This edition's database backend
+    static final String DATABASE = "oracle";
+
+    // Where the data lives: "oracle" (the default) or "memory" for an in-process store
+    // that starts empty and is lost on exit
+    static final String BACKEND = System.getProperty("vrs.backend", DATABASE);
+
+    // "--serve [port]" runs the headless HTTP API instead of the Swing client, and
+    // -Dvrs.api=http://host:port points the Swing client at such a server instead of
+    // the database
     public static void main(String[] args) {
+        if (!BACKEND.equals(DATABASE) && !BACKEND.equals("memory")) {
+            System.err.println("Unknown vrs.backend '" + BACKEND + "' (expected oracle or memory)");
+            System.exit(2);
+        }
+        if (args.length > 0 && args[0].equals("--serve")) {
+            serve(args.length > 1 ? Integer.parseInt(args[1])
+                    : Integer.getInteger("vrs.api.port", ApiServer.DEFAULT_PORT));
+            return;
+        }
+        String api = System.getProperty("vrs.api");
         SwingUtilities.invokeLater(() -> {
+            if (api != null) {
+                new AuthenticationSystem(instrumented(new HttpRentalRepository(api)), null).showWelcome();
+                return;
+            }
+            if (BACKEND.equals("memory")) {
+                new AuthenticationSystem(instrumented(new InMemoryRentalRepository()), null).showWelcome();
+                return;
+            }
             DatabaseManager dbManager = new DatabaseManager();
-            Connection conn = dbManager.connect();
-
-            if (conn != null) {
-                new AuthenticationSystem(conn).showWelcome();
+            ConnectionProvider db = dbManager.connect();
+
+            if (db != null) {
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    System.out.println(db.stats());
+                    db.close();
+                }));
+                AsyncDb.run(null, () -> {
+                    bootstrap(db);
+                    return null;
+                }, ignored -> {
+                }, Throwable::printStackTrace);
+                new AuthenticationSystem(instrumented(new JdbcRentalRepository(db)), db).showWelcome();
             }
         });
     }
-}
 
-class DatabaseManager {
-    private static final String DB_URL = "jdbc:oracle:thin:@//localhost:1521/orclpdb";
-    private static final String DB_USER = "rental";
-    private static final String DB_PASS = "rental123";
+    // Schema upgrades and in-memory caches every entry point needs
+    static void bootstrap(ConnectionProvider db) {
+        JdbcCredentials.ensureIndexes(db);
+        CustomerPurge.ensureSchema(db);
+        BookingArchiver.ensureSchema(db);
+        JdbcLeaderboard.ensureSchema(db);
+        FleetStats.of(db, PageSources.fleet(db));
+        VehicleIndex.of(db, () -> PageSources.vehicles(db));
+        CustomerPurge.resumePending(db);
+        BookingArchiver.schedule(db);
+    }
 
-    public Connection connect() {
+    // Timed into Metrics, for JMX, dumps and the admin Diagnostics dialog
+    static RentalRepository instrumented(RentalRepository repo) {
+        return new InstrumentedRentalRepository(repo);
+    }
+
+    // A ready-to-use repository for a backend name, for headless tools
+    static RentalRepository openBackend(String backend) throws Exception {
+        if (backend.equals("memory"))
+            return new InMemoryRentalRepository();
+        if (!backend.equals(DATABASE))
+            throw new IllegalArgumentException("Unknown backend '" + backend + "'");
+        ConnectionProvider db = new DatabaseManager().open();
+        bootstrap(db);
+        return new JdbcRentalRepository(db);
+    }
+
+    private static void serve(int port) {
+        if (BACKEND.equals("memory")) {
+            ApiServer server = new ApiServer(instrumented(new InMemoryRentalRepository()));
+            try {
+                server.start(port);
+            } catch (java.io.IOException e) {
+                e.printStackTrace();
+                System.exit(1);
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+            return;
+        }
+        ConnectionProvider db;
         try {
-            Class.forName("oracle.jdbc.driver.OracleDriver");
-            return DriverManager.getConnection(DB_URL, DB_USER, DB_PASS);
+            db = new DatabaseManager().open();
         } catch (Exception e) {
             e.printStackTrace();
-            JOptionPane.showMessageDialog(null, "Database Connection Failed: " + e.getMessage());
             System.exit(1);
-            return null;
+            return;
+        }
+        bootstrap(db);
+        ApiServer server = new ApiServer(instrumented(new JdbcRentalRepository(db)));
+        try {
+            server.start(port);
+        } catch (java.io.IOException e) {
+            e.printStackTrace();
+            db.close();
+            System.exit(1);
         }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            System.out.println(db.stats());
+            db.close();
+        }));
     }
 }
 
 class AuthenticationSystem {
-    private final Connection conn;
+    private final RentalRepository repo;
+    private final ConnectionProvider db; // null when running against the HTTP API
 
-    public AuthenticationSystem(Connection conn) {
-        this.conn = conn;
-    }
-
-    private String sha256Hex(String input) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            byte[] digest = md.digest(input.getBytes("UTF-8"));
-            return HexFormat.of().formatHex(digest);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
+    public AuthenticationSystem(RentalRepository repo, ConnectionProvider db) {
+        this.repo = repo;
+        this.db = db;
     }
 
     public void showWelcome() {
@@ -128,42 +204,21 @@ class AuthenticationSystem {
                 return;
             }
 
-            try {
-                String hashedPassword = sha256Hex(password);
-
-                try (PreparedStatement ps = conn.prepareStatement(
-                        "SELECT AdminID FROM Admins WHERE TRIM(Username) = ? AND HashedPassword = ?")) {
-                    ps.setString(1, username);
-                    ps.setString(2, hashedPassword);
-                    try (ResultSet rs = ps.executeQuery()) {
-                        if (rs.next()) {
-                            frame.dispose();
-                            new AdminDashboard(conn).show(); // OOP: Instantiate Admin Object
-                            return;
-                        }
-                    }
-                }
-
-                try (PreparedStatement ps = conn.prepareStatement(
-                        "SELECT CustomerID, Name FROM Customers WHERE TRIM(Username) = ? AND HashedPassword = ?")) {
-                    ps.setString(1, username);
-                    ps.setString(2, hashedPassword);
-                    try (ResultSet rs = ps.executeQuery()) {
-                        if (rs.next()) {
-                            int customerId = rs.getInt("CustomerID");
-                            String customerName = rs.getString("Name");
-                            frame.dispose();
-                            new CustomerDashboard(conn, customerId, customerName).show(); 
-                                                                                          
-                        }
-                    }
+            statusLabel.setText(" ");
+            AsyncDb.run(frame, () -> repo.login(username, password), login -> {
+                if (login == null) {
+                    statusLabel.setText("Invalid credentials.");
+                    return;
                 }
-
-                statusLabel.setText("Invalid credentials.");
-            } catch (Exception ex) {
+                frame.dispose();
+                if (login.admin)
+                    new AdminDashboard(repo, db).show(); // OOP: Instantiate Admin Object
+                else
+                    new CustomerDashboard(repo, db, login.customerId, login.name).show();
+            }, ex -> {
                 ex.printStackTrace();
                 statusLabel.setText("Error: " + ex.getMessage());
-            }
+            });
         });
 
         backBtn.addActionListener(e -> {
@@ -230,36 +285,18 @@ class AuthenticationSystem {
                 return;
             }
 
-            try {
-                // Check Username
-                try (PreparedStatement ps = conn
-                        .prepareStatement("SELECT COUNT(*) FROM Customers WHERE Username = ?")) {
-                    ps.setString(1, username);
-                    ResultSet rs = ps.executeQuery();
-                    if (rs.next() && rs.getInt(1) > 0) {
-                        statusLabel.setText("Username exists.");
-                        return;
-                    }
-                }
-
-                // Insert
-                try (PreparedStatement ps = conn.prepareStatement(
-                        "INSERT INTO Customers (Name, MobileNumber, Username, HashedPassword) VALUES (?, ?, ?, ?)")) {
-                    ps.setString(1, name);
-                    ps.setString(2, mobile);
-                    ps.setString(3, username);
-                    ps.setString(4, sha256Hex(password));
-                    ps.executeUpdate();
+            AsyncDb.run(frame, () -> repo.register(name, mobile, username, password), created -> {
+                if (!created) {
+                    statusLabel.setText("Username exists.");
+                    return;
                 }
-
                 JOptionPane.showMessageDialog(frame, "Created! Please login.");
                 frame.dispose();
                 showLogin();
-
-            } catch (Exception ex) {
+            }, ex -> {
                 ex.printStackTrace();
                 statusLabel.setText("Error: " + ex.getMessage());
-            }
+            });
         });
 
         backBtn.addActionListener(e -> {
@@ -272,63 +309,52 @@ class AuthenticationSystem {
 }
 
 class CustomerDashboard {
-    private final Connection conn;
+    private static final int PAYMENT_PAGE_SIZE = 50;
+    private final RentalRepository repo;
+    private final ConnectionProvider db;
     private final int customerId;
     private final String customerName;
     private JFrame frame;
-    private DefaultTableModel model;
+    private PagedTableModel model;
     private JTable table;
-
-    public CustomerDashboard(Connection conn, int customerId, String customerName) {
-        this.conn = conn;
+    private VehicleSearchBar search;
+    // Vehicles this customer currently holds; lets the renderer colour rows without querying
+    private final Set<Integer> myActiveBookings = new HashSet<>();
+    private SwingWorker<?, ?> activeLoad;
+
+    public CustomerDashboard(RentalRepository repo, ConnectionProvider db, int customerId, String customerName) {
+        this.repo = repo;
+        this.db = db;
         this.customerId = customerId;
         this.customerName = customerName;
     }
 
     public void show() {
         frame = new JFrame("Customer Dashboard - " + customerName);
-        frame.setSize(900, 500);
+        frame.setSize(1100, 500);
         frame.setLocationRelativeTo(null);
         frame.setLayout(new BorderLayout(10, 10));
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 
-        model = new DefaultTableModel(new Object[] { "Vehicle ID", "Model", "Category", "Rent/Day", "Available" }, 0) {
-            public boolean isCellEditable(int r, int c) {
-                return false;
-            }
-        };
+        model = new PagedTableModel(new String[] { "Vehicle ID", "Model", "Category", "Rent/Day", "Available" },
+                repo.vehicles());
         table = new JTable(model);
 
         // Custom Cell Renderer
-        table.getColumnModel().getColumn(4).setCellRenderer((tbl, value, isSelected, hasFocus, row, col) -> {
-            JLabel cell = new JLabel(value.toString());
-            cell.setOpaque(true);
-            int vehicleId = (int) model.getValueAt(row, 0);
-
-            try (PreparedStatement ps = conn.prepareStatement(
-                    "SELECT COUNT(*) FROM Bookings WHERE VehicleID=? AND CustomerID=? AND Status='Booked'")) {
-                ps.setInt(1, vehicleId);
-                ps.setInt(2, customerId);
-                ResultSet rs = ps.executeQuery();
-                if (rs.next() && rs.getInt(1) > 0)
-                    cell.setForeground(Color.BLUE);
-                else if ("No".equals(value))
-                    cell.setForeground(Color.RED);
-                else
-                    cell.setForeground(Color.BLACK);
-            } catch (Exception e) {
-                cell.setForeground(Color.BLACK);
-            }
-
-            cell.setBackground(isSelected ? tbl.getSelectionBackground() : tbl.getBackground());
-            return cell;
-        });
+        table.getColumnModel().getColumn(4).setCellRenderer(new AvailabilityRenderer(myActiveBookings));
         table.setRowHeight(25);
         frame.add(new JScrollPane(table), BorderLayout.CENTER);
 
         JLabel statusLabel = new JLabel("Welcome, " + customerName + "!", SwingConstants.CENTER);
         statusLabel.setFont(new Font("Arial", Font.BOLD, 14));
-        frame.add(statusLabel, BorderLayout.NORTH);
+        search = new VehicleSearchBar(repo, model, frame);
+        JPanel topPanel = new JPanel(new BorderLayout());
+        topPanel.add(statusLabel, BorderLayout.NORTH);
+        topPanel.add(search, BorderLayout.SOUTH);
+        frame.add(topPanel, BorderLayout.NORTH);
+        VehicleFacetPanel facets = new VehicleFacetPanel(repo, frame);
+        search.attach(facets);
+        frame.add(facets, BorderLayout.WEST);
 
         JPanel buttonPanel = new JPanel(new FlowLayout());
         JButton bookBtn = new JButton("Book Vehicle");
@@ -352,32 +378,26 @@ class CustomerDashboard {
         paymentsBtn.addActionListener(e -> showPayments());
         logoutBtn.addActionListener(e -> {
             frame.dispose();
-            new AuthenticationSystem(conn).showWelcome();
+            new AuthenticationSystem(repo, db).showWelcome();
         });
 
         frame.setVisible(true);
     }
 
     private void loadVehicles() {
-        model.setRowCount(0);
-        try (PreparedStatement ps = conn.prepareStatement(
-                "SELECT VehicleID, Model, Category, RentPerDay, Available FROM Vehicles ORDER BY VehicleID");
-                ResultSet rs = ps.executeQuery()) {
-            while (rs.next()) {
-                model.addRow(new Object[] {
-                        rs.getInt("VehicleID"), rs.getString("Model"),
-                        rs.getString("Category"), rs.getDouble("RentPerDay"),
-                        "Y".equals(rs.getString("Available")) ? "Yes" : "No"
-                });
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        search.refresh();
+        if (activeLoad != null)
+            activeLoad.cancel(true);
+        activeLoad = AsyncDb.run(frame, () -> repo.activeVehicles(customerId), active -> {
+            myActiveBookings.clear();
+            myActiveBookings.addAll(active);
+            table.repaint();
+        }, Throwable::printStackTrace);
     }
 
     private void bookVehicle() {
         int row = table.getSelectedRow();
-        if (row < 0) {
+        if (row < 0 || model.getRow(row) == null) {
             JOptionPane.showMessageDialog(frame, "Select a vehicle.");
             return;
         }
@@ -388,161 +408,119 @@ class CustomerDashboard {
             return;
         }
 
-        try {
-            conn.setAutoCommit(false);
-            try (PreparedStatement ps = conn
-                    .prepareStatement("INSERT INTO Bookings (CustomerID, VehicleID, Status) VALUES (?, ?, 'Booked')")) {
-                ps.setInt(1, customerId);
-                ps.setInt(2, vid);
-                ps.executeUpdate();
-            }
-            try (PreparedStatement ps = conn.prepareStatement("UPDATE Vehicles SET Available='N' WHERE VehicleID=?")) {
-                ps.setInt(1, vid);
-                ps.executeUpdate();
+        AsyncDb.run(frame, () -> repo.book(customerId, vid), outcome -> {
+            switch (outcome) {
+                case BOOKED:
+                    myActiveBookings.add(vid);
+                    JOptionPane.showMessageDialog(frame, "Booked!");
+                    break;
+                case BUSY:
+                    JOptionPane.showMessageDialog(frame, "Someone else is booking this vehicle. Try again.");
+                    return;
+                default:
+                    JOptionPane.showMessageDialog(frame, "Unavailable.");
+                    break;
             }
-            conn.commit();
-            JOptionPane.showMessageDialog(frame, "Booked!");
             loadVehicles();
-        } catch (Exception e) {
-            try {
-                conn.rollback();
-            } catch (Exception ignored) {
-            }
-            e.printStackTrace();
-        } finally {
-            try {
-                conn.setAutoCommit(true);
-            } catch (Exception ignored) {
-            }
-        }
+        });
     }
 
     private void returnVehicle() {
         int row = table.getSelectedRow();
-        if (row < 0) {
+        if (row < 0 || model.getRow(row) == null) {
             JOptionPane.showMessageDialog(frame, "Select a vehicle.");
             return;
         }
         int vid = (int) model.getValueAt(row, 0);
 
-        try {
-            conn.setAutoCommit(false);
-            Integer bid = null;
-            try (PreparedStatement ps = conn.prepareStatement(
-                    "SELECT BookingID FROM Bookings WHERE VehicleID=? AND CustomerID=? AND Status='Booked'")) {
-                ps.setInt(1, vid);
-                ps.setInt(2, customerId);
-                ResultSet rs = ps.executeQuery();
-                if (rs.next())
-                    bid = rs.getInt(1);
-            }
-            if (bid == null) {
-                JOptionPane.showMessageDialog(frame, "No active booking.");
-                conn.rollback();
-                return;
-            }
-
-            try (PreparedStatement ps = conn
-                    .prepareStatement("UPDATE Bookings SET Status='Returned', ReturnDate=SYSDATE WHERE BookingID=?")) {
-                ps.setInt(1, bid);
-                ps.executeUpdate();
-            }
-            try (PreparedStatement ps = conn.prepareStatement("UPDATE Vehicles SET Available='Y' WHERE VehicleID=?")) {
-                ps.setInt(1, vid);
-                ps.executeUpdate();
+        AsyncDb.run(frame, () -> repo.returnVehicle(customerId, vid), outcome -> {
+            switch (outcome) {
+                case RETURNED:
+                    myActiveBookings.remove(vid);
+                    JOptionPane.showMessageDialog(frame, "Returned!");
+                    loadVehicles();
+                    break;
+                case BUSY:
+                    JOptionPane.showMessageDialog(frame, "This vehicle is being updated. Try again.");
+                    break;
+                default:
+                    JOptionPane.showMessageDialog(frame, "No active booking.");
+                    break;
             }
-            conn.commit();
-            JOptionPane.showMessageDialog(frame, "Returned!");
-            loadVehicles();
-        } catch (Exception e) {
-            try {
-                conn.rollback();
-            } catch (Exception ignored) {
-            }
-            e.printStackTrace();
-        } finally {
-            try {
-                conn.setAutoCommit(true);
-            } catch (Exception ignored) {
-            }
-        }
+        });
     }
 
+    @SuppressWarnings("try")
     private void showHistory() {
-        DefaultTableModel hModel = new DefaultTableModel(
-                new Object[] { "ID", "Vehicle", "Status", "Booked", "Returned" }, 0);
-        try (PreparedStatement ps = conn.prepareStatement(
-                "SELECT b.BookingID, v.Model, b.Status, b.BookingDate, b.ReturnDate FROM Bookings b JOIN Vehicles v ON b.VehicleID=v.VehicleID WHERE b.CustomerID=? ORDER BY b.BookingID DESC")) {
-            ps.setInt(1, customerId);
-            ResultSet rs = ps.executeQuery();
-            while (rs.next())
-                hModel.addRow(new Object[] { rs.getInt(1), rs.getString(2), rs.getString(3), rs.getTimestamp(4),
-                        rs.getTimestamp(5) });
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        JOptionPane.showMessageDialog(frame, new JScrollPane(new JTable(hModel)), "History", JOptionPane.PLAIN_MESSAGE);
+        AsyncDb.run(frame, () -> {
+            DefaultTableModel hModel = new DefaultTableModel(
+                    new Object[] { "ID", "Vehicle", "Status", "Booked", "Returned" }, 0);
+            try (Trace.Span s = Trace.span("populate")) {
+                for (Object[] row : repo.history(customerId))
+                    hModel.addRow(row);
+            }
+            return hModel;
+        }, hModel -> JOptionPane.showMessageDialog(frame, new JScrollPane(new JTable(hModel)), "History",
+                JOptionPane.PLAIN_MESSAGE));
     }
 
+    // Newest payments first, a page at a time; older pages load on request
+    @SuppressWarnings("try")
     private void showPayments() {
         DefaultTableModel pModel = new DefaultTableModel(new Object[] { "ID", "Vehicle", "Amount", "Method", "Date" },
                 0);
-        try (PreparedStatement ps = conn.prepareStatement(
-                "SELECT p.PaymentID, v.Model, p.Amount, p.PaymentMethod, p.PaymentDate FROM Payments p JOIN Bookings b ON p.BookingID=b.BookingID JOIN Vehicles v ON b.VehicleID=v.VehicleID WHERE b.CustomerID=? ORDER BY p.PaymentDate DESC")) {
-            ps.setInt(1, customerId);
-            ResultSet rs = ps.executeQuery();
-            while (rs.next())
-                pModel.addRow(new Object[] { rs.getInt(1), rs.getString(2), rs.getDouble(3), rs.getString(4),
-                        rs.getTimestamp(5) });
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        JOptionPane.showMessageDialog(frame, new JScrollPane(new JTable(pModel)), "Payments",
-                JOptionPane.PLAIN_MESSAGE);
+        JButton older = new JButton("Older payments");
+        Object[][] last = new Object[1][];
+        Consumer<List<Object[]>> append = page -> {
+            try (Trace.Span s = Trace.span("populate")) {
+                for (Object[] row : page)
+                    pModel.addRow(row);
+            }
+            if (!page.isEmpty())
+                last[0] = page.get(page.size() - 1);
+            older.setEnabled(page.size() == PAYMENT_PAGE_SIZE);
+        };
+        older.addActionListener(
+                e -> AsyncDb.run(older, () -> repo.payments(customerId, last[0], PAYMENT_PAGE_SIZE), append));
+        AsyncDb.run(frame, () -> repo.payments(customerId, null, PAYMENT_PAGE_SIZE), page -> {
+            append.accept(page);
+            JPanel p = new JPanel(new BorderLayout(5, 5));
+            p.add(new JScrollPane(new JTable(pModel)), BorderLayout.CENTER);
+            p.add(older, BorderLayout.SOUTH);
+            JOptionPane.showMessageDialog(frame, p, "Payments", JOptionPane.PLAIN_MESSAGE);
+        });
     }
 }
 
 class AdminDashboard {
-    private final Connection conn;
+    private final RentalRepository repo;
+    private final ConnectionProvider db; // import and export need a direct connection
     private JFrame frame;
-    private DefaultTableModel model;
+    private PagedTableModel model;
     private JTable table;
     private JTextField modelField, categoryField, rentField;
+    private VehicleSearchBar search;
 
-    public AdminDashboard(Connection conn) {
-        this.conn = conn;
+    public AdminDashboard(RentalRepository repo, ConnectionProvider db) {
+        this.repo = repo;
+        this.db = db;
     }
 
+    @SuppressWarnings("try")
     private void showTopCustomers() {
         DefaultTableModel model = new DefaultTableModel(
                 new Object[] { "Rank", "Customer Name", "Mobile", "Total Bookings" }, 0);
         JTable table = new JTable(model);
 
-        String sql = "SELECT c.Name, c.MobileNumber, COUNT(b.BookingID) as BookingCount " +
-                "FROM Bookings b " +
-                "JOIN Customers c ON b.CustomerID = c.CustomerID " +
-                "GROUP BY c.Name, c.MobileNumber " +
-                "ORDER BY BookingCount DESC";
-
-        try (PreparedStatement ps = conn.prepareStatement(sql);
-                ResultSet rs = ps.executeQuery()) {
-
-            int rank = 1;
-            while (rs.next()) {
-                model.addRow(new Object[] {
-                        rank++,
-                        rs.getString("Name"),
-                        rs.getString("MobileNumber"),
-                        rs.getInt("BookingCount")
-                });
+        AsyncDb.run(frame, repo::topCustomers, top -> {
+            try (Trace.Span s = Trace.span("populate")) {
+                int rank = 1;
+                for (Leaderboard.Entry e : top)
+                    model.addRow(new Object[] { rank++, e.name, e.mobile, e.bookings });
             }
-        } catch (Exception e) {
-            e.printStackTrace();
-            JOptionPane.showMessageDialog(frame, "Error: " + e.getMessage());
-        }
-
-        JOptionPane.showMessageDialog(frame, new JScrollPane(table), "Top 5 Loyal Customers",
-                JOptionPane.PLAIN_MESSAGE);
+            JOptionPane.showMessageDialog(frame, new JScrollPane(table), "Top " + Leaderboard.k() + " Loyal Customers",
+                    JOptionPane.PLAIN_MESSAGE);
+        });
     }
 
     public void show() {
@@ -552,30 +530,16 @@ class AdminDashboard {
         frame.setLayout(new BorderLayout(10, 10));
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 
-        model = new DefaultTableModel(new Object[] { "Vehicle ID", "Model", "Category", "Rent/Day", "Available" }, 0) {
-            public boolean isCellEditable(int r, int c) {
-                return false;
-            }
-        };
+        model = new PagedTableModel(new String[] { "Vehicle ID", "Model", "Category", "Rent/Day", "Available" },
+                repo.vehicles());
         table = new JTable(model);
-        table.getColumnModel().getColumn(4).setCellRenderer(new DefaultTableCellRenderer() {
-            @Override
-            public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
-                    boolean hasFocus, int row, int column) {
-                Component c = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
-                if ("No".equals(value))
-                    c.setForeground(Color.RED);
-                else
-                    c.setForeground(Color.BLACK);
-                return c;
-            }
-        });
+        table.getColumnModel().getColumn(4).setCellRenderer(new AvailabilityRenderer(null));
         table.setRowHeight(25);
         frame.add(new JScrollPane(table), BorderLayout.CENTER);
 
         table.getSelectionModel().addListSelectionListener(e -> {
             int row = table.getSelectedRow();
-            if (row >= 0) {
+            if (row >= 0 && model.getRow(row) != null) {
                 modelField.setText(String.valueOf(table.getValueAt(row, 1)));
                 categoryField.setText(String.valueOf(table.getValueAt(row, 2)));
                 rentField.setText(String.valueOf(table.getValueAt(row, 3)));
@@ -591,7 +555,7 @@ class AdminDashboard {
         JPanel topPanel = new JPanel(new BorderLayout());
         JLabel titleLabel = new JLabel("Vehicle Management", SwingConstants.CENTER);
         titleLabel.setFont(new Font("Arial", Font.BOLD, 16));
-        topPanel.add(titleLabel, BorderLayout.CENTER);
+        topPanel.add(titleLabel, BorderLayout.NORTH);
 
         JPanel formPanel = new JPanel(new GridLayout(3, 2, 10, 10));
         formPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
@@ -604,12 +568,15 @@ class AdminDashboard {
         formPanel.add(categoryField);
         formPanel.add(new JLabel("Rent Per Day:"));
         formPanel.add(rentField);
-        topPanel.add(formPanel, BorderLayout.SOUTH);
+        topPanel.add(formPanel, BorderLayout.CENTER);
+        search = new VehicleSearchBar(repo, model, frame);
+        topPanel.add(search, BorderLayout.SOUTH);
         frame.add(topPanel, BorderLayout.NORTH);
 
         JPanel btnPanel = new JPanel(new FlowLayout());
         JButton topCustBtn = new JButton("Top Customers");
         JButton addBtn = new JButton("Add");
+        JButton importBtn = new JButton("Import");
         JButton updateBtn = new JButton("Update");
         JButton deleteBtn = new JButton("Delete");
         JButton reportBtn = new JButton("Report");
@@ -617,10 +584,13 @@ class AdminDashboard {
         JButton delCustBtn = new JButton("Del Customer");
         JButton bookBtn = new JButton("Bookings");
         JButton payBtn = new JButton("Rec. Payment");
+        JButton exportBtn = new JButton("Export");
+        JButton diagBtn = new JButton("Diagnostics");
         JButton logoutBtn = new JButton("Logout");
 
         btnPanel.add(topCustBtn);
         btnPanel.add(addBtn);
+        btnPanel.add(importBtn);
         btnPanel.add(updateBtn);
         btnPanel.add(deleteBtn);
         btnPanel.add(reportBtn);
@@ -628,11 +598,14 @@ class AdminDashboard {
         btnPanel.add(delCustBtn);
         btnPanel.add(bookBtn);
         btnPanel.add(payBtn);
+        btnPanel.add(exportBtn);
+        btnPanel.add(diagBtn);
         btnPanel.add(logoutBtn);
         frame.add(btnPanel, BorderLayout.SOUTH);
 
         // Listeners
         addBtn.addActionListener(e -> addVehicle());
+        importBtn.addActionListener(e -> importFleet());
         updateBtn.addActionListener(e -> updateVehicle());
         deleteBtn.addActionListener(e -> deleteVehicle());
         reportBtn.addActionListener(e -> generateReport());
@@ -640,145 +613,138 @@ class AdminDashboard {
         delCustBtn.addActionListener(e -> deleteCustomer());
         bookBtn.addActionListener(e -> viewBookings());
         payBtn.addActionListener(e -> recordPayment());
+        exportBtn.addActionListener(e -> DataExport.showDialog(frame, new DataExport(db)));
+        diagBtn.addActionListener(e -> Metrics.showDialog(frame));
+        if (db == null) {
+            importBtn.setEnabled(false);
+            exportBtn.setEnabled(false);
+            importBtn.setToolTipText("Needs a direct database connection");
+            exportBtn.setToolTipText("Needs a direct database connection");
+        }
         topCustBtn.addActionListener(e -> showTopCustomers());
         logoutBtn.addActionListener(e -> {
             frame.dispose();
-            new AuthenticationSystem(conn).showWelcome();
+            new AuthenticationSystem(repo, db).showWelcome();
         });
     }
 
     private void loadVehicles() {
-        model.setRowCount(0);
-        try (PreparedStatement ps = conn.prepareStatement(
-                "SELECT VehicleID, Model, Category, RentPerDay, Available FROM Vehicles ORDER BY VehicleID");
-                ResultSet rs = ps.executeQuery()) {
-            while (rs.next()) {
-                model.addRow(new Object[] {
-                        rs.getInt(1), rs.getString(2), rs.getString(3), rs.getDouble(4),
-                        "Y".equals(rs.getString(5)) ? "Yes" : "No"
-                });
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        search.refresh();
     }
 
     private void addVehicle() {
+        String vModel = modelField.getText();
+        String category = categoryField.getText();
+        double rent;
         try {
-            double rent = Double.parseDouble(rentField.getText());
-            try (PreparedStatement ps = conn.prepareStatement(
-                    "INSERT INTO Vehicles (Model, Category, RentPerDay, Available) VALUES (?, ?, ?, 'Y')")) {
-                ps.setString(1, modelField.getText());
-                ps.setString(2, categoryField.getText());
-                ps.setDouble(3, rent);
-                ps.executeUpdate();
-            }
-            loadVehicles();
-            JOptionPane.showMessageDialog(frame, "Added!");
-        } catch (Exception e) {
+            rent = Double.parseDouble(rentField.getText());
+        } catch (NumberFormatException e) {
             JOptionPane.showMessageDialog(frame, "Error: " + e.getMessage());
+            return;
         }
+        AsyncDb.run(frame, () -> {
+            repo.addVehicle(vModel, category, rent);
+            return null;
+        }, ignored -> {
+            loadVehicles();
+            JOptionPane.showMessageDialog(frame, "Added!");
+        });
+    }
+
+    // Bulk add from a CSV file; the grid is refreshed once when the import ends
+    private void importFleet() {
+        FleetImport.showDialog(frame, new FleetImport(db), this::loadVehicles);
     }
 
     private void updateVehicle() {
         int row = table.getSelectedRow();
-        if (row < 0)
+        if (row < 0 || model.getRow(row) == null)
             return;
+        int vid = (int) model.getValueAt(row, 0);
+        String vModel = modelField.getText();
+        String category = categoryField.getText();
+        double rent;
         try {
-            int vid = (int) model.getValueAt(row, 0);
-            try (PreparedStatement ps = conn
-                    .prepareStatement("UPDATE Vehicles SET Model=?, Category=?, RentPerDay=? WHERE VehicleID=?")) {
-                ps.setString(1, modelField.getText());
-                ps.setString(2, categoryField.getText());
-                ps.setDouble(3, Double.parseDouble(rentField.getText()));
-                ps.setInt(4, vid);
-                ps.executeUpdate();
-            }
-            loadVehicles();
-            JOptionPane.showMessageDialog(frame, "Updated!");
-        } catch (Exception e) {
+            rent = Double.parseDouble(rentField.getText());
+        } catch (NumberFormatException e) {
             JOptionPane.showMessageDialog(frame, "Error: " + e.getMessage());
+            return;
         }
+        AsyncDb.run(frame, () -> {
+            repo.updateVehicle(vid, vModel, category, rent);
+            return null;
+        }, ignored -> {
+            loadVehicles();
+            JOptionPane.showMessageDialog(frame, "Updated!");
+        });
     }
 
     private void deleteVehicle() {
         int row = table.getSelectedRow();
-        if (row < 0)
+        if (row < 0 || model.getRow(row) == null)
             return;
         int vid = (int) model.getValueAt(row, 0);
-        try (PreparedStatement ps = conn.prepareStatement("DELETE FROM Vehicles WHERE VehicleID=?")) {
-            ps.setInt(1, vid);
-            ps.executeUpdate();
+        AsyncDb.run(frame, () -> {
+            repo.deleteVehicle(vid);
+            return null;
+        }, ignored -> {
             loadVehicles();
             JOptionPane.showMessageDialog(frame, "Deleted!");
-        } catch (Exception e) {
-            JOptionPane.showMessageDialog(frame, "Error: " + e.getMessage());
-        }
+        });
     }
 
     private void generateReport() {
-        try (PreparedStatement ps = conn.prepareStatement(
-                "SELECT COUNT(*) AS Total, SUM(CASE WHEN Available='Y' THEN 1 ELSE 0 END) AS Avail, SUM(CASE WHEN Available='N' THEN 1 ELSE 0 END) AS Rented FROM Vehicles");
-                ResultSet rs = ps.executeQuery()) {
-            if (rs.next())
-                JOptionPane.showMessageDialog(frame,
-                        "Total: " + rs.getInt(1) + "\nAvailable: " + rs.getInt(2) + "\nRented: " + rs.getInt(3));
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        AsyncDb.run(frame, repo::fleetReport, report -> JOptionPane.showMessageDialog(frame, report));
     }
 
+    @SuppressWarnings("try")
     private void viewCustomers() {
-        DefaultTableModel cModel = new DefaultTableModel(new Object[] { "ID", "Name", "Mobile", "User" }, 0);
-        try (PreparedStatement ps = conn
-                .prepareStatement("SELECT CustomerID, Name, MobileNumber, Username FROM Customers");
-                ResultSet rs = ps.executeQuery()) {
-            while (rs.next())
-                cModel.addRow(new Object[] { rs.getInt(1), rs.getString(2), rs.getString(3), rs.getString(4) });
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        JOptionPane.showMessageDialog(frame, new JScrollPane(new JTable(cModel)));
+        AsyncDb.run(frame, () -> {
+            DefaultTableModel cModel = new DefaultTableModel(new Object[] { "ID", "Name", "Mobile", "User" }, 0);
+            try (Trace.Span s = Trace.span("populate")) {
+                for (Object[] row : repo.customers())
+                    cModel.addRow(row);
+            }
+            return cModel;
+        }, cModel -> JOptionPane.showMessageDialog(frame, new JScrollPane(new JTable(cModel))));
     }
 
     private void deleteCustomer() {
         String idStr = JOptionPane.showInputDialog(frame, "Enter Cust ID:");
         if (idStr == null)
             return;
+        int cid;
         try {
-            int cid = Integer.parseInt(idStr);
-            int conf = JOptionPane.showConfirmDialog(frame, "Delete Customer & History?", "Warning",
-                    JOptionPane.YES_NO_OPTION);
-            if (conf == JOptionPane.YES_OPTION) {
-                conn.setAutoCommit(false);
-                try (PreparedStatement ps = conn.prepareStatement(
-                        "DELETE FROM Payments WHERE BookingID IN (SELECT BookingID FROM Bookings WHERE CustomerID=?)")) {
-                    ps.setInt(1, cid);
-                    ps.executeUpdate();
-                }
-                try (PreparedStatement ps = conn.prepareStatement("DELETE FROM Bookings WHERE CustomerID=?")) {
-                    ps.setInt(1, cid);
-                    ps.executeUpdate();
-                }
-                try (PreparedStatement ps = conn.prepareStatement("DELETE FROM Customers WHERE CustomerID=?")) {
-                    ps.setInt(1, cid);
-                    ps.executeUpdate();
-                }
-                conn.commit();
-                JOptionPane.showMessageDialog(frame, "Deleted.");
-            }
-        } catch (Exception e) {
-            try {
-                conn.rollback();
-            } catch (Exception ignored) {
-            }
+            cid = Integer.parseInt(idStr);
+        } catch (NumberFormatException e) {
             JOptionPane.showMessageDialog(frame, "Error: " + e.getMessage());
-        } finally {
-            try {
-                conn.setAutoCommit(true);
-            } catch (Exception ignored) {
-            }
+            return;
         }
+        int conf = JOptionPane.showConfirmDialog(frame, "Delete Customer & History?", "Warning",
+                JOptionPane.YES_NO_OPTION);
+        if (conf != JOptionPane.YES_OPTION)
+            return;
+        // Runs in the background; the dashboard stays usable while a long history goes
+        SwingWorker<?, ?>[] job = new SwingWorker<?, ?>[1];
+        ProgressDialog progress = new ProgressDialog(frame, "Deleting customer " + cid, () -> job[0].cancel(true));
+        job[0] = AsyncDb.run(null, () -> {
+            repo.deleteCustomer(cid, progress);
+            return null;
+        }, ignored -> {
+            progress.dispose();
+            JOptionPane.showMessageDialog(frame, "Deleted.");
+        }, e -> {
+            progress.dispose();
+            e.printStackTrace();
+            JOptionPane.showMessageDialog(frame, "Error: " + e.getMessage() + "\nDelete the customer again to finish.");
+        });
+        job[0].addPropertyChangeListener(e -> {
+            if (job[0].isCancelled() && job[0].isDone() && progress.isDisplayable()) {
+                progress.dispose();
+                JOptionPane.showMessageDialog(frame, "Stopped. Delete the customer again to finish.");
+            }
+        });
+        progress.setVisible(true);
     }
 
     private void viewBookings() {
@@ -788,12 +754,8 @@ class AdminDashboard {
         dialog.setLayout(new BorderLayout());
 
         // Create the table
-        DefaultTableModel bModel = new DefaultTableModel(
-                new Object[] { "ID", "Customer", "Vehicle", "Status", "Date" }, 0) {
-            public boolean isCellEditable(int r, int c) {
-                return false;
-            }
-        };
+        PagedTableModel bModel = new PagedTableModel(new String[] { "ID", "Customer", "Vehicle", "Status", "Date" },
+                repo.bookings("ALL"));
         JTable table = new JTable(bModel);
         table.setRowHeight(25);
 
@@ -808,18 +770,19 @@ class AdminDashboard {
         filterPanel.add(btnBooked);
         filterPanel.add(btnReturned);
 
-      
+        Consumer<String> load = filter -> loadBookingData(dialog, bModel, filter);
+
         // 1. Show All
-        btnAll.addActionListener(e -> loadBookingData(bModel, "ALL"));
+        btnAll.addActionListener(e -> load.accept("ALL"));
 
         // 2. Show Only Booked
-        btnBooked.addActionListener(e -> loadBookingData(bModel, "Booked"));
+        btnBooked.addActionListener(e -> load.accept("Booked"));
 
         // 3. Show Only Returned
-        btnReturned.addActionListener(e -> loadBookingData(bModel, "Returned"));
+        btnReturned.addActionListener(e -> load.accept("Returned"));
 
         // Initial load (Show All by default)
-        loadBookingData(bModel, "ALL");
+        load.accept("ALL");
 
         // Add everything to dialog
         dialog.add(filterPanel, BorderLayout.NORTH);
@@ -827,56 +790,24 @@ class AdminDashboard {
         dialog.setVisible(true);
     }
 
-    private void loadBookingData(DefaultTableModel model, String statusFilter) {
-        model.setRowCount(0); 
-
-        StringBuilder sql = new StringBuilder(
-                "SELECT b.BookingID, c.Name, v.Model, b.Status, b.BookingDate " +
-                        "FROM Bookings b " +
-                        "JOIN Customers c ON b.CustomerID = c.CustomerID " +
-                        "JOIN Vehicles v ON b.VehicleID = v.VehicleID ");
-
-        if (!"ALL".equals(statusFilter)) {
-            sql.append("WHERE b.Status = ? ");
-        }
-
-        sql.append("ORDER BY b.BookingID DESC");
-
-        try (PreparedStatement ps = conn.prepareStatement(sql.toString())) {
-            if (!"ALL".equals(statusFilter)) {
-                ps.setString(1, statusFilter);
-            }
-
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    model.addRow(new Object[] {
-                            rs.getInt("BookingID"),
-                            rs.getString("Name"),
-                            rs.getString("Model"),
-                            rs.getString("Status"),
-                            rs.getTimestamp("BookingDate")
-                    });
-                }
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-            JOptionPane.showMessageDialog(frame, "Error loading filtered data: " + e.getMessage());
-        }
+    private void loadBookingData(Component owner, PagedTableModel model, String statusFilter) {
+        // Pages are fetched as the table scrolls; switching filters discards the old ones
+        model.setSource(repo.bookings(statusFilter));
+        model.refresh(owner);
     }
 
     private void recordPayment() {
         String bidStr = JOptionPane.showInputDialog(frame, "Enter Booking ID:");
         if (bidStr == null)
             return;
+        int bid;
         try {
-            int bid = Integer.parseInt(bidStr);
-            boolean exists = false;
-            try (PreparedStatement ps = conn.prepareStatement("SELECT COUNT(*) FROM Bookings WHERE BookingID=?")) {
-                ps.setInt(1, bid);
-                ResultSet rs = ps.executeQuery();
-                if (rs.next() && rs.getInt(1) > 0)
-                    exists = true;
-            }
+            bid = Integer.parseInt(bidStr);
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(frame, "Error: " + e.getMessage());
+            return;
+        }
+        AsyncDb.run(frame, () -> repo.bookingExists(bid), exists -> {
             if (!exists) {
                 JOptionPane.showMessageDialog(frame, "Invalid Booking ID.");
                 return;
@@ -884,17 +815,16 @@ class AdminDashboard {
 
             String amt = JOptionPane.showInputDialog(frame, "Amount:");
             String method = JOptionPane.showInputDialog(frame, "Method:");
-
-            try (PreparedStatement ps = conn
-                    .prepareStatement("INSERT INTO Payments (BookingID, Amount, PaymentMethod) VALUES (?, ?, ?)")) {
-                ps.setInt(1, bid);
-                ps.setDouble(2, Double.parseDouble(amt));
-                ps.setString(3, method);
-                ps.executeUpdate();
+            double amount;
+            try {
+                amount = Double.parseDouble(amt);
+            } catch (Exception e) {
+                JOptionPane.showMessageDialog(frame, "Error: " + e.getMessage());
+                return;
             }
-            JOptionPane.showMessageDialog(frame, "Recorded!");
-        } catch (Exception e) {
-            JOptionPane.showMessageDialog(frame, "Error: " + e.getMessage());
-        }
+
+            AsyncDb.run(frame, () -> repo.recordPayment(bid, amount, method),
+                    recorded -> JOptionPane.showMessageDialog(frame, recorded ? "Recorded!" : "Invalid Booking ID."));
+        });
     }
 }
\ No newline at end of file